@@ -0,0 +1,93 @@
+package db.migration;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+// What spring.jpa.hibernate.ddl-auto=update added to the original schema
+// (V1) before the migrations took over:
+// - employees.version, for optimistic locking
+// - users.credentials_changed_at and revoked_tokens, for token revocation
+// - replication_heartbeat, for measuring replica lag
+// A database baselined at V1 has some, all or none of them, depending on
+// which release last ran with ddl-auto=update, so each one is only created
+// when it is missing. MySQL has no ADD COLUMN IF NOT EXISTS, which is why
+// this is a Java migration that checks the metadata first. Flyway finds it
+// next to the scripts (classpath:db/migration).
+public class V5__Ddl_auto_additions extends BaseJavaMigration {
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+
+        addColumn(connection, "employees", "version", "BIGINT DEFAULT 0 NOT NULL");
+
+        addColumn(connection, "users", "credentials_changed_at", "TIMESTAMP(6)");
+        createIndex(connection, "users", "idx_users_credentials_changed_at", "credentials_changed_at");
+
+        createTable(connection, "revoked_tokens", """
+            CREATE TABLE revoked_tokens (
+                jti VARCHAR(36) NOT NULL,
+                user_id BIGINT,
+                expires_at TIMESTAMP(6) NOT NULL,
+                revoked_at TIMESTAMP(6) NOT NULL,
+                PRIMARY KEY (jti)
+            )""");
+        createIndex(connection, "revoked_tokens", "idx_revoked_tokens_revoked_at", "revoked_at");
+        createIndex(connection, "revoked_tokens", "idx_revoked_tokens_expires_at", "expires_at");
+
+        createTable(connection, "replication_heartbeat", """
+            CREATE TABLE replication_heartbeat (
+                id INT NOT NULL,
+                beat_at TIMESTAMP(6) NOT NULL,
+                PRIMARY KEY (id)
+            )""");
+    }
+
+    private static void addColumn(Connection connection, String table, String column, String definition)
+            throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet columns = metaData.getColumns(connection.getCatalog(), connection.getSchema(), table, column)) {
+            if (columns.next()) {
+                return;
+            }
+        }
+        execute(connection, "ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+    }
+
+    private static void createTable(Connection connection, String table, String sql) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet tables = metaData.getTables(connection.getCatalog(), connection.getSchema(), table, null)) {
+            if (tables.next()) {
+                return;
+            }
+        }
+        execute(connection, sql);
+    }
+
+    // ddl-auto named its indexes after the entities' @Index, as here
+    private static void createIndex(Connection connection, String table, String index, String columns)
+            throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet indexes = metaData.getIndexInfo(connection.getCatalog(), connection.getSchema(), table,
+                false, false)) {
+            while (indexes.next()) {
+                if (index.equalsIgnoreCase(indexes.getString("INDEX_NAME"))) {
+                    return;
+                }
+            }
+        }
+        execute(connection, "CREATE INDEX " + index + " ON " + table + " (" + columns + ")");
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
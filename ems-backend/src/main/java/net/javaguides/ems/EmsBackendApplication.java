@@ -6,6 +6,9 @@ import org.springframework.boot.SpringApplication;
 // Allows to use @SpringBootApplication
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
+// Runs @Scheduled methods (token revocation polling)
+import org.springframework.scheduling.annotation.EnableScheduling;
+
 // @SpringBootApplication - used to mark the main class
 // It combines 3 annotations which we do not write manually 
 // 1. @SpringBootConfiguration - Tells that it is a Configuration class 
@@ -15,6 +18,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 //                     It automaically detects, @RestController, @Service etc.
 
 @SpringBootApplication
+@EnableScheduling
 public class EmsBackendApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,32 @@
+package net.javaguides.ems.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+// Every endpoint that returns or accepts DTOs also speaks CBOR and Smile,
+// chosen by the Accept / Content-Type header; JSON stays the default.
+// Both encode the same objects as the JSON converter, without repeating
+// field names as text and without number formatting, so they are smaller
+// and cheaper to parse.
+// The mappers come from Boot's builder, so spring.jackson.* settings and
+// registered modules apply to them as they do to JSON. Boot puts these
+// beans in place of the converters Spring MVC would otherwise add.
+@Configuration
+public class MessageConverterConfig {
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+}
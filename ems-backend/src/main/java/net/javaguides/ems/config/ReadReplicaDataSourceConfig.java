@@ -0,0 +1,124 @@
+package net.javaguides.ems.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import lombok.Setter;
+import net.javaguides.ems.datasource.ReadWriteRoutingDataSource;
+import net.javaguides.ems.datasource.ReadYourWritesTracker;
+import net.javaguides.ems.datasource.ReplicaDataSource;
+import net.javaguides.ems.datasource.ReplicaHealthMonitor;
+
+// Opt-in (ems.datasource.routing.enabled=true): read-only transactions are
+// served by the replicas in ems.datasource.replicas, everything else by
+// spring.datasource. Replaces Boot's single pool with one Hikari pool per
+// database, all configured from spring.datasource.hikari.*; replica pools
+// are read-only and give up on a connection after
+// ems.datasource.routing.timeoutMs, so a dead replica costs little before
+// the health check takes it out.
+// The health endpoint keeps checking the primary only: a replica that is
+// down degrades read capacity, not readiness.
+@Configuration
+@ConditionalOnProperty(name = "ems.datasource.routing.enabled", havingValue = "true")
+public class ReadReplicaDataSourceConfig {
+
+    private static final String HIKARI_PREFIX = "spring.datasource.hikari";
+
+    @Getter
+    @Setter
+    public static class ReplicaProperties {
+        private String url;
+        private String username;
+        private String password;
+    }
+
+    @Bean
+    public ReadYourWritesTracker readYourWritesTracker(
+            @Value("${ems.datasource.routing.stickyMs:3000}") long stickyMs,
+            @Value("${ems.datasource.routing.stickyMaxUsers:100000}") int stickyMaxUsers) {
+        return new ReadYourWritesTracker(stickyMs, stickyMaxUsers);
+    }
+
+    @Bean
+    public ReadWriteRoutingDataSource routingDataSource(DataSourceProperties properties,
+                                                        Environment environment,
+                                                        MeterRegistry meterRegistry,
+                                                        ReadYourWritesTracker readYourWritesTracker,
+                                                        @Value("${ems.datasource.routing.timeoutMs:2000}") long timeoutMs) {
+        Binder binder = Binder.get(environment);
+
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        configurePool(binder, primary, "primary", meterRegistry);
+
+        List<ReplicaProperties> replicaProperties = binder
+            .bind("ems.datasource.replicas", Bindable.listOf(ReplicaProperties.class))
+            .orElse(List.of());
+        List<ReplicaDataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < replicaProperties.size(); i++) {
+            ReplicaProperties replica = replicaProperties.get(i);
+            HikariDataSource pool = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(replica.getUrl())
+                .username(replica.getUsername() != null ? replica.getUsername() : properties.getUsername())
+                .password(replica.getPassword() != null ? replica.getPassword() : properties.getPassword())
+                .build();
+            String name = "replica-" + i;
+            configurePool(binder, pool, name, meterRegistry);
+            pool.setReadOnly(true);
+            pool.setConnectionTimeout(timeoutMs);
+            replicas.add(new ReplicaDataSource(name, pool));
+        }
+        return new ReadWriteRoutingDataSource(primary, replicas, readYourWritesTracker, meterRegistry);
+    }
+
+    // What JPA, JdbcTemplate and the health endpoint use. Outside a
+    // transaction the proxy resolves to the primary.
+    @Bean
+    @Primary
+    public DataSource dataSource(ReadWriteRoutingDataSource routingDataSource) {
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    @Bean
+    public ReplicaHealthMonitor replicaHealthMonitor(ReadWriteRoutingDataSource routingDataSource,
+                                                     ReadYourWritesTracker readYourWritesTracker,
+                                                     MeterRegistry meterRegistry,
+                                                     @Value("${ems.datasource.routing.maxLagMs:2000}") long maxLagMs,
+                                                     @Value("${ems.datasource.routing.timeoutMs:2000}") long timeoutMs) {
+        ReplicaHealthMonitor monitor = new ReplicaHealthMonitor(routingDataSource.getPrimary(),
+            routingDataSource.getReplicas(), readYourWritesTracker, meterRegistry, maxLagMs,
+            (int) Math.max(1, (timeoutMs + 999) / 1000));
+        // Replicas only take reads once a check has passed
+        monitor.check();
+        return monitor;
+    }
+
+    // Same pool settings as Boot would apply to its own pool; metrics are
+    // bound here because these pools are not beans Boot can see
+    // (also used by ShardingConfig)
+    static void configurePool(Binder binder, HikariDataSource pool, String name,
+                              MeterRegistry meterRegistry) {
+        binder.bind(HIKARI_PREFIX, Bindable.ofInstance(pool));
+        pool.setPoolName(name);
+        pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+    }
+}
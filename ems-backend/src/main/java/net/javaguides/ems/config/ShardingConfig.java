@@ -0,0 +1,168 @@
+package net.javaguides.ems.config;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationInitializer;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import lombok.Setter;
+import net.javaguides.ems.service.EmployeeService;
+import net.javaguides.ems.service.implementation.EmployeeServiceImplementation;
+import net.javaguides.ems.sharding.ConsistentHashRing;
+import net.javaguides.ems.sharding.EmployeeEmailRegistry;
+import net.javaguides.ems.sharding.ShardDirectory;
+import net.javaguides.ems.sharding.ShardRebalancer;
+import net.javaguides.ems.sharding.ShardRoutingDataSource;
+import net.javaguides.ems.sharding.ShardedEmployeeService;
+import net.javaguides.ems.sharding.ShardsEndpoint;
+
+// Opt-in (ems.sharding.enabled=true): employees are spread over several
+// databases by owning user. spring.datasource is shard-0 and keeps
+// everything else (users, tokens, the shard directory, the email
+// registry); ems.sharding.shards lists the others, which only hold an
+// employees table created from db/shard on startup.
+// Every pool is configured from spring.datasource.hikari.*. The directory
+// and the email registry get a small pool of their own on the main
+// database: they are used while a shard transaction holds a connection,
+// and sharing shard-0's pool could leave all its connections waiting for
+// one more.
+@Configuration
+@ConditionalOnProperty(name = "ems.sharding.enabled", havingValue = "true")
+public class ShardingConfig {
+
+    @Getter
+    @Setter
+    public static class ShardProperties {
+        private String url;
+        private String username;
+        private String password;
+    }
+
+    // Replicas would have to follow every shard, and reads of a moved user
+    // would go to the wrong one; not supported
+    public ShardingConfig(Environment environment) {
+        if (environment.getProperty("ems.datasource.routing.enabled", Boolean.class, false)) {
+            throw new IllegalStateException(
+                "ems.sharding.enabled and ems.datasource.routing.enabled cannot be turned on together");
+        }
+    }
+
+    @Bean
+    public ShardRoutingDataSource shardRoutingDataSource(DataSourceProperties properties,
+                                                         Environment environment,
+                                                         MeterRegistry meterRegistry) {
+        Binder binder = Binder.get(environment);
+        Map<String, DataSource> shards = new LinkedHashMap<>();
+
+        HikariDataSource main = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        ReadReplicaDataSourceConfig.configurePool(binder, main, ShardRoutingDataSource.MAIN_SHARD, meterRegistry);
+        shards.put(ShardRoutingDataSource.MAIN_SHARD, main);
+
+        List<ShardProperties> shardProperties = binder
+            .bind("ems.sharding.shards", Bindable.listOf(ShardProperties.class))
+            .orElse(List.of());
+        for (int i = 0; i < shardProperties.size(); i++) {
+            ShardProperties shard = shardProperties.get(i);
+            HikariDataSource pool = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(shard.getUrl())
+                .username(shard.getUsername() != null ? shard.getUsername() : properties.getUsername())
+                .password(shard.getPassword() != null ? shard.getPassword() : properties.getPassword())
+                .build();
+            String name = "shard-" + (i + 1);
+            ReadReplicaDataSourceConfig.configurePool(binder, pool, name, meterRegistry);
+            Flyway.configure().dataSource(pool).locations("classpath:db/shard").load().migrate();
+            shards.put(name, pool);
+        }
+        return new ShardRoutingDataSource(shards);
+    }
+
+    // What JPA, JdbcTemplate, Flyway and the health endpoint use. Routing
+    // data sources are skipped by the health check, so it is wrapped to
+    // keep readiness checking shard-0; with no shard chosen that is where
+    // connections go.
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+
+    @Bean
+    public HikariDataSource shardDirectoryDataSource(DataSourceProperties properties,
+                                                     Environment environment,
+                                                     MeterRegistry meterRegistry,
+                                                     @Value("${ems.sharding.directoryPoolSize:5}") int poolSize) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        ReadReplicaDataSourceConfig.configurePool(Binder.get(environment), pool, "shard-directory", meterRegistry);
+        pool.setMaximumPoolSize(poolSize);
+        pool.setMinimumIdle(Math.min(pool.getMinimumIdle(), poolSize));
+        return pool;
+    }
+
+    @Bean
+    public ShardDirectory shardDirectory(@Qualifier("shardDirectoryDataSource") DataSource directoryDataSource,
+                                         ShardRoutingDataSource shardRoutingDataSource,
+                                         @Value("${ems.sharding.pointsPerShard:128}") int pointsPerShard,
+                                         @Value("${ems.sharding.directoryCacheMs:2000}") long cacheMs,
+                                         @Value("${ems.sharding.directoryCacheMaxUsers:100000}") int cacheMaxUsers) {
+        ConsistentHashRing ring = new ConsistentHashRing(new ArrayList<>(shardRoutingDataSource.getShardNames()),
+            pointsPerShard);
+        return new ShardDirectory(directoryDataSource, ring, cacheMs, cacheMaxUsers);
+    }
+
+    @Bean
+    public EmployeeEmailRegistry employeeEmailRegistry(@Qualifier("shardDirectoryDataSource") DataSource directoryDataSource,
+                                                       ObjectProvider<FlywayMigrationInitializer> flywayInitializer,
+                                                       @Value("${ems.sharding.idBlockSize:100}") int idBlockSize) {
+        // The registry tables come from the main database's migrations,
+        // which have to run first
+        flywayInitializer.getIfAvailable();
+        EmployeeEmailRegistry registry = new EmployeeEmailRegistry(directoryDataSource, idBlockSize);
+        registry.backfill();
+        return registry;
+    }
+
+    // Controllers and the import jobs get this one; it runs the real
+    // service on the user's shard
+    @Bean
+    @Primary
+    public EmployeeService shardedEmployeeService(EmployeeServiceImplementation employeeServiceImplementation,
+                                                  ShardDirectory shardDirectory) {
+        return new ShardedEmployeeService(employeeServiceImplementation, shardDirectory);
+    }
+
+    @Bean
+    public ShardRebalancer shardRebalancer(ShardDirectory shardDirectory,
+                                           ShardRoutingDataSource shardRoutingDataSource,
+                                           @Value("${ems.sharding.drainMs:5000}") long drainMs,
+                                           @Value("${ems.sharding.moveBatchSize:50}") int moveBatchSize) {
+        return new ShardRebalancer(shardDirectory, shardRoutingDataSource, drainMs, moveBatchSize);
+    }
+
+    @Bean
+    public ShardsEndpoint shardsEndpoint(ShardDirectory shardDirectory, ShardRebalancer shardRebalancer) {
+        return new ShardsEndpoint(shardDirectory, shardRebalancer);
+    }
+}
@@ -1,100 +1,97 @@
 package net.javaguides.ems.controller;
 
-import net.javaguides.ems.dto.JwtResponse;
+import net.javaguides.ems.dto.RefreshTokenRequestDto;
 import net.javaguides.ems.dto.ResetPasswordDto;
 import net.javaguides.ems.dto.UserRequestDto;
-import net.javaguides.ems.entity.User;
-import net.javaguides.ems.repository.UserRepository;
-import net.javaguides.ems.security.JwtTokenUtil;
+import net.javaguides.ems.security.AuthRateLimiter;
+import net.javaguides.ems.service.TokenService;
+import net.javaguides.ems.service.UserService;
 
 import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.AuthenticationException;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
+// Hashing and checking passwords happen on a separate bounded pool
+// (PasswordHashingService). The handlers return a CompletableFuture, which
+// frees the request thread until the hash is done. When the pool is full
+// the request is rejected with 503.
+// Every handler first passes the rate limiter (429 with Retry-After).
+// Signin and signup return a short-lived access token and a refresh token;
+// /auth/refresh trades the refresh token for a new pair without a password,
+// /auth/logout revokes both.
 @RestController
 @RequestMapping("/auth")
 public class AuthController {
 
     @Autowired
-    private UserRepository userRepository;
+    private UserService userService;
 
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private TokenService tokenService;
 
+    // Checked first in every handler, before any lookup or hashing
     @Autowired
-    private AuthenticationManager authenticationManager;
-
-    @Autowired
-    private JwtTokenUtil jwtTokenUtil;
+    private AuthRateLimiter authRateLimiter;
 
     @PostMapping("/signup")
-    public ResponseEntity<?> registerUser(@Valid @RequestBody UserRequestDto userRequest) {
-        if (userRepository.existsByUserName(userRequest.getUserName())) {
-            return ResponseEntity.badRequest().body(Collections.singletonMap("error", "Username is already taken."));
-        }
-
-        // Encode the password and save the user
-        User user = new User();
-        user.setUserName(userRequest.getUserName());
-        user.setPasswordHash(passwordEncoder.encode(userRequest.getPassword()));
-        userRepository.save(user);
-
-        try {
-            // Authenticate newly registered user
-            Authentication authentication = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(
-                    user.getUserName(),
-                    userRequest.getPassword()
-                )
-            );
-
-            // Generate JWT token for the user
-            String jwt = jwtTokenUtil.generateToken(userRequest.getUserName());
-
-            // Return the token in the response
-            return ResponseEntity.ok(new JwtResponse(jwt));
-
-        } catch (AuthenticationException ex) {
-            // Fallback: return success message without token if authentication fails for some reason
-            return ResponseEntity.ok(Collections.singletonMap("message", "User registered successfully, but failed to authenticate."));
-        }
+    public CompletableFuture<ResponseEntity<?>> registerUser(@Valid @RequestBody UserRequestDto userRequest,
+                                                            HttpServletRequest request) {
+        authRateLimiter.checkIp(request.getRemoteAddr());
+        return userService.signup(userRequest.getUserName(), userRequest.getPassword())
+            .thenApply(user -> user
+                .<ResponseEntity<?>>map(created -> ResponseEntity.ok(tokenService.issueTokens(created)))
+                .orElseGet(() -> ResponseEntity.badRequest()
+                    .body(Collections.singletonMap("error", "Username is already taken."))));
     }
 
 
     @PostMapping("/signin")
-    public ResponseEntity<?> authenticateUser(@Valid @RequestBody UserRequestDto loginRequest) {
-        try {
-            Authentication authentication = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(
-                    loginRequest.getUserName(),
-                    loginRequest.getPassword()
-                )
-            );
-
-            String jwt = jwtTokenUtil.generateToken(loginRequest.getUserName());
+    public CompletableFuture<ResponseEntity<?>> authenticateUser(@Valid @RequestBody UserRequestDto loginRequest,
+                                                                HttpServletRequest request) {
+        authRateLimiter.checkIpAndUser(request.getRemoteAddr(), loginRequest.getUserName());
+        return userService.signin(loginRequest.getUserName(), loginRequest.getPassword())
+            .thenApply(user -> user
+                .<ResponseEntity<?>>map(found -> ResponseEntity.ok(tokenService.issueTokens(found)))
+                .orElseGet(() -> ResponseEntity.status(401)
+                    .body(Collections.singletonMap("error", "Invalid username or password"))));
+    }
 
-            return ResponseEntity.ok(new JwtResponse(jwt));
+    @PostMapping("/reset-password")
+    public CompletableFuture<ResponseEntity<?>> resetPassword(@Valid @RequestBody ResetPasswordDto resetRequest,
+                                                             HttpServletRequest request) {
+        authRateLimiter.checkIpAndUser(request.getRemoteAddr(), resetRequest.getUserName());
+        return userService.resetPassword(resetRequest.getUserName(), resetRequest.getNewPassword())
+            .<ResponseEntity<?>>thenApply(reset -> reset
+                ? ResponseEntity.ok(Collections.singletonMap("message", "Password successfully reset."))
+                : ResponseEntity.status(404).body(Collections.singletonMap("error", "User not found.")));
+    }
 
-        } catch (AuthenticationException ex) {
-            return ResponseEntity.status(401).body(Collections.singletonMap("error", "Invalid username or password"));
-        }
+    // Signature check plus one insert; rate limited per IP like signup
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refresh(@Valid @RequestBody RefreshTokenRequestDto refreshRequest,
+                                     HttpServletRequest request) {
+        authRateLimiter.checkIp(request.getRemoteAddr());
+        return tokenService.refresh(refreshRequest.getRefreshToken())
+            .<ResponseEntity<?>>map(ResponseEntity::ok)
+            .orElseGet(() -> ResponseEntity.status(401)
+                .body(Collections.singletonMap("error", "Invalid or expired refresh token")));
     }
 
-    @PostMapping("/reset-password")
-    public ResponseEntity<?> resetPassword(@Valid @RequestBody ResetPasswordDto resetRequest) {
-        return userRepository.findByUserName(resetRequest.getUserName())
-            .map(user -> {
-                user.setPasswordHash(passwordEncoder.encode(resetRequest.getNewPassword()));
-                userRepository.save(user);
-                return ResponseEntity.ok(Collections.singletonMap("message", "Password successfully reset."));
-            })
-            .orElseGet(() -> ResponseEntity.status(404).body(Collections.singletonMap("error", "User not found.")));
+    // Revokes the bearer token and, if sent, the refresh token. Answers 204
+    // even when they were already invalid.
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(@RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authHeader,
+                                       @RequestBody(required = false) RefreshTokenRequestDto logoutRequest,
+                                       HttpServletRequest request) {
+        authRateLimiter.checkIp(request.getRemoteAddr());
+        String accessToken = authHeader != null && authHeader.startsWith("Bearer ") ? authHeader.substring(7) : null;
+        String refreshToken = logoutRequest != null ? logoutRequest.getRefreshToken() : null;
+        tokenService.logout(accessToken, refreshToken);
+        return ResponseEntity.noContent().build();
     }
 }
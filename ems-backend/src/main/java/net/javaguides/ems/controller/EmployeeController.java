@@ -1,22 +1,30 @@
 package net.javaguides.ems.controller;
 
 import lombok.AllArgsConstructor;
+import net.javaguides.ems.dto.BulkResultDto;
+import net.javaguides.ems.dto.EmployeeChangesDto;
 import net.javaguides.ems.dto.EmployeeDto;
-import net.javaguides.ems.entity.Employee;
-import net.javaguides.ems.entity.User;
+import net.javaguides.ems.dto.EmployeeField;
+import net.javaguides.ems.dto.EmployeePageDto;
+import net.javaguides.ems.dto.ExportFormat;
+import net.javaguides.ems.exception.BadRequestException;
+import net.javaguides.ems.security.JwtPrincipal;
+import net.javaguides.ems.service.EmployeeEventService;
 import net.javaguides.ems.service.EmployeeService;
-import net.javaguides.ems.service.UserService;
 
 import java.util.List;
+import java.util.Set;
 
 // It contains predefined HttpStatus codes like (200 - OK, 201 - CREATED) etc.
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 
 // ResponseEntity is used to send back data + status code (like 201 created)
 // to the client
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -24,6 +32,8 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 
 // @RequestMapping("/api/employees") - sets base path for all the endpoints 
 // in this class. So, any API call will begin with /api/employees
@@ -31,7 +41,8 @@ import org.springframework.web.bind.annotation.RequestMapping;
 
 // @RestController tells that this class will handle REST API requests.
 import org.springframework.web.bind.annotation.RestController;
-// import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 
 
@@ -41,12 +52,7 @@ import org.springframework.web.bind.annotation.RestController;
 public class EmployeeController {
     
     private final EmployeeService employeeService;
-    private final UserService userService;
-
-    private User getCurrentUser(UserDetails userDetails) {
-        return userService.findByUserName(userDetails.getUsername())
-            .orElseThrow(() -> new RuntimeException("User" + userDetails.getUsername() + " not found: "));
-    }
+    private final EmployeeEventService employeeEventService;
 
     // @PostMapping indicates that the below method will run when someone 
     // sends a POST request to /api/employees. It is used to add an employee. 
@@ -58,16 +64,16 @@ public class EmployeeController {
     // Build Add Employee REST API
     @PostMapping
     public ResponseEntity<EmployeeDto> createEmployee(@RequestBody EmployeeDto employeeDto, 
-                                                        @AuthenticationPrincipal UserDetails userDetails) {                                                            User user = getCurrentUser(userDetails);
+                                                        @AuthenticationPrincipal JwtPrincipal principal) {
         // here employeeService is a reference variable of interface EmployeeService
         // But it only have method declaration but not definition. 
         // Here the Spring Boot creates an object by itself by finding the class 
         // which implements the interface. 
         // It finds the class with the help of the annotation @Service 
-        EmployeeDto savedEmployee = employeeService.createEmployee(employeeDto, user);
+        EmployeeDto savedEmployee = employeeService.createEmployee(employeeDto, principal.getId());
         // HttpStatus.CREATED sends the status (201 created) to indicate that
         // successful post has been done. 
-        return new ResponseEntity<>(savedEmployee, HttpStatus.CREATED);
+        return withETag(ResponseEntity.status(HttpStatus.CREATED), savedEmployee);
     }
 
     // @GetMapping is used to get the employee based on the path provided (id)
@@ -75,36 +81,182 @@ public class EmployeeController {
     // Build Get Employee REST API
     @GetMapping("{id}")
     public ResponseEntity<EmployeeDto> getEmployeeById(@PathVariable("id") Long employeeId, 
-                                                        @AuthenticationPrincipal UserDetails userDetails) {
-        User user = getCurrentUser(userDetails);
-        EmployeeDto employeeDto = employeeService.getEmployeeById(employeeId, user);
-        return ResponseEntity.ok(employeeDto);
+                                                        @RequestParam(value = "fields", required = false) String fields,
+                                                        @AuthenticationPrincipal JwtPrincipal principal) {
+        EmployeeDto employeeDto = employeeService.getEmployeeById(employeeId, principal.getId(),
+                                                                  EmployeeField.parse(fields));
+        return withETag(ResponseEntity.ok(), employeeDto);
     }
 
     // Build Get All Employees REST API 
+    // ?fields=firstName,email (on every read endpoint) limits both the
+    // columns read and the JSON returned.
+    // Without paging parameters the whole list is returned (as before).
+    // With ?limit=..&after=..&sort=id|lastName one page is returned together
+    // with the cursor of the next page.
     @GetMapping
-    public ResponseEntity<List<EmployeeDto>> getAllEmployees(@AuthenticationPrincipal UserDetails userDetails) {
-        User user = getCurrentUser(userDetails);
-        List<EmployeeDto> employees = employeeService.getAllEmployees(user);
+    public ResponseEntity<?> getAllEmployees(@RequestParam(value = "limit", required = false) Integer limit,
+                                             @RequestParam(value = "after", required = false) String after,
+                                             @RequestParam(value = "sort", required = false) String sort,
+                                             @RequestParam(value = "fields", required = false) String fields,
+                                             @AuthenticationPrincipal JwtPrincipal principal) {
+        Set<EmployeeField> selected = EmployeeField.parse(fields);
+        if (limit == null && after == null && sort == null) {
+            List<EmployeeDto> employees = employeeService.getAllEmployees(principal.getId(), selected);
+            return ResponseEntity.ok(employees);
+        }
+        EmployeePageDto page = employeeService.getEmployeesPage(principal.getId(), after, limit, sort, selected);
+        return ResponseEntity.ok(page);
+    }
+
+    // Build Stream All Employees REST API
+    // GET /api/employees?stream=true returns the same array as the whole
+    // list, written row by row while it is read, so memory use does not grow
+    // with the number of employees (for sync jobs that pull everything).
+    // It is always JSON and honours ?fields=.
+    @GetMapping(params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamAllEmployees(@RequestParam(value = "fields", required = false) String fields,
+                                                                    @RequestParam(value = "limit", required = false) Integer limit,
+                                                                    @RequestParam(value = "after", required = false) String after,
+                                                                    @AuthenticationPrincipal JwtPrincipal principal) {
+        if (limit != null || after != null) {
+            throw new BadRequestException("stream=true cannot be combined with paging");
+        }
+        Set<EmployeeField> selected = EmployeeField.parse(fields);
+        Long userId = principal.getId();
+        StreamingResponseBody body = out -> employeeService.streamEmployees(userId, selected, out);
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(body);
+    }
+
+    // Build Employee Change Stream REST API
+    // GET /api/employees/stream stays open and pushes a server-sent event
+    // for every change to the caller's employees committed from then on
+    // (created, updated, deleted), so clients can keep their list current
+    // instead of polling it. After a reconnect the list should be reloaded
+    // once, since changes made in between are not replayed. The stream is
+    // closed with an "unauthorized" event once the token expires or is
+    // revoked.
+    @GetMapping(value = "stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamEmployeeChanges(@AuthenticationPrincipal JwtPrincipal principal) {
+        SseEmitter emitter = employeeEventService.subscribe(principal);
+        return ResponseEntity.ok()
+            .cacheControl(CacheControl.noStore())
+            // Keeps buffering proxies (nginx) from holding events back
+            .header("X-Accel-Buffering", "no")
+            .body(emitter);
+    }
+
+    // Build Employee Changes REST API
+    // GET /api/employees/changes?since=<token> returns only what changed
+    // since the token: created or updated employees, the ids of deleted
+    // ones, and the token for next time. Without since, the whole list is
+    // returned with a first token. hasMore=true means call again at once;
+    // 410 means the token is too old and the client must sync without one.
+    @GetMapping("changes")
+    public ResponseEntity<EmployeeChangesDto> getEmployeeChanges(@RequestParam(value = "since", required = false) String since,
+                                                                 @RequestParam(value = "limit", required = false) Integer limit,
+                                                                 @AuthenticationPrincipal JwtPrincipal principal) {
+        EmployeeChangesDto changes = employeeService.getChanges(principal.getId(), since, limit);
+        return ResponseEntity.ok()
+            .cacheControl(CacheControl.noStore())
+            .body(changes);
+    }
+
+    // Build Batch Get Employees REST API
+    // GET /api/employees?ids=1,2,3 returns the requested employees that
+    // belong to the caller (missing ids are simply left out)
+    @GetMapping(params = "ids")
+    public ResponseEntity<List<EmployeeDto>> getEmployeesByIds(@RequestParam("ids") List<Long> employeeIds,
+                                                               @RequestParam(value = "fields", required = false) String fields,
+                                                               @AuthenticationPrincipal JwtPrincipal principal) {
+        List<EmployeeDto> employees = employeeService.getEmployeesByIds(employeeIds, principal.getId(),
+                                                                        EmployeeField.parse(fields));
         return ResponseEntity.ok(employees);
     }
+
+    // Build Export Employees REST API
+    // Streams every employee of the caller as CSV (default) or NDJSON.
+    // StreamingResponseBody writes from a separate thread while rows are
+    // read, so the first bytes are sent before the whole table is read.
+    @GetMapping("export")
+    public ResponseEntity<StreamingResponseBody> exportEmployees(@RequestParam(value = "format", defaultValue = "csv") String format,
+                                                                 @AuthenticationPrincipal JwtPrincipal principal) {
+        ExportFormat exportFormat = ExportFormat.from(format);
+        Long userId = principal.getId();
+        StreamingResponseBody body = out -> employeeService.exportEmployees(userId, exportFormat, out);
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"employees." + exportFormat.getExtension() + "\"")
+            .body(body);
+    }
+
+    // Build Search Employees REST API
+    // ?q= is matched as a prefix of first name, last name or email.
+    // Results are paged like the list endpoint; sort=relevance (default) or
+    // sort=lastName.
+    @GetMapping("search")
+    public ResponseEntity<EmployeePageDto> searchEmployees(@RequestParam("q") String query,
+                                                           @RequestParam(value = "limit", required = false) Integer limit,
+                                                           @RequestParam(value = "after", required = false) String after,
+                                                           @RequestParam(value = "sort", required = false) String sort,
+                                                           @RequestParam(value = "fields", required = false) String fields,
+                                                           @AuthenticationPrincipal JwtPrincipal principal) {
+        EmployeePageDto page = employeeService.searchEmployees(principal.getId(), query, after, limit, sort,
+                                                               EmployeeField.parse(fields));
+        return ResponseEntity.ok(page);
+    }
     
     // @PutMapping is used update an employee based on the provided id
     // Update Employee REST API 
+    // If-Match: "<version>" (the ETag of an earlier GET) makes the update
+    // conditional; a concurrent change answers 412 instead of being
+    // overwritten. Without If-Match the last write wins, as before.
     @PutMapping("{id}")
     public ResponseEntity<EmployeeDto> updateEmployee(@PathVariable("id") Long employeeId, 
                                                     @RequestBody EmployeeDto updatedEmployee, 
-                                                    @AuthenticationPrincipal UserDetails userDetails) {
-        User user = getCurrentUser(userDetails);
-        EmployeeDto employeeDto = employeeService.updateEmployee(employeeId, updatedEmployee, user);
-        return ResponseEntity.ok(employeeDto);
+                                                    @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                    @AuthenticationPrincipal JwtPrincipal principal) {
+        EmployeeDto employeeDto = employeeService.updateEmployee(employeeId, updatedEmployee, principal.getId(),
+                                                                 IfMatch.parse(ifMatch));
+        return withETag(ResponseEntity.ok(), employeeDto);
     }
 
     @DeleteMapping("{id}")
     public ResponseEntity<String> deleteEmployee(@PathVariable("id") Long employeeId, 
-                                                @AuthenticationPrincipal UserDetails userDetails) {
-        User user = getCurrentUser(userDetails);
-        employeeService.deleteEmployee(employeeId, user);
+                                                @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                @AuthenticationPrincipal JwtPrincipal principal) {
+        employeeService.deleteEmployee(employeeId, principal.getId(), IfMatch.parse(ifMatch));
         return ResponseEntity.ok("Employee with id " + employeeId + " deleted successfully.");
     }
-}
\ No newline at end of file
+
+    // Bulk REST APIs
+    // Each item is processed independently and reported in the result, so
+    // one bad row does not reject the rest of the batch.
+    @PostMapping("batch")
+    public ResponseEntity<BulkResultDto> createEmployees(@RequestBody List<EmployeeDto> employees,
+                                                         @AuthenticationPrincipal JwtPrincipal principal) {
+        return ResponseEntity.ok(employeeService.createEmployees(employees, principal.getId()));
+    }
+
+    @PutMapping("batch")
+    public ResponseEntity<BulkResultDto> updateEmployees(@RequestBody List<EmployeeDto> employees,
+                                                         @AuthenticationPrincipal JwtPrincipal principal) {
+        return ResponseEntity.ok(employeeService.updateEmployees(employees, principal.getId()));
+    }
+
+    @DeleteMapping("batch")
+    public ResponseEntity<BulkResultDto> deleteEmployees(@RequestParam("ids") List<Long> employeeIds,
+                                                         @AuthenticationPrincipal JwtPrincipal principal) {
+        return ResponseEntity.ok(employeeService.deleteEmployees(employeeIds, principal.getId()));
+    }
+
+    // The ETag is the row version, so it can be sent back as If-Match
+    private static ResponseEntity<EmployeeDto> withETag(ResponseEntity.BodyBuilder builder, EmployeeDto employee) {
+        if (employee.getVersion() != null) {
+            builder.eTag(String.valueOf(employee.getVersion()));
+        }
+        return builder.body(employee);
+    }
+}
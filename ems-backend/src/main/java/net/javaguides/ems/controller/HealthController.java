@@ -1,5 +1,9 @@
 package net.javaguides.ems.controller;
 
+import org.springframework.boot.actuate.health.HealthComponent;
+import org.springframework.boot.actuate.health.HealthEndpoint;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -7,12 +11,24 @@ import org.springframework.web.bind.annotation.RestController;
 import java.util.Collections;
 import java.util.Map;
 
+import lombok.AllArgsConstructor;
+
+// Kept for existing clients. The status now comes from the actuator
+// readiness group (application state + database), the same check as
+// /actuator/health/readiness on the management port, and is 503 when the
+// application cannot serve requests.
+@AllArgsConstructor
 @RestController
 @RequestMapping("/api")
 public class HealthController {
 
+    private final HealthEndpoint healthEndpoint;
+
     @GetMapping("/health")
     public ResponseEntity<Map<String, String>> healthCheck() {
-        return ResponseEntity.ok(Collections.singletonMap("status", "UP"));
+        HealthComponent readiness = healthEndpoint.healthForPath("readiness");
+        Status status = readiness != null ? readiness.getStatus() : Status.UNKNOWN;
+        HttpStatus httpStatus = Status.UP.equals(status) ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE;
+        return ResponseEntity.status(httpStatus).body(Collections.singletonMap("status", status.getCode()));
     }
 }
@@ -0,0 +1,32 @@
+package net.javaguides.ems.controller;
+
+import net.javaguides.ems.exception.PreconditionFailedException;
+
+// The If-Match header of conditional updates and deletes. The ETag is the
+// row version, so the header carries the version the client last read.
+// Also used by ems-reactive's controller, so both answer the same way.
+public final class IfMatch {
+
+    private IfMatch() {
+    }
+
+    // Parses If-Match: "3" (or W/"3"). "*" or no header means no version
+    // check. Anything else can never match a version, so it fails with 412.
+    public static Long parse(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            tag = tag.substring(1, tag.length() - 1);
+        }
+        try {
+            return Long.valueOf(tag);
+        } catch (NumberFormatException e) {
+            throw new PreconditionFailedException("If-Match does not match the current version");
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package net.javaguides.ems.controller;
+
+import java.net.URI;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import lombok.AllArgsConstructor;
+import net.javaguides.ems.dto.ImportJobDto;
+import net.javaguides.ems.security.JwtPrincipal;
+import net.javaguides.ems.service.ImportService;
+
+@AllArgsConstructor
+@RestController
+@RequestMapping("/api/employees/import")
+public class ImportController {
+
+    private final ImportService importService;
+
+    // Upload a CSV file (multipart field "file") with a header row naming
+    // firstName, lastName and email columns. The import runs in the
+    // background; 202 Accepted points to the status resource.
+    @PostMapping
+    public ResponseEntity<ImportJobDto> startImport(@RequestParam("file") MultipartFile file,
+                                                    @AuthenticationPrincipal JwtPrincipal principal) {
+        ImportJobDto job = importService.startImport(file, principal.getId());
+        URI location = ServletUriComponentsBuilder.fromCurrentRequest()
+            .path("/{id}")
+            .buildAndExpand(job.getId())
+            .toUri();
+        return ResponseEntity.accepted().location(location).body(job);
+    }
+
+    // Progress and per-row errors of an import
+    @GetMapping("{jobId}")
+    public ResponseEntity<ImportJobDto> getImport(@PathVariable("jobId") String jobId,
+                                                  @AuthenticationPrincipal JwtPrincipal principal) {
+        return ResponseEntity.ok(importService.getImport(jobId, principal.getId()));
+    }
+}
@@ -0,0 +1,123 @@
+package net.javaguides.ems.datasource;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Chooses the database for each new connection:
+// - read-only transactions (@Transactional(readOnly = true)) go to one of
+//   the replicas, taken in turn, as long as it passed its last health and
+//   lag check
+// - everything else - writes, and work outside a transaction - goes to
+//   the primary
+// - reads of a user who has just written go to the primary too
+//   (ReadYourWritesTracker)
+// With no replica available, reads fall back to the primary.
+// The transaction's read-only flag is only known after the transaction
+// has begun, so this data source must sit behind a
+// LazyConnectionDataSourceProxy, which takes the real connection on the
+// first statement.
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+
+    private final DataSource primary;
+    private final List<ReplicaDataSource> replicas;
+    private final ReadYourWritesTracker readYourWrites;
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final Counter replicaReads;
+    private final Counter stickyReads;
+    private final Counter fallbackReads;
+
+    public ReadWriteRoutingDataSource(DataSource primary, List<ReplicaDataSource> replicas,
+                                      ReadYourWritesTracker readYourWrites, MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.readYourWrites = readYourWrites;
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (ReplicaDataSource replica : this.replicas) {
+            targets.put(replica.getName(), replica.getDataSource());
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        // An unknown key is a bug here, not a reason to use the primary
+        setLenientFallback(false);
+        afterPropertiesSet();
+
+        this.replicaReads = readCounter(meterRegistry, "replica");
+        this.stickyReads = readCounter(meterRegistry, "primary-after-write");
+        this.fallbackReads = readCounter(meterRegistry, "primary-no-replica");
+    }
+
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    public List<ReplicaDataSource> getReplicas() {
+        return replicas;
+    }
+
+    // Closes the pools when the context shuts down
+    public void close() throws Exception {
+        for (ReplicaDataSource replica : replicas) {
+            closeIfPossible(replica.getDataSource());
+        }
+        closeIfPossible(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            readYourWrites.onReadWriteTransaction();
+            return PRIMARY;
+        }
+        if (readYourWrites.isSticky()) {
+            stickyReads.increment();
+            return PRIMARY;
+        }
+        ReplicaDataSource replica = nextAvailableReplica();
+        if (replica == null) {
+            fallbackReads.increment();
+            return PRIMARY;
+        }
+        replicaReads.increment();
+        return replica.getName();
+    }
+
+    private ReplicaDataSource nextAvailableReplica() {
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(1, size));
+        for (int i = 0; i < size; i++) {
+            ReplicaDataSource replica = replicas.get((start + i) % size);
+            if (replica.isAvailable()) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    private static void closeIfPossible(DataSource dataSource) throws Exception {
+        if (dataSource instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    private static Counter readCounter(MeterRegistry meterRegistry, String route) {
+        return Counter.builder("ems.datasource.reads")
+            .description("Connections taken by read-only transactions, by where they were routed")
+            .tag("route", route)
+            .register(meterRegistry);
+    }
+}
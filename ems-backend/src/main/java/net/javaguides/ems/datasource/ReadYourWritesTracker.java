@@ -0,0 +1,77 @@
+package net.javaguides.ems.datasource;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import net.javaguides.ems.security.JwtPrincipal;
+
+// Sends a user's reads to the primary for a short while after that user
+// committed a write, so a list fetched right after a create or an edit
+// shows the change even when the replicas have not applied it yet.
+// Other users keep reading from the replicas. The window is per instance;
+// behind a load balancer without sticky sessions a user can still read a
+// replica through another instance, bounded by the replica lag limit.
+public class ReadYourWritesTracker {
+
+    private final long stickyMillis;
+    private final int maxUsers;
+    // userId -> time (ms) until which reads go to the primary
+    private final ConcurrentHashMap<Long, Long> stickyUntil = new ConcurrentHashMap<>();
+
+    public ReadYourWritesTracker(long stickyMillis, int maxUsers) {
+        this.stickyMillis = stickyMillis;
+        this.maxUsers = maxUsers;
+    }
+
+    // Called when a read-write transaction takes its connection. The user
+    // is only marked once the transaction commits; a rollback changed
+    // nothing worth waiting for.
+    public void onReadWriteTransaction() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || !TransactionSynchronizationManager.isActualTransactionActive()) {
+            return;
+        }
+        Long userId = currentUserId();
+        if (userId == null) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                markWrite(userId);
+            }
+        });
+    }
+
+    public void markWrite(Long userId) {
+        if (stickyUntil.size() >= maxUsers) {
+            expire();
+        }
+        stickyUntil.put(userId, System.currentTimeMillis() + stickyMillis);
+    }
+
+    public boolean isSticky() {
+        Long userId = currentUserId();
+        if (userId == null) {
+            return false;
+        }
+        Long until = stickyUntil.get(userId);
+        return until != null && until > System.currentTimeMillis();
+    }
+
+    public void expire() {
+        long now = System.currentTimeMillis();
+        stickyUntil.values().removeIf(until -> until <= now);
+    }
+
+    private static Long currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.getPrincipal() instanceof JwtPrincipal principal
+            ? principal.getId()
+            : null;
+    }
+}
@@ -0,0 +1,41 @@
+package net.javaguides.ems.datasource;
+
+import javax.sql.DataSource;
+
+// One read replica's pool and its state from the last health check.
+// Read by the routing data source on every connection request, written
+// only by ReplicaHealthMonitor.
+public class ReplicaDataSource {
+
+    private final String name;
+    private final DataSource dataSource;
+    private volatile boolean available;
+    private volatile long lagMillis = -1;
+
+    public ReplicaDataSource(String name, DataSource dataSource) {
+        this.name = name;
+        this.dataSource = dataSource;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    public boolean isAvailable() {
+        return available;
+    }
+
+    // -1 while the lag is unknown (not checked yet, or unreachable)
+    public long getLagMillis() {
+        return lagMillis;
+    }
+
+    void update(boolean available, long lagMillis) {
+        this.available = available;
+        this.lagMillis = lagMillis;
+    }
+}
@@ -0,0 +1,136 @@
+package net.javaguides.ems.datasource;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Decides which replicas may serve reads. On every check it:
+// 1. reads the heartbeat row on the primary
+// 2. reads the same row on each replica; the difference is that replica's
+//    lag (0 when it has applied everything up to the last beat)
+// 3. writes a new beat to the primary for the next check
+// A replica that does not answer within the timeout, has no heartbeat
+// yet, or lags by more than maxLagMillis is taken out of rotation until a
+// later check passes. Lag is measured in steps of the check interval.
+// Replication itself is not managed here; the replicas are expected to be
+// read-only copies of the primary (e.g. MySQL replication).
+public class ReplicaHealthMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaHealthMonitor.class);
+
+    private static final int HEARTBEAT_ID = 1;
+    private static final String SELECT_BEAT = "SELECT beat_at FROM replication_heartbeat WHERE id = ?";
+    private static final String UPDATE_BEAT = "UPDATE replication_heartbeat SET beat_at = ? WHERE id = ?";
+    private static final String INSERT_BEAT = "INSERT INTO replication_heartbeat (id, beat_at) VALUES (?, ?)";
+
+    private final JdbcTemplate primary;
+    private final List<ReplicaDataSource> replicas;
+    private final List<JdbcTemplate> replicaTemplates;
+    private final ReadYourWritesTracker readYourWrites;
+    private final long maxLagMillis;
+
+    public ReplicaHealthMonitor(DataSource primary, List<ReplicaDataSource> replicas,
+                                ReadYourWritesTracker readYourWrites, MeterRegistry meterRegistry,
+                                long maxLagMillis, int checkTimeoutSeconds) {
+        this.primary = jdbcTemplate(primary, checkTimeoutSeconds);
+        this.replicas = List.copyOf(replicas);
+        this.replicaTemplates = this.replicas.stream()
+            .map(replica -> jdbcTemplate(replica.getDataSource(), checkTimeoutSeconds))
+            .toList();
+        this.readYourWrites = readYourWrites;
+        this.maxLagMillis = maxLagMillis;
+
+        for (ReplicaDataSource replica : this.replicas) {
+            Gauge.builder("ems.datasource.replica.lag", replica, ReplicaDataSource::getLagMillis)
+                .description("Replication lag seen by the last health check in ms, -1 when unknown")
+                .baseUnit("milliseconds")
+                .tag("replica", replica.getName())
+                .register(meterRegistry);
+            Gauge.builder("ems.datasource.replica.available", replica, r -> r.isAvailable() ? 1 : 0)
+                .description("1 while the replica serves reads")
+                .tag("replica", replica.getName())
+                .register(meterRegistry);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${ems.datasource.routing.checkIntervalMs:1000}")
+    public synchronized void check() {
+        Instant primaryBeat;
+        try {
+            primaryBeat = readBeat(primary);
+        } catch (DataAccessException e) {
+            // Without the primary's beat no lag can be measured; reads keep
+            // the routing of the last successful check
+            log.warn("Could not read the replication heartbeat on the primary", e);
+            return;
+        }
+
+        for (int i = 0; i < replicas.size(); i++) {
+            ReplicaDataSource replica = replicas.get(i);
+            boolean wasAvailable = replica.isAvailable();
+            long lag = lagOf(replicaTemplates.get(i), replica, primaryBeat);
+            boolean available = lag >= 0 && lag <= maxLagMillis;
+            replica.update(available, lag);
+            if (available != wasAvailable) {
+                log.info("Replica {} {} (lag {} ms)", replica.getName(),
+                    available ? "serves reads again" : "taken out of rotation", lag);
+            }
+        }
+
+        try {
+            writeBeat(Instant.now());
+        } catch (DataAccessException e) {
+            log.warn("Could not write the replication heartbeat", e);
+        }
+        readYourWrites.expire();
+    }
+
+    private long lagOf(JdbcTemplate replicaTemplate, ReplicaDataSource replica, Instant primaryBeat) {
+        if (primaryBeat == null) {
+            // First check after the table was created: nothing to compare yet
+            return -1;
+        }
+        try {
+            Instant replicaBeat = readBeat(replicaTemplate);
+            return replicaBeat == null ? -1 : Math.max(0, primaryBeat.toEpochMilli() - replicaBeat.toEpochMilli());
+        } catch (DataAccessException e) {
+            log.debug("Health check of replica {} failed", replica.getName(), e);
+            return -1;
+        }
+    }
+
+    private static Instant readBeat(JdbcTemplate jdbcTemplate) {
+        List<Timestamp> beats = jdbcTemplate.queryForList(SELECT_BEAT, Timestamp.class, HEARTBEAT_ID);
+        return beats.isEmpty() ? null : beats.get(0).toInstant();
+    }
+
+    // Several instances may beat at once; the row only has to move forward
+    private void writeBeat(Instant now) {
+        Timestamp beat = Timestamp.from(now);
+        if (primary.update(UPDATE_BEAT, beat, HEARTBEAT_ID) == 0) {
+            try {
+                primary.update(INSERT_BEAT, HEARTBEAT_ID, beat);
+            } catch (DuplicateKeyException e) {
+                // Another instance inserted it first
+            }
+        }
+    }
+
+    private static JdbcTemplate jdbcTemplate(DataSource dataSource, int timeoutSeconds) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setQueryTimeout(timeoutSeconds);
+        return jdbcTemplate;
+    }
+}
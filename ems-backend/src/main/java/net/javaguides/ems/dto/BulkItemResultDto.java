@@ -0,0 +1,43 @@
+package net.javaguides.ems.dto;
+
+// Outcome of one item of a bulk request. index is the position of the item
+// in the request so the client can match results to what it sent. version
+// is the row's version after a create or update, for the next If-Match.
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkItemResultDto {
+
+    public enum Status {
+        CREATED,
+        UPDATED,
+        DELETED,
+        NOT_FOUND,
+        CONFLICT,
+        INVALID
+    }
+
+    private int index;
+    private Long id;
+    private Status status;
+    private String error;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long version;
+
+    public BulkItemResultDto(int index, Long id, Status status, String error) {
+        this(index, id, status, error, null);
+    }
+
+    public boolean isSuccess() {
+        return status == Status.CREATED || status == Status.UPDATED || status == Status.DELETED;
+    }
+}
@@ -0,0 +1,25 @@
+package net.javaguides.ems.dto;
+
+// Summary of a bulk request together with the result of every item.
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkResultDto {
+    private int succeeded;
+    private int failed;
+    private List<BulkItemResultDto> items;
+
+    public static BulkResultDto of(List<BulkItemResultDto> items) {
+        int succeeded = (int) items.stream().filter(BulkItemResultDto::isSuccess).count();
+        return new BulkResultDto(succeeded, items.size() - succeeded, items);
+    }
+}
@@ -0,0 +1,47 @@
+package net.javaguides.ems.dto;
+
+// ChangeToken is how far a client has synced: every change up to and
+// including position (changeSeq, id), in the order of the change feed. Like
+// EmployeeCursor it is sent as an opaque Base64 string. A token for a
+// completed change has id Long.MAX_VALUE, so the next sync starts with
+// the following change.
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import net.javaguides.ems.exception.BadRequestException;
+
+@Getter
+@AllArgsConstructor
+public class ChangeToken {
+
+    private final long changeSeq;
+    private final long id;
+
+    // Everything up to and including the given change
+    public static ChangeToken through(long changeSeq) {
+        return new ChangeToken(changeSeq, Long.MAX_VALUE);
+    }
+
+    // The last change the client has seen in full
+    public long getCompleteSeq() {
+        return id == Long.MAX_VALUE ? changeSeq : changeSeq - 1;
+    }
+
+    public String encode() {
+        String raw = changeSeq + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ChangeToken decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 2);
+            return new ChangeToken(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new BadRequestException("Invalid change token: " + token);
+        }
+    }
+}
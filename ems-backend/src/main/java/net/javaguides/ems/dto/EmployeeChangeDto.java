@@ -0,0 +1,60 @@
+package net.javaguides.ems.dto;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// A committed change to a user's employees, as pushed on
+// GET /api/employees/stream. CREATED and UPDATED carry the employees as
+// saved, DELETED only their ids. RESYNC carries nothing: more changed than
+// is worth sending, or the connection fell behind, so the client should
+// reload the list.
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmployeeChangeDto {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED,
+        RESYNC
+    }
+
+    // Whose connections receive it; not sent
+    @JsonIgnore
+    private Long userId;
+    private Type type;
+    private List<EmployeeDto> employees;
+    private List<Long> ids;
+
+    public static EmployeeChangeDto created(Long userId, List<EmployeeDto> employees) {
+        return new EmployeeChangeDto(userId, Type.CREATED, employees, null);
+    }
+
+    public static EmployeeChangeDto updated(Long userId, List<EmployeeDto> employees) {
+        return new EmployeeChangeDto(userId, Type.UPDATED, employees, null);
+    }
+
+    public static EmployeeChangeDto deleted(Long userId, List<Long> ids) {
+        return new EmployeeChangeDto(userId, Type.DELETED, null, ids);
+    }
+
+    public static EmployeeChangeDto resync(Long userId) {
+        return new EmployeeChangeDto(userId, Type.RESYNC, null, null);
+    }
+
+    // Number of employees it is about
+    @JsonIgnore
+    public int size() {
+        return employees != null ? employees.size() : ids != null ? ids.size() : 0;
+    }
+}
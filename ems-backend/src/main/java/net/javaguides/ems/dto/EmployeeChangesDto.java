@@ -0,0 +1,27 @@
+package net.javaguides.ems.dto;
+
+// One answer of GET /api/employees/changes: the employees created or
+// updated since the client's token, the ids of the ones deleted since, and
+// the token to send next time. full is true when the answer is the whole
+// list rather than a delta (first sync); the client then replaces what it
+// has. hasMore means more changes are waiting: call again right away with
+// the new token.
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmployeeChangesDto {
+    private List<EmployeeDto> changed;
+    private List<Long> deleted;
+    private String token;
+    private boolean hasMore;
+    private boolean full;
+}
@@ -0,0 +1,84 @@
+package net.javaguides.ems.dto;
+
+// EmployeeCursor is the position of the last row of a page. It is sent to the
+// client as an opaque Base64 string and decoded again on the next request, so
+// the database can continue with "WHERE (sort key, id) > (cursor)" instead of
+// skipping over OFFSET rows.
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import net.javaguides.ems.exception.BadRequestException;
+
+@Getter
+@AllArgsConstructor
+public class EmployeeCursor {
+
+    // Supported sort orders. Every order ends with id so it is stable even
+    // when several employees share the same last name.
+    public enum SortKey {
+        ID("id"),
+        LAST_NAME("lastName"),
+        RELEVANCE("relevance");
+
+        private final String param;
+
+        SortKey(String param) {
+            this.param = param;
+        }
+
+        public static SortKey from(String value) {
+            if (value == null || value.isBlank()) {
+                return ID;
+            }
+            for (SortKey key : values()) {
+                if (key.param.equalsIgnoreCase(value)) {
+                    return key;
+                }
+            }
+            throw new BadRequestException("Unsupported sort: " + value);
+        }
+    }
+
+    private final SortKey sortKey;
+    // Search relevance bucket of the row (0 = best); unused by the other sorts
+    private final int rank;
+    private final String lastName;
+    private final Long id;
+
+    // Position before the first row, used when the client sends no cursor
+    public static EmployeeCursor first(SortKey sortKey) {
+        return new EmployeeCursor(sortKey, -1, "", 0L);
+    }
+
+    public static EmployeeCursor after(EmployeeDto employee, SortKey sortKey) {
+        return after(employee, sortKey, -1);
+    }
+
+    public static EmployeeCursor after(EmployeeDto employee, SortKey sortKey, int rank) {
+        String lastName = employee.getLastName() == null ? "" : employee.getLastName();
+        return new EmployeeCursor(sortKey, rank, lastName, employee.getId());
+    }
+
+    public String encode() {
+        String raw = sortKey.name() + "|" + id + "|" + rank + "|" + lastName;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static EmployeeCursor decode(String token, SortKey expected) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            // lastName is last so it may itself contain the separator
+            String[] parts = raw.split("\\|", 4);
+            SortKey sortKey = SortKey.valueOf(parts[0]);
+            if (sortKey != expected) {
+                throw new BadRequestException("Cursor was issued for a different sort order");
+            }
+            return new EmployeeCursor(sortKey, Integer.parseInt(parts[2]), parts[3], Long.parseLong(parts[1]));
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new BadRequestException("Invalid cursor: " + token);
+        }
+    }
+}
@@ -7,11 +7,16 @@ package net.javaguides.ems.dto;
 // We can customize the data structure sent to the client by including only required fields.
 // We map between the Employee and EmployeeDto classes in the service layer to use them interchangeably.
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+// Fields that were not selected with ?fields= are null and left out of the
+// JSON
+@JsonInclude(JsonInclude.Include.NON_NULL)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -22,6 +27,7 @@ public class EmployeeDto {
     private String lastName;
     private String email;
     private Long userId;
+    private Long version;
 
     public EmployeeDto(Long id, String firstName, String lastName, String email) {
         this.id = id;
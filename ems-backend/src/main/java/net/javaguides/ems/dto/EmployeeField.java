@@ -0,0 +1,98 @@
+package net.javaguides.ems.dto;
+
+// The employee fields a client can ask for with ?fields=firstName,email.
+// Each field knows its JSON name and its column, so the same list narrows
+// both the SELECT and the response body.
+
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import net.javaguides.ems.exception.BadRequestException;
+
+public enum EmployeeField {
+    ID("id", "id"),
+    FIRST_NAME("firstName", "first_name"),
+    LAST_NAME("lastName", "last_name"),
+    EMAIL("email", "email_id"),
+    USER_ID("userId", "user_id"),
+    VERSION("version", "version");
+
+    private final String param;
+    private final String column;
+
+    EmployeeField(String param, String column) {
+        this.param = param;
+        this.column = column;
+    }
+
+    public String getParam() {
+        return param;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    // True when every field was requested (no ?fields or all of them)
+    public static boolean isAll(Set<EmployeeField> fields) {
+        return fields.size() == values().length;
+    }
+
+    // No fields parameter means every field
+    public static Set<EmployeeField> parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return EnumSet.allOf(EmployeeField.class);
+        }
+        EnumSet<EmployeeField> selected = EnumSet.noneOf(EmployeeField.class);
+        for (String name : fields.split(",")) {
+            selected.add(fromParam(name.trim()));
+        }
+        return selected;
+    }
+
+    // SELECT list for the given fields plus any extra ones a query needs
+    // (the id is always read because paging and updates rely on it)
+    public static String columns(Set<EmployeeField> fields, EmployeeField... required) {
+        EnumSet<EmployeeField> selected = EnumSet.of(ID);
+        selected.addAll(fields);
+        for (EmployeeField field : required) {
+            selected.add(field);
+        }
+        return selected.stream().map(EmployeeField::getColumn).collect(Collectors.joining(", "));
+    }
+
+    // Clears the values that were read only for internal use (such as the
+    // sort key of a cursor) and not asked for by the client
+    public static EmployeeDto retainOnly(EmployeeDto employee, Set<EmployeeField> fields) {
+        if (!fields.contains(ID)) {
+            employee.setId(null);
+        }
+        if (!fields.contains(FIRST_NAME)) {
+            employee.setFirstName(null);
+        }
+        if (!fields.contains(LAST_NAME)) {
+            employee.setLastName(null);
+        }
+        if (!fields.contains(EMAIL)) {
+            employee.setEmail(null);
+        }
+        if (!fields.contains(USER_ID)) {
+            employee.setUserId(null);
+        }
+        if (!fields.contains(VERSION)) {
+            employee.setVersion(null);
+        }
+        return employee;
+    }
+
+    private static EmployeeField fromParam(String name) {
+        for (EmployeeField field : values()) {
+            if (field.param.toLowerCase(Locale.ROOT).equals(name.toLowerCase(Locale.ROOT))) {
+                return field;
+            }
+        }
+        throw new BadRequestException("Unknown field: " + name);
+    }
+}
@@ -0,0 +1,22 @@
+package net.javaguides.ems.dto;
+
+// One page of employees returned by cursor (keyset) pagination.
+// nextCursor is an opaque token: the client sends it back as ?after=... to
+// get the following page. It is null when there are no more rows.
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmployeePageDto {
+    private List<EmployeeDto> items;
+    private String nextCursor;
+    private boolean hasMore;
+}
@@ -0,0 +1,38 @@
+package net.javaguides.ems.dto;
+
+// Progress of a CSV import, returned by the import status resource.
+// errors holds at most a fixed number of entries; errorsTruncated tells the
+// client that more rows failed than are listed.
+
+import java.time.Instant;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportJobDto {
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    private String id;
+    private Status status;
+    private long rowsRead;
+    private long rowsImported;
+    private long rowsFailed;
+    private List<ImportRowErrorDto> errors;
+    private boolean errorsTruncated;
+    private String failureReason;
+    private Instant createdAt;
+    private Instant finishedAt;
+}
@@ -0,0 +1,17 @@
+package net.javaguides.ems.dto;
+
+// A CSV row that could not be imported, with the line it starts on.
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportRowErrorDto {
+    private long line;
+    private String message;
+}
@@ -1,15 +1,37 @@
 package net.javaguides.ems.dto;
 
+// token is the short-lived access token sent as "Bearer"; refreshToken is
+// exchanged at /auth/refresh for a new pair. expiresIn is the access
+// token's lifetime in seconds.
 public class JwtResponse {
     private String token;
+    private String refreshToken;
+    private long expiresIn;
 
     public JwtResponse(String token) {
         this.token = token;
     }
+    public JwtResponse(String token, String refreshToken, long expiresIn) {
+        this.token = token;
+        this.refreshToken = refreshToken;
+        this.expiresIn = expiresIn;
+    }
     public String getToken() {
         return token;
     }
     public void setToken(String token) {
         this.token = token;
     }
+    public String getRefreshToken() {
+        return refreshToken;
+    }
+    public void setRefreshToken(String refreshToken) {
+        this.refreshToken = refreshToken;
+    }
+    public long getExpiresIn() {
+        return expiresIn;
+    }
+    public void setExpiresIn(long expiresIn) {
+        this.expiresIn = expiresIn;
+    }
 }
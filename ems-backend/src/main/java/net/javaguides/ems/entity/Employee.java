@@ -22,6 +22,18 @@ import jakarta.persistence.GenerationType;
 
 // @Table - used to specify table name
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
+
+import java.time.Instant;
+// Second-level cache: rows are kept in an in-process cache (see
+// application.conf) so repeated reads do not go to MySQL
+import jakarta.persistence.Cacheable;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 // lombok allows to reduce boiler plate code 
 import lombok.AllArgsConstructor;
@@ -35,6 +47,9 @@ import lombok.Setter;
 @AllArgsConstructor 
 @Entity 
 @Table(name = "employees")  
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@NaturalIdCache
 public class Employee {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -46,9 +61,31 @@ public class Employee {
     @Column(name = "last_name")
     private String lastName;
 
+    // The email is unique, so it doubles as a (changeable) natural id that
+    // can be looked up through the cache
+    @NaturalId(mutable = true)
     @Column(name = "email_id", nullable = false, unique = true)
     private String email;
 
+    // Optimistic locking: incremented on every update and exposed to clients
+    // as the ETag / If-Match value. Rows created before this column existed
+    // start at 0.
+    @Version
+    @ColumnDefault("0")
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    // Delta sync: the per-user number of the write that last changed the
+    // row (EmployeeChangeRepository.nextChangeSeq) and when it happened.
+    // Set by the service on every write; rows older than the column start
+    // at 0.
+    @ColumnDefault("0")
+    @Column(name = "change_seq", nullable = false)
+    private Long changeSeq;
+
+    @Column(name = "updated_at")
+    private Instant updatedAt;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
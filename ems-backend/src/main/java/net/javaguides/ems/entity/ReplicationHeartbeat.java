@@ -0,0 +1,31 @@
+package net.javaguides.ems.entity;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// A single row that the application rewrites on the primary on every
+// replica health check while read replicas are configured. How far a
+// replica's copy of the row trails the primary's is its replication lag
+// (ReplicaHealthMonitor). Only written and read through plain JDBC; the
+// entity is here so the table is part of the schema.
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "replication_heartbeat")
+public class ReplicationHeartbeat {
+
+    @Id
+    private Integer id;
+
+    @Column(name = "beat_at", nullable = false)
+    private Instant beatAt;
+}
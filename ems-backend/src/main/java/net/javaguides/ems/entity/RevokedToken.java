@@ -0,0 +1,69 @@
+package net.javaguides.ems.entity;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import org.springframework.data.domain.Persistable;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// One row per revoked token (logout, or a refresh token that was used up),
+// kept until the token would have expired anyway. Every instance keeps an
+// in-memory Bloom filter of these ids (TokenRevocationRegistry); the table
+// is what survives a restart and what other instances poll.
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "revoked_tokens", indexes = {
+    @Index(name = "idx_revoked_tokens_revoked_at", columnList = "revoked_at"),
+    @Index(name = "idx_revoked_tokens_expires_at", columnList = "expires_at")
+})
+public class RevokedToken implements Persistable<String> {
+
+    // The token's jti claim
+    @Id
+    @Column(name = "jti", length = 36)
+    private String id;
+
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    @Column(name = "revoked_at", nullable = false)
+    private Instant revokedAt;
+
+    // Always inserted, never merged: revoking the same id twice fails on
+    // the primary key, which is how a refresh token is used only once
+    @Transient
+    private boolean isNew = true;
+
+    public RevokedToken(String id, Long userId, Instant expiresAt, Instant revokedAt) {
+        this.id = id;
+        this.userId = userId;
+        this.expiresAt = expiresAt;
+        this.revokedAt = revokedAt;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+}
@@ -0,0 +1,15 @@
+package net.javaguides.ems.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+// Thrown when a change token is older than what the server still keeps
+// (its tombstones were compacted). Spring answers with 410 (Gone) and the
+// client should do a full sync, i.e. ask for changes without a token.
+@ResponseStatus(value = HttpStatus.GONE)
+public class GoneException extends RuntimeException {
+
+    public GoneException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,15 @@
+package net.javaguides.ems.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+// Thrown when an If-Match version no longer matches the stored row, i.e.
+// someone else changed it first. Spring answers with 412 (Precondition
+// Failed) and the client should reload before retrying.
+@ResponseStatus(value = HttpStatus.PRECONDITION_FAILED)
+public class PreconditionFailedException extends RuntimeException {
+
+    public PreconditionFailedException(String message) {
+        super(message);
+    }
+}
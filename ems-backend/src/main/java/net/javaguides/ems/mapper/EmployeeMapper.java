@@ -25,6 +25,7 @@ public class EmployeeMapper {
         if (employee.getUser() != null) {
             dto.setUserId(employee.getUser().getId());
         }
+        dto.setVersion(employee.getVersion());
         return dto;
     }
 
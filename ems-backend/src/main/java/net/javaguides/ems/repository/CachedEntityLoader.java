@@ -0,0 +1,48 @@
+package net.javaguides.ems.repository;
+
+// Loads entities by id or natural id so that a second-level cache hit is
+// answered without touching the database.
+// Repository methods normally run in a (read-only) transaction, which
+// checks out a JDBC connection and toggles autocommit even when the entity
+// is then found in the cache. Here a plain EntityManager without a
+// transaction is used instead; Hibernate only takes a connection on a
+// cache miss. Inside an existing transaction its EntityManager is reused.
+
+import java.util.Optional;
+import java.util.function.Function;
+
+import org.hibernate.Session;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
+final class CachedEntityLoader {
+
+    private CachedEntityLoader() {
+    }
+
+    static <T> Optional<T> find(EntityManagerFactory entityManagerFactory, Class<T> type, Object id) {
+        return withEntityManager(entityManagerFactory, em -> Optional.ofNullable(em.find(type, id)));
+    }
+
+    static <T> Optional<T> findByNaturalId(EntityManagerFactory entityManagerFactory, Class<T> type,
+                                           Object naturalId) {
+        return withEntityManager(entityManagerFactory,
+            em -> em.unwrap(Session.class).bySimpleNaturalId(type).loadOptional(naturalId));
+    }
+
+    private static <R> R withEntityManager(EntityManagerFactory entityManagerFactory,
+                                           Function<EntityManager, R> work) {
+        EntityManager current = EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory);
+        if (current != null) {
+            return work.apply(current);
+        }
+        EntityManager em = entityManagerFactory.createEntityManager();
+        try {
+            return work.apply(em);
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package net.javaguides.ems.repository;
+
+import java.util.Optional;
+
+import net.javaguides.ems.entity.Employee;
+
+// Employee lookups that are served from the second-level cache when the
+// row is cached. Spring Data picks up EmployeeCachedRepositoryImpl as the
+// implementation.
+public interface EmployeeCachedRepository {
+    Optional<Employee> findCachedById(Long id);
+
+    Optional<Employee> findByEmail(String email);
+}
@@ -0,0 +1,31 @@
+package net.javaguides.ems.repository;
+
+import java.util.Optional;
+
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceUnit;
+
+import net.javaguides.ems.entity.Employee;
+
+public class EmployeeCachedRepositoryImpl implements EmployeeCachedRepository {
+
+    @PersistenceUnit
+    private EntityManagerFactory entityManagerFactory;
+
+    @Override
+    public Optional<Employee> findCachedById(Long id) {
+        return CachedEntityLoader.find(entityManagerFactory, Employee.class, id);
+    }
+
+    // The email natural id is mutable and some updates bypass Hibernate
+    // (EmployeeJdbcRepository), so a cached email -> id entry can be out of
+    // date. The loaded row is checked, which makes such an entry harmless.
+    @Override
+    public Optional<Employee> findByEmail(String email) {
+        if (email == null) {
+            return Optional.empty();
+        }
+        return CachedEntityLoader.findByNaturalId(entityManagerFactory, Employee.class, email)
+            .filter(employee -> email.equalsIgnoreCase(employee.getEmail()));
+    }
+}
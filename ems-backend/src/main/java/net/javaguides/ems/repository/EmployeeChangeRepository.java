@@ -0,0 +1,129 @@
+package net.javaguides.ems.repository;
+
+// Change numbers and tombstones for delta sync (GET /api/employees/changes).
+// Every write to a user's employees first takes the next number from the
+// user's row in employee_sync_state and stamps it on the rows it changes
+// (employees.change_seq) or deletes (employee_tombstones). The increment
+// keeps that row locked until the write commits, so one user's writes get
+// their numbers in commit order: a client that has seen everything up to
+// number n can never miss a later commit with a smaller one.
+// Old tombstones are compacted away; employee_sync_state.floor_seq records
+// how far, and tokens older than that cannot be answered any more.
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import lombok.AllArgsConstructor;
+import net.javaguides.ems.dto.EmployeeDto;
+
+@Repository
+@AllArgsConstructor
+public class EmployeeChangeRepository {
+
+    // One statement for a user's first write and every later one. An
+    // UPDATE followed by an INSERT would have two concurrent first writes
+    // lock the same gap and deadlock on the insert.
+    private static final String NEXT_SEQ_SQL =
+        "INSERT INTO employee_sync_state (user_id, last_seq, floor_seq) VALUES (?, 1, 0) "
+        + "ON DUPLICATE KEY UPDATE last_seq = last_seq + 1";
+
+    // Position (change_seq, id) > (?, ?), written so that the
+    // (user_id, change_seq, id) indexes can seek to it
+    private static final String CHANGED_SINCE_SQL =
+        "SELECT id, first_name, last_name, email_id, user_id, version, change_seq FROM employees "
+        + "WHERE user_id = ? AND change_seq >= ? AND (change_seq > ? OR id > ?) "
+        + "ORDER BY change_seq, id LIMIT ?";
+
+    private static final String DELETED_SINCE_SQL =
+        "SELECT employee_id, change_seq FROM employee_tombstones "
+        + "WHERE user_id = ? AND change_seq >= ? AND (change_seq > ? OR employee_id > ?) "
+        + "ORDER BY change_seq, employee_id LIMIT ?";
+
+    public record SyncState(long lastSeq, long floorSeq) { }
+
+    // An employee row or a tombstone, with the number of the change
+    public record Change(long changeSeq, long id, EmployeeDto employee) {
+
+        public boolean isDeleted() {
+            return employee == null;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Must run inside the transaction of the write it numbers
+    public long nextChangeSeq(Long userId) {
+        jdbcTemplate.update(NEXT_SEQ_SQL, userId);
+        return jdbcTemplate.queryForObject("SELECT last_seq FROM employee_sync_state WHERE user_id = ?", Long.class,
+            userId);
+    }
+
+    public void recordDeletes(Long userId, Collection<Long> ids, long changeSeq) {
+        Timestamp deletedAt = Timestamp.from(Instant.now());
+        List<Object[]> rows = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            rows.add(new Object[] {id, userId, changeSeq, deletedAt});
+        }
+        for (int start = 0; start < rows.size(); start += EmployeeJdbcRepository.CHUNK_SIZE) {
+            jdbcTemplate.batchUpdate(
+                "INSERT INTO employee_tombstones (employee_id, user_id, change_seq, deleted_at) VALUES (?, ?, ?, ?)",
+                rows.subList(start, Math.min(rows.size(), start + EmployeeJdbcRepository.CHUNK_SIZE)));
+        }
+    }
+
+    // A user without any write yet has nothing to sync: (0, 0)
+    public SyncState findSyncState(Long userId) {
+        return jdbcTemplate.query("SELECT last_seq, floor_seq FROM employee_sync_state WHERE user_id = ?",
+                (rs, rowNum) -> new SyncState(rs.getLong("last_seq"), rs.getLong("floor_seq")), userId)
+            .stream().findFirst().orElse(new SyncState(0, 0));
+    }
+
+    // Up to limit changed rows after the position, in (change_seq, id) order
+    public List<Change> findChangedSince(Long userId, long changeSeq, long id, int limit) {
+        return jdbcTemplate.query(CHANGED_SINCE_SQL, (rs, rowNum) -> {
+            EmployeeDto employee = new EmployeeDto(rs.getLong("id"), rs.getString("first_name"),
+                rs.getString("last_name"), rs.getString("email_id"));
+            employee.setUserId(rs.getLong("user_id"));
+            employee.setVersion(rs.getLong("version"));
+            return new Change(rs.getLong("change_seq"), employee.getId(), employee);
+        }, userId, changeSeq, changeSeq, id, limit);
+    }
+
+    // Same for deleted rows, without the employee
+    public List<Change> findDeletedSince(Long userId, long changeSeq, long id, int limit) {
+        return jdbcTemplate.query(DELETED_SINCE_SQL,
+            (rs, rowNum) -> new Change(rs.getLong("change_seq"), rs.getLong("employee_id"), null),
+            userId, changeSeq, changeSeq, id, limit);
+    }
+
+    // Users with tombstones older than the cutoff, mapped to the newest
+    // change number among those tombstones
+    public Map<Long, Long> findCompactable(Instant before, int maxUsers) {
+        Map<Long, Long> compactable = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT user_id, MAX(change_seq) AS max_seq FROM employee_tombstones "
+                + "WHERE deleted_at < ? GROUP BY user_id LIMIT ?",
+            (RowCallbackHandler) rs -> compactable.put(rs.getLong("user_id"), rs.getLong("max_seq")),
+            Timestamp.from(before), maxUsers);
+        return compactable;
+    }
+
+    // Drops the user's tombstones up to the given change. The floor is
+    // raised first, so if the delete does not happen, clients are sent
+    // back to a full sync rather than missing a delete; the tombstones are
+    // removed on the next run.
+    public int compact(Long userId, long upToSeq) {
+        jdbcTemplate.update("UPDATE employee_sync_state SET floor_seq = GREATEST(floor_seq, ?) WHERE user_id = ?",
+            upToSeq, userId);
+        return jdbcTemplate.update("DELETE FROM employee_tombstones WHERE user_id = ? AND change_seq <= ?",
+            userId, upToSeq);
+    }
+}
@@ -0,0 +1,438 @@
+package net.javaguides.ems.repository;
+
+// Plain JDBC access to the employees table for bulk operations.
+// Employee ids use IDENTITY generation, which makes Hibernate send one
+// INSERT per row. Here the rows go through JDBC batches instead; with
+// rewriteBatchedStatements=true the MySQL driver turns each batch into a
+// single multi-row INSERT and still returns every generated id.
+// Single-row updates and deletes are also plain SQL: a JPQL UPDATE/DELETE
+// would make Hibernate clear the whole Employee cache region on every
+// write. Instead only the changed rows are evicted (see evict()), and the
+// old emails of rows whose email changed (see evictEmails()).
+// With sharding on (EmployeeEmailRegistry present) ids and emails are
+// claimed in the main database first and rows are inserted with those ids;
+// the statements run on whichever shard the caller routed to.
+// Every write stamps the rows with the change number the caller took from
+// EmployeeChangeRepository, for delta sync.
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.hibernate.StatelessSession;
+import org.hibernate.cache.spi.access.NaturalIdDataAccess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.AllArgsConstructor;
+import net.javaguides.ems.dto.EmployeeDto;
+import net.javaguides.ems.dto.EmployeeField;
+import net.javaguides.ems.entity.Employee;
+import net.javaguides.ems.sharding.EmployeeEmailRegistry;
+
+@Repository
+@AllArgsConstructor
+public class EmployeeJdbcRepository {
+
+    // Rows per JDBC batch and ids per IN (...) list
+    static final int CHUNK_SIZE = 500;
+
+    private static final String INSERT_SQL =
+        "INSERT INTO employees (first_name, last_name, email_id, user_id, version, change_seq, updated_at) "
+        + "VALUES (?, ?, ?, ?, 0, ?, ?)";
+
+    private static final String INSERT_WITH_ID_SQL =
+        "INSERT INTO employees (id, first_name, last_name, email_id, user_id, version, change_seq, updated_at) "
+        + "VALUES (?, ?, ?, ?, ?, 0, ?, ?)";
+
+    // Rows fetched per round-trip while streaming. With useCursorFetch=true
+    // the MySQL driver reads a server-side cursor in blocks of this size
+    // instead of loading the whole result into memory.
+    static final int STREAM_FETCH_SIZE = 1000;
+
+    private static final String STREAM_SQL =
+        "SELECT id, first_name, last_name, email_id, user_id FROM employees WHERE user_id = ? ORDER BY id";
+
+    private static final String UPDATE_SQL =
+        "UPDATE employees SET first_name = ?, last_name = ?, email_id = ?, version = version + 1, "
+        + "change_seq = ?, updated_at = ? WHERE id = ? AND user_id = ?";
+
+    private static final String VERSION_CHECK = " AND version = ?";
+
+    private static final String VERSION_SQL = "SELECT version FROM employees WHERE id = ?";
+
+    private static final String DELETE_SQL = "DELETE FROM employees WHERE id = ? AND user_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+    // Only there when sharding is on
+    private final ObjectProvider<EmployeeEmailRegistry> emailRegistry;
+
+    // Owner-scoped conditional update of one row. The optimistic lock is
+    // checked when a version is given. Returns the row's new version, or
+    // null when the row is missing, not owned or stale. The version is read
+    // back after the update, while the update still holds the row lock, so
+    // it is the one this write produced even without If-Match.
+    // Sharded, the email claim follows once the row has changed; a taken
+    // email throws there and the caller's transaction undoes the row.
+    public Long updateOwned(Long id, Long userId, EmployeeDto employee, Long version, long changeSeq) {
+        Timestamp now = Timestamp.from(Instant.now());
+        Map<Long, String> previousEmails = findEmails(List.of(id));
+        int updated = version == null
+            ? jdbcTemplate.update(UPDATE_SQL, employee.getFirstName(), employee.getLastName(), employee.getEmail(),
+                changeSeq, now, id, userId)
+            : jdbcTemplate.update(UPDATE_SQL + VERSION_CHECK, employee.getFirstName(), employee.getLastName(),
+                employee.getEmail(), changeSeq, now, id, userId, version);
+        if (updated == 0) {
+            return null;
+        }
+        List<EmployeeDto> emails = List.of(new EmployeeDto(id, null, null, employee.getEmail()));
+        changeEmails(emails);
+        evict(List.of(id));
+        evictEmails(previousEmails, emails);
+        return jdbcTemplate.queryForObject(VERSION_SQL, Long.class, id);
+    }
+
+    // Owner-scoped conditional delete of one row, same rules as updateOwned
+    public int deleteOwned(Long id, Long userId, Long version) {
+        int deleted = version == null
+            ? jdbcTemplate.update(DELETE_SQL, id, userId)
+            : jdbcTemplate.update(DELETE_SQL + VERSION_CHECK, id, userId, version);
+        if (deleted > 0) {
+            releaseAfterCommit(List.of(id));
+            evict(List.of(id));
+        }
+        return deleted;
+    }
+
+    // Inserts the employees for one user and returns their generated ids in
+    // the same order
+    public List<Long> batchInsert(List<EmployeeDto> employees, Long userId, long changeSeq) {
+        Timestamp now = Timestamp.from(Instant.now());
+        EmployeeEmailRegistry registry = emailRegistry.getIfAvailable();
+        if (registry != null) {
+            return batchInsertClaimed(registry, employees, userId, changeSeq, now);
+        }
+        List<Long> ids = new ArrayList<>(employees.size());
+        for (List<EmployeeDto> chunk : chunks(employees)) {
+            KeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbcTemplate.batchUpdate(
+                con -> con.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        EmployeeDto employee = chunk.get(i);
+                        ps.setString(1, employee.getFirstName());
+                        ps.setString(2, employee.getLastName());
+                        ps.setString(3, employee.getEmail());
+                        ps.setLong(4, userId);
+                        ps.setLong(5, changeSeq);
+                        ps.setTimestamp(6, now);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return chunk.size();
+                    }
+                },
+                keyHolder);
+            for (Map<String, Object> keys : keyHolder.getKeyList()) {
+                ids.add(((Number) keys.values().iterator().next()).longValue());
+            }
+        }
+        return ids;
+    }
+
+    // The rows are inserted with the ids claimed for them. The claims are
+    // given back if the insert fails or the caller's transaction rolls back.
+    private List<Long> batchInsertClaimed(EmployeeEmailRegistry registry, List<EmployeeDto> employees, Long userId,
+                                          long changeSeq, Timestamp now) {
+        if (employees.isEmpty()) {
+            return List.of();
+        }
+        List<Long> ids = registry.claim(employees, userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        registry.release(ids);
+                    }
+                }
+            });
+        }
+        List<Object[]> rows = new ArrayList<>(employees.size());
+        for (int i = 0; i < employees.size(); i++) {
+            EmployeeDto employee = employees.get(i);
+            rows.add(new Object[] {ids.get(i), employee.getFirstName(), employee.getLastName(), employee.getEmail(),
+                userId, changeSeq, now});
+        }
+        try {
+            for (List<Object[]> chunk : chunks(rows)) {
+                jdbcTemplate.batchUpdate(INSERT_WITH_ID_SQL, chunk);
+            }
+        } catch (RuntimeException e) {
+            registry.release(ids);
+            throw e;
+        }
+        return ids;
+    }
+
+    // Updates employees owned by the user and returns id -> new version.
+    // Callers check ownership first, because rewritten batches do not report
+    // reliable per-row counts. The versions are read in the same
+    // transaction, after the batch has locked the rows.
+    public Map<Long, Long> batchUpdate(List<EmployeeDto> employees, Long userId, long changeSeq) {
+        Timestamp now = Timestamp.from(Instant.now());
+        Map<Long, String> previousEmails = findEmails(employees.stream().map(EmployeeDto::getId).toList());
+        for (List<EmployeeDto> chunk : chunks(employees)) {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, chunk, chunk.size(), (ps, employee) -> {
+                ps.setString(1, employee.getFirstName());
+                ps.setString(2, employee.getLastName());
+                ps.setString(3, employee.getEmail());
+                ps.setLong(4, changeSeq);
+                ps.setTimestamp(5, now);
+                ps.setLong(6, employee.getId());
+                ps.setLong(7, userId);
+            });
+        }
+        changeEmails(employees);
+        List<Long> ids = employees.stream().map(EmployeeDto::getId).toList();
+        evict(ids);
+        evictEmails(previousEmails, employees);
+        return findVersions(ids);
+    }
+
+    // Of the given ids, returns the ones that exist and belong to the user
+    public Set<Long> findOwnedIds(Long userId, Collection<Long> ids) {
+        Set<Long> owned = new HashSet<>();
+        for (List<Long> chunk : chunks(new ArrayList<>(ids))) {
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("userId", userId)
+                .addValue("ids", chunk);
+            owned.addAll(namedJdbcTemplate.queryForList(
+                "SELECT id FROM employees WHERE user_id = :userId AND id IN (:ids)", params, Long.class));
+        }
+        return owned;
+    }
+
+    // Maps each of the given emails that is already taken (lower-cased) to
+    // the id of the employee using it
+    public Map<String, Long> findEmailOwners(Collection<String> emails) {
+        EmployeeEmailRegistry registry = emailRegistry.getIfAvailable();
+        if (registry != null) {
+            return registry.findOwners(emails);
+        }
+        Map<String, Long> owners = new HashMap<>();
+        for (List<String> chunk : chunks(new ArrayList<>(emails))) {
+            namedJdbcTemplate.query(
+                "SELECT id, email_id FROM employees WHERE email_id IN (:emails)",
+                new MapSqlParameterSource("emails", chunk),
+                (RowCallbackHandler) rs -> owners.put(
+                    rs.getString("email_id").toLowerCase(Locale.ROOT), rs.getLong("id")));
+        }
+        return owners;
+    }
+
+    // id -> email of the given rows, read before an update so that the
+    // emails it replaces can be evicted
+    private Map<Long, String> findEmails(Collection<Long> ids) {
+        Map<Long, String> emails = new HashMap<>();
+        for (List<Long> chunk : chunks(new ArrayList<>(ids))) {
+            namedJdbcTemplate.query("SELECT id, email_id FROM employees WHERE id IN (:ids)",
+                new MapSqlParameterSource("ids", chunk),
+                (RowCallbackHandler) rs -> emails.put(rs.getLong("id"), rs.getString("email_id")));
+        }
+        return emails;
+    }
+
+    private Map<Long, Long> findVersions(Collection<Long> ids) {
+        Map<Long, Long> versions = new HashMap<>();
+        for (List<Long> chunk : chunks(new ArrayList<>(ids))) {
+            namedJdbcTemplate.query("SELECT id, version FROM employees WHERE id IN (:ids)",
+                new MapSqlParameterSource("ids", chunk),
+                (RowCallbackHandler) rs -> versions.put(rs.getLong("id"), rs.getLong("version")));
+        }
+        return versions;
+    }
+
+    public int deleteOwned(Long userId, Collection<Long> ids) {
+        int deleted = 0;
+        for (List<Long> chunk : chunks(new ArrayList<>(ids))) {
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("userId", userId)
+                .addValue("ids", chunk);
+            deleted += namedJdbcTemplate.update(
+                "DELETE FROM employees WHERE user_id = :userId AND id IN (:ids)", params);
+        }
+        releaseAfterCommit(ids);
+        evict(ids);
+        return deleted;
+    }
+
+    // Hands every employee of the user to the handler one row at a time,
+    // over a forward-only cursor
+    public void streamByUserId(Long userId, RowCallbackHandler handler) {
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(STREAM_SQL,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            ps.setLong(1, userId);
+            return ps;
+        }, handler);
+    }
+
+    // Same, reading only the id and the selected columns
+    public void streamByUserId(Long userId, Set<EmployeeField> fields, RowCallbackHandler handler) {
+        String sql = "SELECT " + EmployeeField.columns(fields) + " FROM employees WHERE user_id = ? ORDER BY id";
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            ps.setLong(1, userId);
+            return ps;
+        }, handler);
+    }
+
+    // Rows changed here bypass Hibernate, so their cached copies are dropped
+    // by hand: once now, and again when the transaction ends so that a read
+    // racing with the write cannot put the old row back. The cache TTL in
+    // application.conf bounds anything that still slips through.
+    private void evict(Collection<Long> ids) {
+        Cache cache = entityManagerFactory.getCache();
+        List<Long> evicted = List.copyOf(ids);
+        evicted.forEach(id -> cache.evict(Employee.class, id));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evicted.forEach(id -> cache.evict(Employee.class, id));
+                }
+            });
+        }
+    }
+
+    // findByEmail (the duplicate check of createEmployee) resolves email ->
+    // id in the natural id cache before it asks the database. A row whose
+    // email changed here would still be found by its old email, so those
+    // entries are dropped, at the same two points as in evict(). Deleted
+    // rows need nothing: their entry leads to a row that is not found.
+    private void evictEmails(Map<Long, String> previousEmails, List<EmployeeDto> employees) {
+        List<String> replaced = new ArrayList<>();
+        for (EmployeeDto employee : employees) {
+            String previous = previousEmails.get(employee.getId());
+            if (previous != null && !Objects.equals(previous, employee.getEmail())) {
+                replaced.add(previous);
+            }
+        }
+        if (replaced.isEmpty()) {
+            return;
+        }
+        evictNaturalIds(replaced);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evictNaturalIds(replaced);
+                }
+            });
+        }
+    }
+
+    // JPA has no API for the natural id region, so this goes through
+    // Hibernate's. Building a cache key needs a session; a stateless one
+    // does not touch the database for it.
+    private void evictNaturalIds(List<String> emails) {
+        Object unwrapped = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        if (!(unwrapped instanceof SessionFactoryImplementor sessionFactory)) {
+            return;
+        }
+        EntityPersister persister = sessionFactory.getMappingMetamodel().getEntityDescriptor(Employee.class);
+        NaturalIdDataAccess naturalIds = persister.getNaturalIdCacheAccessStrategy();
+        if (naturalIds == null) {
+            return;
+        }
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            if (session instanceof SharedSessionContractImplementor source) {
+                for (String email : emails) {
+                    naturalIds.evict(naturalIds.generateCacheKey(email, persister, source));
+                }
+            }
+        }
+    }
+
+    // Sharded: moves the email claims at once, since a taken email must
+    // fail the write, and moves them back if the write then rolls back
+    private void changeEmails(List<EmployeeDto> employees) {
+        EmployeeEmailRegistry registry = emailRegistry.getIfAvailable();
+        if (registry == null || employees.isEmpty()) {
+            return;
+        }
+        Map<Long, String> previous = registry.changeEmails(employees);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        registry.restoreEmails(previous);
+                    }
+                }
+            });
+        }
+    }
+
+    // Sharded: the emails of deleted rows become free once the delete has
+    // committed
+    private void releaseAfterCommit(Collection<Long> ids) {
+        EmployeeEmailRegistry registry = emailRegistry.getIfAvailable();
+        if (registry == null || ids.isEmpty()) {
+            return;
+        }
+        List<Long> released = List.copyOf(ids);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    registry.release(released);
+                }
+            });
+        } else {
+            registry.release(released);
+        }
+    }
+
+    private static <T> List<List<T>> chunks(List<T> items) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int start = 0; start < items.size(); start += CHUNK_SIZE) {
+            chunks.add(items.subList(start, Math.min(items.size(), start + CHUNK_SIZE)));
+        }
+        return chunks;
+    }
+}
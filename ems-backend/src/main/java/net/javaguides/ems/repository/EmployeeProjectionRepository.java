@@ -0,0 +1,182 @@
+package net.javaguides.ems.repository;
+
+// Read-only employee queries that build EmployeeDto objects directly from
+// the JDBC result. No entity is created, so reads skip the persistence
+// context (no managed copies, no dirty-checking snapshots) and select only
+// the columns the client asked for.
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import net.javaguides.ems.dto.EmployeeDto;
+import net.javaguides.ems.dto.EmployeeField;
+
+@Repository
+@AllArgsConstructor
+public class EmployeeProjectionRepository {
+
+    // Search matches a prefix of the first name, last name or email. A
+    // prefix LIKE (no leading wildcard) can use the column indexes, and the
+    // default MySQL collation already compares case-insensitively.
+    // '!' is the escape character because a backslash is itself an escape
+    // inside MySQL string literals.
+    static final String SEARCH_MATCH = "user_id = :userId AND (first_name LIKE :prefix ESCAPE '!' "
+        + "OR last_name LIKE :prefix ESCAPE '!' OR email_id LIKE :prefix ESCAPE '!')";
+
+    // Relevance bucket: exact match, first name prefix, last name prefix,
+    // email prefix
+    static final String SEARCH_RANK = "(CASE WHEN first_name = :term OR last_name = :term OR email_id = :term THEN 0 "
+        + "WHEN first_name LIKE :prefix ESCAPE '!' THEN 1 "
+        + "WHEN last_name LIKE :prefix ESCAPE '!' THEN 2 ELSE 3 END)";
+
+    // Keyset condition for (last name, id) order. A missing last name sorts
+    // as an empty string so the order stays total; last_name_key holds that
+    // value and is indexed with user_id and id (V2 migration).
+    static final String AFTER_LAST_NAME = "(last_name_key > :lastName "
+        + "OR (last_name_key = :lastName AND id > :afterId))";
+
+    // A search hit together with its relevance bucket, needed for the cursor
+    @Getter
+    @AllArgsConstructor
+    public static class RankedEmployee {
+        private final EmployeeDto employee;
+        private final int rank;
+    }
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public List<EmployeeDto> findAllByUserId(Long userId, Set<EmployeeField> fields) {
+        String sql = "SELECT " + EmployeeField.columns(fields)
+            + " FROM employees WHERE user_id = :userId ORDER BY id";
+        return jdbcTemplate.query(sql, new MapSqlParameterSource("userId", userId),
+            (rs, rowNum) -> toDto(rs::getObject, fields));
+    }
+
+    public Optional<EmployeeDto> findByIdAndUserId(Long id, Long userId, Set<EmployeeField> fields) {
+        String sql = "SELECT " + EmployeeField.columns(fields)
+            + " FROM employees WHERE id = :id AND user_id = :userId";
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("id", id)
+            .addValue("userId", userId);
+        return jdbcTemplate.query(sql, params, (rs, rowNum) -> toDto(rs::getObject, fields)).stream().findFirst();
+    }
+
+    public List<EmployeeDto> findByIdsAndUserId(Collection<Long> ids, Long userId, Set<EmployeeField> fields) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        String sql = "SELECT " + EmployeeField.columns(fields)
+            + " FROM employees WHERE user_id = :userId AND id IN (:ids) ORDER BY id";
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("userId", userId)
+            .addValue("ids", ids);
+        return jdbcTemplate.query(sql, params, (rs, rowNum) -> toDto(rs::getObject, fields));
+    }
+
+    // Keyset pagination: next page of a user's employees ordered by id.
+    // The database seeks straight to afterId instead of skipping OFFSET rows,
+    // so every page costs the same no matter how deep the client has paged.
+    public List<EmployeeDto> findPageOrderById(Long userId, Long afterId, int limit, Set<EmployeeField> fields) {
+        String sql = "SELECT " + EmployeeField.columns(fields)
+            + " FROM employees WHERE user_id = :userId AND id > :afterId ORDER BY id LIMIT :limit";
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("userId", userId)
+            .addValue("afterId", afterId)
+            .addValue("limit", limit);
+        return jdbcTemplate.query(sql, params, (rs, rowNum) -> toDto(rs::getObject, fields, EmployeeField.ID));
+    }
+
+    // Keyset pagination ordered by (last name, id)
+    public List<EmployeeDto> findPageOrderByLastName(Long userId, String lastName, Long afterId, int limit,
+                                                     Set<EmployeeField> fields) {
+        String sql = "SELECT " + EmployeeField.columns(fields, EmployeeField.LAST_NAME)
+            + " FROM employees WHERE user_id = :userId AND " + AFTER_LAST_NAME
+            + " ORDER BY last_name_key, id LIMIT :limit";
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("userId", userId)
+            .addValue("lastName", lastName)
+            .addValue("afterId", afterId)
+            .addValue("limit", limit);
+        return jdbcTemplate.query(sql, params,
+            (rs, rowNum) -> toDto(rs::getObject, fields, EmployeeField.ID, EmployeeField.LAST_NAME));
+    }
+
+    // Search results ordered by (relevance, last name, id)
+    public List<RankedEmployee> searchPageByRelevance(Long userId, String term, String prefix, int rank,
+                                                      String lastName, Long afterId, int limit,
+                                                      Set<EmployeeField> fields) {
+        String sql = "SELECT " + EmployeeField.columns(fields, EmployeeField.LAST_NAME)
+            + ", " + SEARCH_RANK + " AS search_rank"
+            + " FROM employees WHERE " + SEARCH_MATCH
+            + " AND (" + SEARCH_RANK + " > :rank OR (" + SEARCH_RANK + " = :rank AND " + AFTER_LAST_NAME + "))"
+            + " ORDER BY search_rank, last_name_key, id LIMIT :limit";
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("userId", userId)
+            .addValue("term", term)
+            .addValue("prefix", prefix)
+            .addValue("rank", rank)
+            .addValue("lastName", lastName)
+            .addValue("afterId", afterId)
+            .addValue("limit", limit);
+        return jdbcTemplate.query(sql, params, (rs, rowNum) -> new RankedEmployee(
+            toDto(rs::getObject, fields, EmployeeField.ID, EmployeeField.LAST_NAME), rs.getInt("search_rank")));
+    }
+
+    // Search results in alphabetical (last name, id) order
+    public List<EmployeeDto> searchPageByLastName(Long userId, String prefix, String lastName, Long afterId,
+                                                  int limit, Set<EmployeeField> fields) {
+        String sql = "SELECT " + EmployeeField.columns(fields, EmployeeField.LAST_NAME)
+            + " FROM employees WHERE " + SEARCH_MATCH + " AND " + AFTER_LAST_NAME
+            + " ORDER BY last_name_key, id LIMIT :limit";
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("userId", userId)
+            .addValue("prefix", prefix)
+            .addValue("lastName", lastName)
+            .addValue("afterId", afterId)
+            .addValue("limit", limit);
+        return jdbcTemplate.query(sql, params,
+            (rs, rowNum) -> toDto(rs::getObject, fields, EmployeeField.ID, EmployeeField.LAST_NAME));
+    }
+
+    // A row as both JDBC (ResultSet::getObject) and R2DBC (Readable::get)
+    // expose it, so ems-reactive's EmployeeProjectionR2dbcRepository builds
+    // its DTOs with toDto as well
+    @FunctionalInterface
+    public interface Columns<E extends Exception> {
+        <T> T get(String column, Class<T> type) throws E;
+    }
+
+    // Fills only the selected fields; the others stay null and are left out
+    // of the JSON response
+    public static <E extends Exception> EmployeeDto toDto(Columns<E> row, Set<EmployeeField> fields,
+                                                          EmployeeField... required) throws E {
+        EmployeeDto dto = new EmployeeDto();
+        dto.setId(row.get("id", Long.class));
+        for (EmployeeField field : required) {
+            read(row, dto, field);
+        }
+        for (EmployeeField field : fields) {
+            read(row, dto, field);
+        }
+        return dto;
+    }
+
+    private static <E extends Exception> void read(Columns<E> row, EmployeeDto dto, EmployeeField field) throws E {
+        switch (field) {
+            case ID -> dto.setId(row.get("id", Long.class));
+            case FIRST_NAME -> dto.setFirstName(row.get("first_name", String.class));
+            case LAST_NAME -> dto.setLastName(row.get("last_name", String.class));
+            case EMAIL -> dto.setEmail(row.get("email_id", String.class));
+            case USER_ID -> dto.setUserId(row.get("user_id", Long.class));
+            case VERSION -> dto.setVersion(row.get("version", Long.class));
+        }
+    }
+}
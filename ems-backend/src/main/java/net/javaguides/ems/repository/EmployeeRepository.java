@@ -3,12 +3,16 @@ package net.javaguides.ems.repository;
 
 // Purpose of this interface: To define/perform CRUD operations on the 
 // Employee entity
+// Read-only listing, paging and search queries live in
+// EmployeeProjectionRepository, which returns DTOs without entities.
+// Single-row and bulk updates/deletes are plain SQL in EmployeeJdbcRepository.
+// Lookups by id or email that should use the second-level cache come from
+// EmployeeCachedRepository.
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import net.javaguides.ems.entity.Employee;
 import net.javaguides.ems.entity.User;
 import java.util.List;
-import java.util.Optional;
 
 // JpaRepository contains all the necessary methods. Just it is enough if 
 // we extend it
@@ -16,12 +20,12 @@ import java.util.Optional;
 // We do not need to design our own class again
 // It contains database methods like save(), findById() etc for Employee 
 // entities.
-public interface EmployeeRepository extends JpaRepository<Employee, Long> {
+public interface EmployeeRepository extends JpaRepository<Employee, Long>, EmployeeCachedRepository {
     // Find all employees for a given user (admin)
     List<Employee> findByUser(User user);
     
     // Or if you want to query by user ID directly
     List<Employee> findByUserId(Long userId);
 
-     Optional<Employee> findByEmail(String email);
-}
\ No newline at end of file
+    boolean existsByIdAndUserId(Long id, Long userId);
+}
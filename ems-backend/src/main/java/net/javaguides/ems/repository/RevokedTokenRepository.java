@@ -0,0 +1,21 @@
+package net.javaguides.ems.repository;
+
+import java.time.Instant;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import net.javaguides.ems.entity.RevokedToken;
+
+// Polls read through RevokedTokenStreamRepository
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, String>, RevokedTokenStreamRepository {
+
+    // Rows of tokens that have expired are no longer needed
+    @Transactional
+    @Modifying
+    @Query("delete from RevokedToken t where t.expiresAt < :now")
+    int deleteExpired(@Param("now") Instant now);
+}
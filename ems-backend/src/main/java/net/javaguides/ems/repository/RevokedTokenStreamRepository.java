@@ -0,0 +1,15 @@
+package net.javaguides.ems.repository;
+
+import java.time.Instant;
+import java.util.function.BiConsumer;
+
+// Hands revocations to a callback one row at a time instead of building a
+// list of entities; the first poll after a start reads up to the longest
+// token lifetime of them. Spring Data picks up
+// RevokedTokenStreamRepositoryImpl as the implementation.
+public interface RevokedTokenStreamRepository {
+
+    // (jti, expires_at) of each token revoked after `since` that has not
+    // expired at `now`
+    void forEachUnexpiredRevokedAfter(Instant since, Instant now, BiConsumer<String, Instant> action);
+}
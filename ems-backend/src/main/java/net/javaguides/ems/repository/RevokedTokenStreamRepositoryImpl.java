@@ -0,0 +1,38 @@
+package net.javaguides.ems.repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.function.BiConsumer;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+public class RevokedTokenStreamRepositoryImpl implements RevokedTokenStreamRepository {
+
+    // Both columns are indexed; expires_at also leaves out the rows the
+    // hourly purge has not deleted yet
+    private static final String UNEXPIRED_SQL =
+        "SELECT jti, expires_at FROM revoked_tokens WHERE revoked_at > ? AND expires_at > ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public RevokedTokenStreamRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Over a forward-only cursor, fetched in blocks as the employee export
+    // does (EmployeeJdbcRepository.STREAM_FETCH_SIZE)
+    @Override
+    public void forEachUnexpiredRevokedAfter(Instant since, Instant now, BiConsumer<String, Instant> action) {
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(UNEXPIRED_SQL,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(EmployeeJdbcRepository.STREAM_FETCH_SIZE);
+            ps.setTimestamp(1, Timestamp.from(since));
+            ps.setTimestamp(2, Timestamp.from(now));
+            return ps;
+        }, (RowCallbackHandler) rs -> action.accept(rs.getString("jti"), rs.getTimestamp("expires_at").toInstant()));
+    }
+}
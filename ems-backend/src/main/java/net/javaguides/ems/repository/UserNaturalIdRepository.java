@@ -0,0 +1,13 @@
+package net.javaguides.ems.repository;
+
+import java.util.Optional;
+
+import net.javaguides.ems.entity.User;
+
+// User lookups by name go through the natural-id cache instead of a query.
+// Spring Data picks up UserNaturalIdRepositoryImpl as the implementation.
+public interface UserNaturalIdRepository {
+    Optional<User> findByUserName(String userName);
+
+    boolean existsByUserName(String userName);
+}
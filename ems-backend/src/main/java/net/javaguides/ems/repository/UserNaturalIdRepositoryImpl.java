@@ -0,0 +1,27 @@
+package net.javaguides.ems.repository;
+
+import java.util.Optional;
+
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceUnit;
+
+import net.javaguides.ems.entity.User;
+
+public class UserNaturalIdRepositoryImpl implements UserNaturalIdRepository {
+
+    @PersistenceUnit
+    private EntityManagerFactory entityManagerFactory;
+
+    @Override
+    public Optional<User> findByUserName(String userName) {
+        if (userName == null) {
+            return Optional.empty();
+        }
+        return CachedEntityLoader.findByNaturalId(entityManagerFactory, User.class, userName);
+    }
+
+    @Override
+    public boolean existsByUserName(String userName) {
+        return findByUserName(userName).isPresent();
+    }
+}
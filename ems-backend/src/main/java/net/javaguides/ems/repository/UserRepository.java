@@ -1,12 +1,12 @@
 package net.javaguides.ems.repository;
 
-import java.util.Optional;
-
 import org.springframework.data.jpa.repository.JpaRepository;
 import net.javaguides.ems.entity.User;
+import java.time.Instant;
+import java.util.List;
 
-public interface UserRepository extends JpaRepository<User, Long> {
-    Optional<User> findByUserName(String userName);
-
-    boolean existsByUserName(String userName);
+// findByUserName and existsByUserName come from UserNaturalIdRepository
+public interface UserRepository extends JpaRepository<User, Long>, UserNaturalIdRepository {
+    // Password resets since the last poll (TokenRevocationRegistry)
+    List<User> findByCredentialsChangedAtAfter(Instant since);
 }
\ No newline at end of file
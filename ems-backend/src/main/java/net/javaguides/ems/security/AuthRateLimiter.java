@@ -0,0 +1,87 @@
+package net.javaguides.ems.security;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.javaguides.ems.exception.TooManyRequestsException;
+
+// Throttles the auth endpoints before any database lookup or BCrypt work,
+// so a flood of attempts costs at most the configured rate per client IP,
+// per username from each IP, and per username overall. The tight username
+// limit is kept per address: keyed on the name alone, anyone who knows a
+// username could use up its attempts and lock the real user out. The
+// account limit is larger and stops guessing spread over many addresses;
+// only such a spread attack can use it up. The checks run from the
+// narrowest key out, so a throttled address cannot also drain a username's
+// buckets.
+// The IP is the connection's remote address; behind a proxy, set
+// server.forward-headers-strategy so it is the real client address.
+@Component
+public class AuthRateLimiter {
+
+    private final TokenBucketRateLimiter ipLimiter;
+    private final TokenBucketRateLimiter userLimiter;
+    private final TokenBucketRateLimiter accountLimiter;
+    private final Counter ipRejections;
+    private final Counter userRejections;
+    private final Counter accountRejections;
+
+    public AuthRateLimiter(MeterRegistry meterRegistry,
+                           @Value("${ems.ratelimit.ip.capacity:20}") int ipCapacity,
+                           @Value("${ems.ratelimit.ip.refillPerMinute:20}") int ipRefillPerMinute,
+                           @Value("${ems.ratelimit.user.capacity:5}") int userCapacity,
+                           @Value("${ems.ratelimit.user.refillPerMinute:5}") int userRefillPerMinute,
+                           @Value("${ems.ratelimit.account.capacity:50}") int accountCapacity,
+                           @Value("${ems.ratelimit.account.refillPerMinute:20}") int accountRefillPerMinute,
+                           @Value("${ems.ratelimit.maxKeys:100000}") int maxKeys) {
+        this.ipLimiter = new TokenBucketRateLimiter(ipCapacity, ipRefillPerMinute, maxKeys);
+        this.userLimiter = new TokenBucketRateLimiter(userCapacity, userRefillPerMinute, maxKeys);
+        this.accountLimiter = new TokenBucketRateLimiter(accountCapacity, accountRefillPerMinute, maxKeys);
+        this.ipRejections = rejections(meterRegistry, "ip");
+        this.userRejections = rejections(meterRegistry, "user");
+        this.accountRejections = rejections(meterRegistry, "account");
+        Gauge.builder("ems.ratelimit.keys", ipLimiter, TokenBucketRateLimiter::size).tag("key", "ip")
+            .register(meterRegistry);
+        Gauge.builder("ems.ratelimit.keys", userLimiter, TokenBucketRateLimiter::size).tag("key", "user")
+            .register(meterRegistry);
+        Gauge.builder("ems.ratelimit.keys", accountLimiter, TokenBucketRateLimiter::size).tag("key", "account")
+            .register(meterRegistry);
+    }
+
+    public void checkIp(String clientIp) {
+        check(ipLimiter, ipRejections, clientIp);
+    }
+
+    public void checkIpAndUser(String clientIp, String userName) {
+        check(ipLimiter, ipRejections, clientIp);
+        if (userName != null) {
+            String account = userName.toLowerCase(Locale.ROOT);
+            // An address has no '/', so the key cannot be confused with
+            // that of another address and name
+            check(userLimiter, userRejections, clientIp + "/" + account);
+            check(accountLimiter, accountRejections, account);
+        }
+    }
+
+    private static void check(TokenBucketRateLimiter limiter, Counter rejectionCounter, String key) {
+        long waitNanos = limiter.tryAcquire(key);
+        if (waitNanos > 0) {
+            rejectionCounter.increment();
+            long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+            throw new TooManyRequestsException("Too many attempts, please try again later", retryAfter);
+        }
+    }
+
+    private static Counter rejections(MeterRegistry meterRegistry, String key) {
+        return Counter.builder("ems.ratelimit.rejected")
+            .description("Auth requests rejected by the rate limiter")
+            .tag("key", key)
+            .register(meterRegistry);
+    }
+}
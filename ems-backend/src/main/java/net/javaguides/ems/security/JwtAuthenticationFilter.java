@@ -1,5 +1,6 @@
 package net.javaguides.ems.security;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -8,13 +9,18 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
 
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
@@ -25,6 +31,9 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     @Autowired
     private UserDetailsService userDetailsService;
 
+    @Autowired
+    private TokenRevocationRegistry tokenRevocationRegistry;
+
     @Override
     protected void doFilterInternal(HttpServletRequest request,
                                     HttpServletResponse response,
@@ -33,24 +42,24 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         final String authHeader = request.getHeader("Authorization");
 
-        String username = null;
-        String jwt = null;
-
-        if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            jwt = authHeader.substring(7);
-            username = jwtTokenUtil.getUsernameFromToken(jwt);
-        }
+        if (authHeader != null && authHeader.startsWith("Bearer ")
+                && SecurityContextHolder.getContext().getAuthentication() == null) {
 
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+            // One signature check per token; repeated tokens hit the cache.
+            // Refresh tokens are not bearer tokens, and revoked tokens
+            // (logout, password reset) are turned away here.
+            Claims claims = jwtTokenUtil.verifyToken(authHeader.substring(7));
 
-            UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+            if (claims != null && claims.getSubject() != null
+                    && JwtTokenUtil.isAccessToken(claims)
+                    && !tokenRevocationRegistry.isRevoked(claims)) {
+                JwtPrincipal principal = toPrincipal(claims);
 
-            if (jwtTokenUtil.validateToken(jwt)) {
                 UsernamePasswordAuthenticationToken authenticationToken =
                         new UsernamePasswordAuthenticationToken(
-                                userDetails,
+                                principal,
                                 null,
-                                userDetails.getAuthorities()
+                                principal.getAuthorities()
                         );
 
                 authenticationToken.setDetails(
@@ -63,4 +72,30 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         filterChain.doFilter(request, response);
     }
+
+    // Tokens carry the user id and roles, so the principal comes from the
+    // claims alone. Tokens issued before those claims existed still work
+    // but fall back to loading the user once.
+    private JwtPrincipal toPrincipal(Claims claims) {
+        Number userId = claims.get(JwtTokenUtil.CLAIM_USER_ID, Number.class);
+        if (userId == null) {
+            CustomUserDetails userDetails = (CustomUserDetails) userDetailsService.loadUserByUsername(claims.getSubject());
+            return new JwtPrincipal(userDetails.getId(), userDetails.getUsername(), userDetails.getAuthorities(),
+                    claims.getId(), JwtTokenUtil.issuedAt(claims), toInstant(claims.getExpiration()));
+        }
+
+        List<SimpleGrantedAuthority> authorities = new ArrayList<>();
+        Object roles = claims.get(JwtTokenUtil.CLAIM_ROLES);
+        if (roles instanceof Collection<?> roleNames) {
+            for (Object role : roleNames) {
+                authorities.add(new SimpleGrantedAuthority(String.valueOf(role)));
+            }
+        }
+        return new JwtPrincipal(userId.longValue(), claims.getSubject(), authorities,
+                claims.getId(), JwtTokenUtil.issuedAt(claims), toInstant(claims.getExpiration()));
+    }
+
+    private static Instant toInstant(Date date) {
+        return date != null ? date.toInstant() : null;
+    }
 }
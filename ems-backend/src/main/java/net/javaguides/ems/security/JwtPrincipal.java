@@ -0,0 +1,65 @@
+package net.javaguides.ems.security;
+
+import org.springframework.security.core.GrantedAuthority;
+
+import java.time.Instant;
+import java.util.Collection;
+
+// The authenticated user of a request, built straight from the verified
+// JWT claims. It carries only what the API needs (id, name, roles), so no
+// database lookup is required to know who is calling. The token's id and
+// lifetime are kept too, so long-lived requests (event streams) can check
+// later that it is still valid.
+public class JwtPrincipal {
+
+    private final Long id;
+    private final String username;
+    private final Collection<? extends GrantedAuthority> authorities;
+    private final String tokenId;
+    private final Instant issuedAt;
+    private final Instant expiresAt;
+
+    public JwtPrincipal(Long id, String username, Collection<? extends GrantedAuthority> authorities) {
+        this(id, username, authorities, null, null, null);
+    }
+
+    public JwtPrincipal(Long id, String username, Collection<? extends GrantedAuthority> authorities,
+                        String tokenId, Instant issuedAt, Instant expiresAt) {
+        this.id = id;
+        this.username = username;
+        this.authorities = authorities;
+        this.tokenId = tokenId;
+        this.issuedAt = issuedAt;
+        this.expiresAt = expiresAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    // jti, iat and exp of the token; null when the token had none
+    public String getTokenId() {
+        return tokenId;
+    }
+
+    public Instant getIssuedAt() {
+        return issuedAt;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    @Override
+    public String toString() {
+        return username;
+    }
+}
@@ -3,11 +3,21 @@ package net.javaguides.ems.security;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import javax.crypto.SecretKey;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class JwtTokenUtil {
@@ -15,44 +25,167 @@ public class JwtTokenUtil {
     @Value("${jwt.secret}")
     private String jwtSecret;
 
+    // Access tokens are short-lived; clients renew them with the refresh
+    // token, which costs one HMAC instead of a BCrypt check
     @Value("${jwt.expirationMs}")
     private int jwtExpirationMs;
 
-    private SecretKey getSigningKey() {
+    @Value("${jwt.refreshExpirationMs:1209600000}")
+    private long jwtRefreshExpirationMs;
+
+    @Value("${jwt.cache.maxEntries:10000}")
+    private int cacheMaxEntries;
+
+    // Decoding the secret and building a parser are done once at startup;
+    // both objects are immutable and safe to share between request threads.
+    private SecretKey signingKey;
+    private JwtParser jwtParser;
+    private VerifiedTokenCache verifiedTokens;
+
+    // Optional so the class also works without a Spring context (benchmarks);
+    // the global registry then simply drops the measurements
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    // ems.jwt.verify, tagged by how the token was answered
+    private Timer cachedVerifications;
+    private Timer signatureVerifications;
+    private Timer rejectedVerifications;
+
+    @PostConstruct
+    public void init() {
         byte[] keyBytes = Decoders.BASE64.decode(jwtSecret);
-        return Keys.hmacShaKeyFor(keyBytes);
+        signingKey = Keys.hmacShaKeyFor(keyBytes);
+        jwtParser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+        verifiedTokens = new VerifiedTokenCache(cacheMaxEntries);
+
+        MeterRegistry registry = meterRegistry != null ? meterRegistry : Metrics.globalRegistry;
+        cachedVerifications = verifyTimer(registry, "cached");
+        signatureVerifications = verifyTimer(registry, "verified");
+        rejectedVerifications = verifyTimer(registry, "rejected");
+        Gauge.builder("ems.jwt.cache.size", verifiedTokens, VerifiedTokenCache::size)
+                .description("Verified tokens currently cached")
+                .register(registry);
+    }
+
+    private static Timer verifyTimer(MeterRegistry registry, String result) {
+        return Timer.builder("ems.jwt.verify")
+                .description("JWT verification time")
+                .tag("result", result)
+                .register(registry);
     }
 
-    // Generate JWT token
-    public String generateToken(String username) {
+    // Claims that let the filter build the principal without a DB lookup
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_ROLES = "roles";
+    // "access" or "refresh"; a refresh token is not accepted as a bearer
+    // token and an access token cannot be used to refresh
+    public static final String CLAIM_TYPE = "typ";
+    public static final String TYPE_ACCESS = "access";
+    public static final String TYPE_REFRESH = "refresh";
+    // iat in milliseconds. iat itself only has whole seconds, too coarse to
+    // tell a login from a password reset made in the same second.
+    public static final String CLAIM_ISSUED_AT_MS = "iat_ms";
+
+    // Generate JWT token. Every token gets a random id (jti) so it can be
+    // revoked on its own.
+    public String generateToken(String username, Long userId, Collection<String> roles) {
+        long now = System.currentTimeMillis();
         return Jwts.builder()
+                .setId(UUID.randomUUID().toString())
                 .setSubject(username)
-                .setIssuedAt(new Date())
-                .setExpiration(new Date(System.currentTimeMillis() + jwtExpirationMs))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS512)
+                .claim(CLAIM_USER_ID, userId)
+                .claim(CLAIM_ROLES, roles)
+                .claim(CLAIM_TYPE, TYPE_ACCESS)
+                .setIssuedAt(new Date(now))
+                .claim(CLAIM_ISSUED_AT_MS, now)
+                .setExpiration(new Date(now + jwtExpirationMs))
+                .signWith(signingKey, SignatureAlgorithm.HS512)
                 .compact();
     }
 
+    // Long-lived and single use: each refresh revokes it and issues a new one
+    public String generateRefreshToken(String username, Long userId) {
+        long now = System.currentTimeMillis();
+        return Jwts.builder()
+                .setId(UUID.randomUUID().toString())
+                .setSubject(username)
+                .claim(CLAIM_USER_ID, userId)
+                .claim(CLAIM_TYPE, TYPE_REFRESH)
+                .setIssuedAt(new Date(now))
+                .claim(CLAIM_ISSUED_AT_MS, now)
+                .setExpiration(new Date(now + jwtRefreshExpirationMs))
+                .signWith(signingKey, SignatureAlgorithm.HS512)
+                .compact();
+    }
+
+    // Tokens issued before the type claim existed are access tokens
+    public static boolean isAccessToken(Claims claims) {
+        Object type = claims.get(CLAIM_TYPE);
+        return type == null || TYPE_ACCESS.equals(type);
+    }
+
+    public static boolean isRefreshToken(Claims claims) {
+        return TYPE_REFRESH.equals(claims.get(CLAIM_TYPE));
+    }
+
+    // When the token was issued, to the millisecond. Tokens issued before
+    // iat_ms existed fall back to iat, the start of their second, so they
+    // still count as older than a reset made later in that second.
+    public static Instant issuedAt(Claims claims) {
+        Number issuedAtMs = claims.get(CLAIM_ISSUED_AT_MS, Number.class);
+        if (issuedAtMs != null) {
+            return Instant.ofEpochMilli(issuedAtMs.longValue());
+        }
+        Date issuedAt = claims.getIssuedAt();
+        return issuedAt != null ? issuedAt.toInstant() : null;
+    }
+
+    public long getAccessTokenExpirationMs() {
+        return jwtExpirationMs;
+    }
+
+    // Verify the signature and expiry once and return the claims, or null if
+    // the token is not valid. A token seen recently is answered from the
+    // cache without repeating the signature check.
+    public Claims verifyToken(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        long start = System.nanoTime();
+        long now = System.currentTimeMillis();
+        String digest = verifiedTokens.digest(token);
+        Claims cached = verifiedTokens.get(digest, now);
+        if (cached != null) {
+            cachedVerifications.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return cached;
+        }
+
+        try {
+            Claims claims = jwtParser.parseClaimsJws(token).getBody();
+            Date expiration = claims.getExpiration();
+            if (expiration != null) {
+                verifiedTokens.put(digest, claims, expiration.getTime(), now);
+            }
+            signatureVerifications.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return claims;
+        } catch (JwtException | IllegalArgumentException e) {
+            rejectedVerifications.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return null;
+        }
+    }
+
     // Extract username
     public String getUsernameFromToken(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
+        return jwtParser.parseClaimsJws(token)
                 .getBody()
                 .getSubject();
     }
 
     // Validate token
     public boolean validateToken(String token) {
-        try {
-            Jwts.parserBuilder()
-                    .setSigningKey(getSigningKey())
-                    .build()
-                    .parseClaimsJws(token);
-            return true;
-        } catch (JwtException | IllegalArgumentException e) {
-            return false;
-        }
+        return verifyToken(token) != null;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,109 @@
+package net.javaguides.ems.security;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Remembers revoked token ids in a few kilobytes per time window instead of
+// one map entry per token. Every token id is stored in the bucket of the
+// window its token expires in, so a lookup only touches that one bucket and
+// a whole bucket is dropped once all tokens in it have expired anyway.
+// A Bloom filter can answer "maybe" for an id that was never added (about
+// 1% of lookups at the configured capacity), but never "no" for one that
+// was; callers confirm a "maybe" against the database.
+public class TimeBucketedBloomFilter {
+
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private static final class Bucket {
+        private final AtomicLongArray words;
+        private final long windowEndMillis;
+
+        private Bucket(int words, long windowEndMillis) {
+            this.words = new AtomicLongArray(words);
+            this.windowEndMillis = windowEndMillis;
+        }
+    }
+
+    private final long bucketMillis;
+    private final int bitsPerBucket;
+    private final int hashCount;
+    private final ConcurrentHashMap<Long, Bucket> buckets = new ConcurrentHashMap<>();
+
+    // expectedPerBucket is the number of ids one window can take before the
+    // false positive rate rises above 1%
+    public TimeBucketedBloomFilter(long bucketMillis, int expectedPerBucket) {
+        this.bucketMillis = bucketMillis;
+        int expected = Math.max(1, expectedPerBucket);
+        double bits = -expected * Math.log(FALSE_POSITIVE_RATE) / (Math.log(2) * Math.log(2));
+        // Rounded up to whole longs
+        this.bitsPerBucket = (int) Math.min(Integer.MAX_VALUE - 63, ((long) Math.ceil(bits) + 63) / 64 * 64);
+        this.hashCount = Math.max(1, (int) Math.round(bitsPerBucket / (double) expected * Math.log(2)));
+    }
+
+    public void add(String id, long expiresAtMillis) {
+        long window = expiresAtMillis / bucketMillis;
+        Bucket bucket = buckets.computeIfAbsent(window,
+            key -> new Bucket(bitsPerBucket / 64, (key + 1) * bucketMillis));
+        long hash1 = fnv1a(id);
+        long hash2 = mix(hash1) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            int bit = (int) Long.remainderUnsigned(hash1 + i * hash2, bitsPerBucket);
+            setBit(bucket.words, bit);
+        }
+    }
+
+    public boolean mightContain(String id, long expiresAtMillis) {
+        Bucket bucket = buckets.get(expiresAtMillis / bucketMillis);
+        if (bucket == null) {
+            return false;
+        }
+        long hash1 = fnv1a(id);
+        long hash2 = mix(hash1) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            int bit = (int) Long.remainderUnsigned(hash1 + i * hash2, bitsPerBucket);
+            if ((bucket.words.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Drops the windows whose tokens have all expired
+    public void expire(long nowMillis) {
+        buckets.values().removeIf(bucket -> bucket.windowEndMillis <= nowMillis);
+    }
+
+    public long sizeInBytes() {
+        return (long) buckets.size() * bitsPerBucket / 8;
+    }
+
+    private static void setBit(AtomicLongArray words, int bit) {
+        int index = bit >>> 6;
+        long mask = 1L << bit;
+        long current = words.get(index);
+        while ((current & mask) == 0 && !words.compareAndSet(index, current, current | mask)) {
+            current = words.get(index);
+        }
+    }
+
+    // Double hashing (hash1 + i * hash2) gives all the bit positions from
+    // one pass over the id
+    private static long fnv1a(String id) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : id.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,122 @@
+package net.javaguides.ems.security;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// Token buckets keyed by a string (a username or an IP address).
+//
+// Each bucket is a single AtomicLong holding the "theoretical arrival time"
+// of the next request (GCRA). That is equivalent to a bucket of `capacity`
+// tokens refilled at one token per `interval`, and an attempt is one
+// compare-and-set, so no locks are taken.
+//
+// Memory is bounded: a bucket whose time has passed is full again, which is
+// the same as having no bucket, so idle buckets can be dropped. When
+// maxKeys is reached idle buckets are swept (at most once per second);
+// if the map is still full, the first few buckets of the map are looked at
+// and the one closest to full is dropped to make room. Every client keeps a bucket of its own:
+// an attacker cycling through random names or addresses only pushes out
+// buckets that had little throttling left, mostly its own, instead of
+// throttling every new client together.
+public class TokenBucketRateLimiter {
+
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final int EVICTION_SAMPLE = 16;
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final int maxKeys;
+    private final LongSupplier nanoTime;
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweep;
+
+    public TokenBucketRateLimiter(int capacity, int refillPerMinute, int maxKeys) {
+        this(capacity, refillPerMinute, maxKeys, System::nanoTime);
+    }
+
+    // The clock can be replaced by tests
+    TokenBucketRateLimiter(int capacity, int refillPerMinute, int maxKeys, LongSupplier nanoTime) {
+        if (capacity < 1 || refillPerMinute < 1 || maxKeys < 1) {
+            throw new IllegalArgumentException("capacity, refillPerMinute and maxKeys must be positive");
+        }
+        this.intervalNanos = TimeUnit.MINUTES.toNanos(1) / refillPerMinute;
+        this.burstNanos = intervalNanos * capacity;
+        this.maxKeys = maxKeys;
+        this.nanoTime = nanoTime;
+        this.lastSweep = new AtomicLong(nanoTime.getAsLong());
+    }
+
+    // Takes one token. Returns 0 when allowed, otherwise how many
+    // nanoseconds to wait before the next attempt can succeed.
+    public long tryAcquire(String key) {
+        long now = nanoTime.getAsLong();
+        return tryAcquire(bucketFor(key, now), now);
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+
+    private long tryAcquire(AtomicLong bucket, long now) {
+        while (true) {
+            long arrival = bucket.get();
+            long next = Math.max(arrival, now) + intervalNanos;
+            long wait = next - now - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (bucket.compareAndSet(arrival, next)) {
+                return 0;
+            }
+        }
+    }
+
+    private AtomicLong bucketFor(String key, long now) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.size() >= maxKeys) {
+            sweep(now);
+            if (buckets.size() >= maxKeys) {
+                evictOne();
+            }
+        }
+        return buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+    }
+
+    // Of the first EVICTION_SAMPLE buckets in the map's iteration order,
+    // drops the one that refills first: forgetting it gives its client the
+    // fewest extra attempts. The order follows the keys' hashes, so it is
+    // not a random sample: the same region of the map is looked at every
+    // time, whatever it holds at that moment.
+    private void evictOne() {
+        String evicted = null;
+        long earliest = 0;
+        int seen = 0;
+        for (Map.Entry<String, AtomicLong> entry : buckets.entrySet()) {
+            long arrival = entry.getValue().get();
+            if (evicted == null || arrival - earliest < 0) {
+                evicted = entry.getKey();
+                earliest = arrival;
+            }
+            if (++seen == EVICTION_SAMPLE) {
+                break;
+            }
+        }
+        if (evicted != null) {
+            buckets.remove(evicted);
+        }
+    }
+
+    private void sweep(long now) {
+        long last = lastSweep.get();
+        if (now - last < SWEEP_INTERVAL_NANOS || !lastSweep.compareAndSet(last, now)) {
+            return;
+        }
+        buckets.values().removeIf(bucket -> bucket.get() <= now);
+    }
+}
@@ -0,0 +1,116 @@
+package net.javaguides.ems.security;
+
+import java.time.Instant;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.jsonwebtoken.Claims;
+import jakarta.annotation.PostConstruct;
+import net.javaguides.ems.entity.RevokedToken;
+import net.javaguides.ems.entity.User;
+import net.javaguides.ems.repository.RevokedTokenRepository;
+import net.javaguides.ems.repository.UserRepository;
+
+// Decides whether a token with a valid signature has been revoked, on every
+// authenticated request, without a database read in the common case. The
+// decision is TokenRevocationState's; this class writes revocations and
+// reads them back through JPA.
+// Revocations are written to the database first. Other instances pick them
+// up on the next poll (ems.revocation.pollIntervalMs), so a logout made on
+// one instance reaches the others within that interval.
+@Component
+public class TokenRevocationRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenRevocationRegistry.class);
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final UserRepository userRepository;
+    private final TokenRevocationState state;
+
+    private Instant lastPurge = Instant.EPOCH;
+
+    public TokenRevocationRegistry(RevokedTokenRepository revokedTokenRepository,
+                                   UserRepository userRepository,
+                                   TokenRevocationState state) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.userRepository = userRepository;
+        this.state = state;
+    }
+
+    // Loaded before the first request, so revocations survive a restart
+    @PostConstruct
+    public void load() {
+        poll();
+    }
+
+    public boolean isRevoked(Claims claims) {
+        return confirm(claims.getId(), state.check(claims));
+    }
+
+    // Same check for a token that was verified earlier, such as the one an
+    // open event stream was authenticated with (JwtPrincipal)
+    public boolean isRevoked(Long userId, String id, Instant issuedAt, Instant expiresAt) {
+        return confirm(id, state.check(userId, id, issuedAt, expiresAt));
+    }
+
+    // Returns false when the id was already revoked. Used for refresh token
+    // rotation: of two requests with the same refresh token, only one wins.
+    public boolean revoke(String id, Long userId, Instant expiresAt) {
+        try {
+            revokedTokenRepository.saveAndFlush(new RevokedToken(id, userId, expiresAt, Instant.now()));
+        } catch (DataIntegrityViolationException e) {
+            return false;
+        }
+        state.revoked(id, expiresAt);
+        state.remember(id, true);
+        return true;
+    }
+
+    // Called after the new password is saved (credentials_changed_at)
+    public void revokeAllIssuedBefore(Long userId, Instant changedAt) {
+        state.revokeAllIssuedBefore(userId, changedAt);
+    }
+
+    // Reads what other instances revoked and drops state that has expired
+    @Scheduled(fixedDelayString = "${ems.revocation.pollIntervalMs:10000}",
+               initialDelayString = "${ems.revocation.pollIntervalMs:10000}")
+    public synchronized void poll() {
+        Instant now = Instant.now();
+        Instant since = state.pollWindowStart();
+        try {
+            // Streamed: the first poll reads every unexpired revocation,
+            // which is one row per refresh as well as per logout
+            revokedTokenRepository.forEachUnexpiredRevokedAfter(since, now, state::revoked);
+            for (User user : userRepository.findByCredentialsChangedAtAfter(since)) {
+                state.revokeAllIssuedBefore(user.getId(), user.getCredentialsChangedAt());
+            }
+            state.polled(now);
+        } catch (DataAccessException e) {
+            log.warn("Could not read token revocations, retrying on the next poll", e);
+        }
+        state.expire(now);
+
+        if (now.isAfter(lastPurge.plusSeconds(3600))) {
+            try {
+                revokedTokenRepository.deleteExpired(now);
+                lastPurge = now;
+            } catch (DataAccessException e) {
+                log.warn("Could not purge expired token revocations", e);
+            }
+        }
+    }
+
+    private boolean confirm(String id, TokenRevocationState.Answer answer) {
+        if (answer != TokenRevocationState.Answer.ASK_DATABASE) {
+            return answer == TokenRevocationState.Answer.REVOKED;
+        }
+        boolean revoked = revokedTokenRepository.existsById(id);
+        state.remember(id, revoked);
+        return revoked;
+    }
+}
@@ -0,0 +1,152 @@
+package net.javaguides.ems.security;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// What is known in memory about revoked tokens, and the decision made from
+// it. Shared by TokenRevocationRegistry (JPA) and ems-reactive's registry
+// (R2DBC, which imports this class like JwtTokenUtil); they only differ in
+// how they read the database:
+// - a password reset stores a per-user cutoff; tokens issued before that
+//   millisecond are rejected
+// - single tokens (logout, used refresh tokens) are kept in a time-bucketed
+//   Bloom filter; only a "maybe" from the filter has to be confirmed in the
+//   revoked_tokens table, and the answer is remembered (the least recently
+//   used answers are dropped first; a dropped one is read again)
+// The registries poll the database for what other instances revoked, from
+// pollWindowStart(), and feed it in here.
+@Component
+public class TokenRevocationState {
+
+    public enum Answer {
+        REVOKED,
+        NOT_REVOKED,
+        // The filter cannot rule the id out and no answer is remembered
+        ASK_DATABASE
+    }
+
+    private final long pollIntervalMs;
+    private final long maxTokenLifetimeMs;
+    private final int confirmedMaxEntries;
+
+    private final TimeBucketedBloomFilter revokedIds;
+    // userId -> epoch millisecond of the last password reset
+    private final ConcurrentHashMap<Long, Long> cutoffs = new ConcurrentHashMap<>();
+    // Database answers for ids the filter could not rule out, in access
+    // order so that the least recently used one goes when it is full
+    private final Map<String, Boolean> confirmed;
+    private final Counter databaseChecks;
+
+    private volatile Instant lastPoll;
+
+    public TokenRevocationState(MeterRegistry meterRegistry,
+                                @Value("${ems.revocation.pollIntervalMs:10000}") long pollIntervalMs,
+                                @Value("${ems.revocation.bucketMs:86400000}") long bucketMs,
+                                @Value("${ems.revocation.expectedPerBucket:100000}") int expectedPerBucket,
+                                @Value("${ems.revocation.confirmedMaxEntries:10000}") int confirmedMaxEntries,
+                                @Value("${jwt.refreshExpirationMs:1209600000}") long refreshExpirationMs) {
+        this.pollIntervalMs = pollIntervalMs;
+        this.maxTokenLifetimeMs = refreshExpirationMs;
+        this.confirmedMaxEntries = confirmedMaxEntries;
+        this.confirmed = Collections.synchronizedMap(new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > TokenRevocationState.this.confirmedMaxEntries;
+            }
+        });
+        this.revokedIds = new TimeBucketedBloomFilter(bucketMs, expectedPerBucket);
+        // The first poll reads everything that can still matter
+        this.lastPoll = Instant.now().minusMillis(refreshExpirationMs);
+
+        this.databaseChecks = Counter.builder("ems.revocation.confirmations")
+            .description("Revocation lookups the Bloom filter could not answer alone")
+            .register(meterRegistry);
+        Gauge.builder("ems.revocation.filter.bytes", revokedIds, TimeBucketedBloomFilter::sizeInBytes)
+            .description("Memory used by the revoked token filter")
+            .register(meterRegistry);
+        Gauge.builder("ems.revocation.cutoffs", cutoffs, ConcurrentHashMap::size)
+            .description("Users with a password reset newer than the longest token lifetime")
+            .register(meterRegistry);
+    }
+
+    public Answer check(Claims claims) {
+        Number userId = claims.get(JwtTokenUtil.CLAIM_USER_ID, Number.class);
+        Date expiration = claims.getExpiration();
+        return check(userId != null ? userId.longValue() : null, claims.getId(), JwtTokenUtil.issuedAt(claims),
+            expiration != null ? expiration.toInstant() : null);
+    }
+
+    // ASK_DATABASE is counted (ems.revocation.confirmations); the caller
+    // reads revoked_tokens and passes the answer to remember()
+    public Answer check(Long userId, String id, Instant issuedAt, Instant expiresAt) {
+        if (userId != null && issuedAt != null) {
+            Long cutoff = cutoffs.get(userId);
+            // A login right after the reset, even in the same second, gets
+            // tokens that work
+            if (cutoff != null && issuedAt.toEpochMilli() < cutoff) {
+                return Answer.REVOKED;
+            }
+        }
+
+        if (id == null || expiresAt == null || !revokedIds.mightContain(id, expiresAt.toEpochMilli())) {
+            return Answer.NOT_REVOKED;
+        }
+        Boolean known = confirmed.get(id);
+        if (known != null) {
+            return known ? Answer.REVOKED : Answer.NOT_REVOKED;
+        }
+        databaseChecks.increment();
+        return Answer.ASK_DATABASE;
+    }
+
+    // Dropping answers one at a time keeps the revoked ids that are in use
+    // answered from memory; clearing the whole map would send all of them
+    // to the database again at once
+    public void remember(String id, boolean revoked) {
+        confirmed.put(id, revoked);
+    }
+
+    // A revocation read from revoked_tokens (or just written there)
+    public void revoked(String id, Instant expiresAt) {
+        revokedIds.add(id, expiresAt.toEpochMilli());
+        confirmed.computeIfPresent(id, (key, revoked) -> Boolean.TRUE);
+    }
+
+    // A password change or reset (users.credentials_changed_at)
+    public void revokeAllIssuedBefore(Long userId, Instant changedAt) {
+        cutoffs.merge(userId, changedAt.toEpochMilli(), Math::max);
+    }
+
+    // Where the next poll starts reading. The window overlaps the previous
+    // one, so rows committed late (or stamped by a slightly slow clock) are
+    // not missed; adding an id twice is harmless.
+    public Instant pollWindowStart() {
+        return lastPoll.minusMillis(pollIntervalMs);
+    }
+
+    // Called when a poll that started at `startedAt` has read everything; a
+    // failed poll leaves the window where it was, so the next one retries it
+    public void polled(Instant startedAt) {
+        lastPoll = startedAt;
+    }
+
+    // Drops what can no longer match a token that has not expired
+    public void expire(Instant now) {
+        long nowMillis = now.toEpochMilli();
+        revokedIds.expire(nowMillis);
+        // Every token older than the reset has expired by then
+        cutoffs.values().removeIf(cutoff -> cutoff + maxTokenLifetimeMs < nowMillis);
+    }
+}
@@ -0,0 +1,87 @@
+package net.javaguides.ems.security;
+
+import io.jsonwebtoken.Claims;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Remembers tokens whose signature has already been checked, so a client
+// that sends the same bearer token on every request pays for the HMAC and
+// JSON parsing only once. Entries are keyed by a SHA-256 digest (the raw
+// token is never kept in memory) and are dropped when the token expires.
+public class VerifiedTokenCache {
+
+    private static final class Entry {
+        private final Claims claims;
+        private final long expiresAtMillis;
+
+        private Entry(Claims claims, long expiresAtMillis) {
+            this.claims = claims;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+
+    private final int maxEntries;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public VerifiedTokenCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public String digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            byte[] hash = sha256.digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            // Every JVM is required to ship SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public Claims get(String digest, long nowMillis) {
+        Entry entry = entries.get(digest);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAtMillis <= nowMillis) {
+            entries.remove(digest, entry);
+            return null;
+        }
+        return entry.claims;
+    }
+
+    public void put(String digest, Claims claims, long expiresAtMillis, long nowMillis) {
+        if (maxEntries <= 0) {
+            return;
+        }
+        if (entries.size() >= maxEntries) {
+            evict(nowMillis);
+        }
+        entries.put(digest, new Entry(claims, expiresAtMillis));
+    }
+
+    public void invalidate(String digest) {
+        entries.remove(digest);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // Drops expired tokens first; if the cache is still full, drops about a
+    // tenth of the entries so the next inserts do not evict one by one.
+    private void evict(long nowMillis) {
+        entries.values().removeIf(entry -> entry.expiresAtMillis <= nowMillis);
+        int excess = entries.size() - maxEntries + Math.max(1, maxEntries / 10);
+        Iterator<String> keys = entries.keySet().iterator();
+        while (excess-- > 0 && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+}
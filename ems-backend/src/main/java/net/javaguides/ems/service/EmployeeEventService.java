@@ -0,0 +1,18 @@
+package net.javaguides.ems.service;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import net.javaguides.ems.dto.EmployeeChangeDto;
+import net.javaguides.ems.security.JwtPrincipal;
+
+// Pushes committed employee changes to the open event streams of the
+// owning user
+public interface EmployeeEventService {
+
+    // Opens a stream for the user; it receives every change committed from
+    // now on, for as long as the user's token stays valid
+    SseEmitter subscribe(JwtPrincipal principal);
+
+    // Called once the change has committed
+    void onEmployeeChange(EmployeeChangeDto change);
+}
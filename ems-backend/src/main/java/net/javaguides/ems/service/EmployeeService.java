@@ -1,17 +1,48 @@
 package net.javaguides.ems.service;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
+import java.util.Set;
+import net.javaguides.ems.dto.BulkResultDto;
+import net.javaguides.ems.dto.EmployeeChangesDto;
 import net.javaguides.ems.dto.EmployeeDto;
-import net.javaguides.ems.entity.User;
+import net.javaguides.ems.dto.EmployeeField;
+import net.javaguides.ems.dto.EmployeePageDto;
+import net.javaguides.ems.dto.ExportFormat;
 
 public interface EmployeeService {
-    EmployeeDto createEmployee(EmployeeDto employeeDto, User user);
+    EmployeeDto createEmployee(EmployeeDto employeeDto, Long userId);
 
-    EmployeeDto getEmployeeById(Long employeeId, User user);
+    EmployeeDto getEmployeeById(Long employeeId, Long userId, Set<EmployeeField> fields);
 
-    List<EmployeeDto> getAllEmployees(User user);
+    List<EmployeeDto> getAllEmployees(Long userId, Set<EmployeeField> fields);
 
-    EmployeeDto updateEmployee(Long employeeId, EmployeeDto updatedEmployee, User user);
+    EmployeePageDto getEmployeesPage(Long userId, String after, Integer limit, String sort, Set<EmployeeField> fields);
 
-    void deleteEmployee(Long employeeId, User user);
-}
\ No newline at end of file
+    EmployeePageDto searchEmployees(Long userId, String query, String after, Integer limit, String sort,
+                                    Set<EmployeeField> fields);
+
+    // expectedVersion comes from If-Match; null skips the version check
+    EmployeeDto updateEmployee(Long employeeId, EmployeeDto updatedEmployee, Long userId, Long expectedVersion);
+
+    void deleteEmployee(Long employeeId, Long userId, Long expectedVersion);
+
+    List<EmployeeDto> getEmployeesByIds(List<Long> employeeIds, Long userId, Set<EmployeeField> fields);
+
+    BulkResultDto createEmployees(List<EmployeeDto> employees, Long userId);
+
+    BulkResultDto updateEmployees(List<EmployeeDto> employees, Long userId);
+
+    BulkResultDto deleteEmployees(List<Long> employeeIds, Long userId);
+
+    void exportEmployees(Long userId, ExportFormat format, OutputStream out) throws IOException;
+
+    // Writes the whole list as one JSON array while it is read, without
+    // building it in memory
+    void streamEmployees(Long userId, Set<EmployeeField> fields, OutputStream out) throws IOException;
+
+    // Delta sync: what changed since the token (since); no token returns
+    // the whole list
+    EmployeeChangesDto getChanges(Long userId, String since, Integer limit);
+}
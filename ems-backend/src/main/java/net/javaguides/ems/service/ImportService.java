@@ -0,0 +1,11 @@
+package net.javaguides.ems.service;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import net.javaguides.ems.dto.ImportJobDto;
+
+public interface ImportService {
+    ImportJobDto startImport(MultipartFile file, Long userId);
+
+    ImportJobDto getImport(String jobId, Long userId);
+}
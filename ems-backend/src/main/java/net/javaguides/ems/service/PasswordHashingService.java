@@ -0,0 +1,16 @@
+package net.javaguides.ems.service;
+
+import java.util.concurrent.CompletableFuture;
+
+// Runs password hashing and checking off the request threads. Both calls
+// throw ServiceBusyException (503) right away when the hashing queue is
+// full.
+public interface PasswordHashingService {
+    CompletableFuture<String> encode(String rawPassword);
+
+    CompletableFuture<Boolean> matches(String rawPassword, String encodedPassword);
+
+    // True when the hash was made with a different cost than the configured
+    // one and should be replaced after the next successful login
+    boolean needsRehash(String encodedPassword);
+}
@@ -0,0 +1,19 @@
+package net.javaguides.ems.service;
+
+import java.util.Optional;
+
+import net.javaguides.ems.dto.JwtResponse;
+import net.javaguides.ems.entity.User;
+
+// Issues access/refresh token pairs and revokes them. None of these hash a
+// password; a refresh costs a signature check and one insert.
+public interface TokenService {
+    JwtResponse issueTokens(User user);
+
+    // Empty when the refresh token is invalid, expired, revoked or was
+    // already used
+    Optional<JwtResponse> refresh(String refreshToken);
+
+    // Revokes whichever of the two tokens are valid; either may be null
+    void logout(String accessToken, String refreshToken);
+}
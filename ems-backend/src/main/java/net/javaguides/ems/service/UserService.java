@@ -1,11 +1,21 @@
 package net.javaguides.ems.service;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
 import net.javaguides.ems.entity.User;
 
+// Password hashing runs on PasswordHashingService, so these complete later
+// instead of holding the request thread
 public interface UserService {
-    boolean signup(String userName, String rawPassword);
-    boolean signin(String userName, String rawPassword);
+    // Completes with the new user, or empty when the name is already taken
+    CompletableFuture<Optional<User>> signup(String userName, String rawPassword);
+
+    // Completes with the user when the password matches, otherwise empty
+    CompletableFuture<Optional<User>> signin(String userName, String rawPassword);
+
+    // Completes with false when there is no such user
+    CompletableFuture<Boolean> resetPassword(String userName, String newPassword);
 
     Optional<User> findByUserName(String userName);
-}
\ No newline at end of file
+}
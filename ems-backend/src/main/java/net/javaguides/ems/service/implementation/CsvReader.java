@@ -0,0 +1,99 @@
+package net.javaguides.ems.service.implementation;
+
+// Minimal streaming CSV reader (RFC 4180): comma separated, fields may be
+// quoted, a quote inside a quoted field is written twice and quoted fields
+// may span lines. It reads one record at a time, so memory use depends on
+// the longest record and not on the size of the file.
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+class CsvReader implements Closeable {
+
+    // Guards against a runaway quoted field swallowing the rest of the file
+    static final int MAX_FIELD_LENGTH = 10_000;
+
+    private final Reader in;
+    private long line = 1;
+    private long recordLine = 1;
+    private int pushedBack = -1;
+
+    CsvReader(Reader in) {
+        this.in = in;
+    }
+
+    // Line on which the record returned by the last next() call started
+    long recordLine() {
+        return recordLine;
+    }
+
+    // Returns the fields of the next record, or null at the end of input
+    List<String> next() throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean any = false;
+        recordLine = line;
+
+        int c;
+        while ((c = read()) != -1) {
+            any = true;
+            if (quoted) {
+                if (c == '"') {
+                    int n = read();
+                    if (n == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        pushedBack = n;
+                    }
+                } else {
+                    if (c == '\n') {
+                        line++;
+                    }
+                    append(field, c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                line++;
+                fields.add(field.toString());
+                return fields;
+            } else if (c != '\r') {
+                append(field, c);
+            }
+        }
+        if (!any) {
+            return null;
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private int read() throws IOException {
+        if (pushedBack != -1) {
+            int c = pushedBack;
+            pushedBack = -1;
+            return c;
+        }
+        return in.read();
+    }
+
+    private static void append(StringBuilder field, int c) throws IOException {
+        if (field.length() >= MAX_FIELD_LENGTH) {
+            throw new IOException("CSV field longer than " + MAX_FIELD_LENGTH + " characters");
+        }
+        field.append((char) c);
+    }
+}
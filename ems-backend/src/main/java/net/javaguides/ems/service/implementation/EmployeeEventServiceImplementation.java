@@ -0,0 +1,395 @@
+package net.javaguides.ems.service.implementation;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import net.javaguides.ems.dto.EmployeeChangeDto;
+import net.javaguides.ems.exception.ServiceBusyException;
+import net.javaguides.ems.exception.TooManyRequestsException;
+import net.javaguides.ems.security.JwtPrincipal;
+import net.javaguides.ems.security.TokenRevocationRegistry;
+import net.javaguides.ems.service.EmployeeEventService;
+
+// Fans committed employee changes out to the user's open event streams.
+// EmployeeServiceImplementation publishes a change inside its transaction;
+// it arrives here only after the commit, on the writer's thread, which
+// just puts it into a bounded queue per connection and returns. A small
+// pool of sender threads writes the queues to the sockets, one connection
+// at a time each, so a slow client never holds up a write request.
+// A connection whose queue is full is behind for good: its queue is
+// replaced by a single RESYNC and it is closed, and the client reloads
+// and reconnects. A heartbeat comment every ems.events.heartbeatMs keeps
+// proxies from closing idle streams and finds connections that are gone.
+// It also checks the token the stream was opened with again: once it has
+// expired or was revoked (logout, password reset) the client gets an
+// "unauthorized" event and the stream is closed.
+// A write that takes longer than ems.events.sendTimeoutMs also counts as
+// falling behind. One that has not returned by then (the client stopped
+// reading and the socket buffer is full) is given up on: the connection is
+// dropped and the pool gets a thread in place of the blocked one until the
+// container times the write out (server.tomcat.connection-timeout), so a
+// few stalled clients do not hold up everyone else's events.
+// Changes only reach streams held by the instance that committed them.
+@Service
+public class EmployeeEventServiceImplementation implements EmployeeEventService {
+
+    private static final long RECONNECT_MS = 3000;
+
+    // Connection.writeState
+    private static final int IDLE = 0;
+    private static final int WRITING = 1;
+    private static final int STALLED = 2;
+    private static final int STALLED_REPLACED = 3;
+
+    private final int bufferSize;
+    private final int maxConnections;
+    private final int maxConnectionsPerUser;
+    private final int maxItemsPerEvent;
+    private final int senderThreads;
+    private final long sendTimeoutNanos;
+    private final ThreadPoolTaskExecutor senders;
+    private final TokenRevocationRegistry tokenRevocationRegistry;
+
+    private final ConcurrentHashMap<Long, Set<Connection>> connections = new ConcurrentHashMap<>();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    // Extra sender threads standing in for ones blocked in a stalled write
+    private final AtomicInteger replacedSenders = new AtomicInteger();
+    private final Counter sentEvents;
+    private final Counter slowConnections;
+
+    // One open stream and the events waiting for it
+    private static final class Connection {
+        final Long userId;
+        // Who opened it, with the token's id and expiry
+        final JwtPrincipal principal;
+        final SseEmitter emitter;
+        final BlockingQueue<SseEmitter.SseEventBuilder> queue;
+        final AtomicBoolean sending = new AtomicBoolean();
+        final AtomicBoolean open = new AtomicBoolean(true);
+        // Whether a write to the socket is under way, and since when
+        final AtomicInteger writeState = new AtomicInteger(IDLE);
+        volatile long writeStartedNanos;
+        // Set once it fell behind: what is queued is sent, then it closes
+        volatile boolean closing;
+
+        Connection(JwtPrincipal principal, SseEmitter emitter, int bufferSize) {
+            this.userId = principal.getId();
+            this.principal = principal;
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(bufferSize);
+        }
+    }
+
+    public EmployeeEventServiceImplementation(MeterRegistry meterRegistry,
+                                              TokenRevocationRegistry tokenRevocationRegistry,
+                                              @Value("${ems.events.bufferSize:64}") int bufferSize,
+                                              @Value("${ems.events.maxConnections:10000}") int maxConnections,
+                                              @Value("${ems.events.maxConnectionsPerUser:10}") int maxConnectionsPerUser,
+                                              @Value("${ems.events.maxItemsPerEvent:100}") int maxItemsPerEvent,
+                                              @Value("${ems.events.senderThreads:8}") int senderThreads,
+                                              @Value("${ems.events.sendTimeoutMs:10000}") long sendTimeoutMs,
+                                              @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.bufferSize = bufferSize;
+        this.maxConnections = maxConnections;
+        this.maxConnectionsPerUser = maxConnectionsPerUser;
+        this.maxItemsPerEvent = maxItemsPerEvent;
+        this.senderThreads = senderThreads;
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        this.tokenRevocationRegistry = tokenRevocationRegistry;
+
+        // Each connection has at most one send task waiting, so the task
+        // queue never needs more room than there are connections
+        this.senders = new ThreadPoolTaskExecutor();
+        this.senders.setCorePoolSize(senderThreads);
+        this.senders.setMaxPoolSize(senderThreads);
+        this.senders.setQueueCapacity(maxConnections);
+        this.senders.setThreadNamePrefix("ems-events-");
+        if (virtualThreads) {
+            this.senders.setThreadFactory(Thread.ofVirtual().name("ems-events-", 0).factory());
+        }
+        this.senders.initialize();
+
+        Gauge.builder("ems.events.connections", connectionCount, AtomicInteger::get)
+            .description("Open employee event streams")
+            .register(meterRegistry);
+        this.sentEvents = Counter.builder("ems.events.sent")
+            .description("Employee change events written to streams")
+            .register(meterRegistry);
+        this.slowConnections = Counter.builder("ems.events.dropped")
+            .description("Event streams closed because the client fell behind or stopped reading")
+            .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        connections.values().forEach(userConnections -> userConnections.forEach(this::close));
+        senders.shutdown();
+    }
+
+    @Override
+    public SseEmitter subscribe(JwtPrincipal principal) {
+        Long userId = principal.getId();
+        if (connectionCount.incrementAndGet() > maxConnections) {
+            connectionCount.decrementAndGet();
+            throw new ServiceBusyException("Too many open event streams, please try again later");
+        }
+        SseEmitter emitter = createEmitter();
+        Connection connection = new Connection(principal, emitter, bufferSize);
+        // Added under the map's lock, so remove() cannot drop the set it
+        // goes into at the same moment
+        boolean[] accepted = new boolean[1];
+        connections.compute(userId, (id, userConnections) -> {
+            Set<Connection> updated = userConnections != null ? userConnections : ConcurrentHashMap.newKeySet();
+            if (updated.size() < maxConnectionsPerUser) {
+                accepted[0] = updated.add(connection);
+            }
+            return updated.isEmpty() ? null : updated;
+        });
+        if (!accepted[0]) {
+            connectionCount.decrementAndGet();
+            throw new TooManyRequestsException("Too many open event streams for this account", RECONNECT_MS / 1000);
+        }
+        emitter.onCompletion(() -> remove(connection));
+        emitter.onError(error -> remove(connection));
+        emitter.onTimeout(emitter::complete);
+
+        // Tells the client the stream is live and how soon to come back
+        offer(connection, SseEmitter.event().name("ready").reconnectTime(RECONNECT_MS).data("{}"));
+        return emitter;
+    }
+
+    // Timeout from spring.mvc.async.request-timeout; the client then
+    // reconnects. Tests hand out emitters that record what is sent.
+    SseEmitter createEmitter() {
+        return new SseEmitter();
+    }
+
+    @Override
+    @TransactionalEventListener
+    public void onEmployeeChange(EmployeeChangeDto change) {
+        Set<Connection> userConnections = connections.get(change.getUserId());
+        if (userConnections == null || userConnections.isEmpty()) {
+            return;
+        }
+        EmployeeChangeDto sent = change.size() > maxItemsPerEvent ? EmployeeChangeDto.resync(change.getUserId()) : change;
+        for (Connection connection : userConnections) {
+            offer(connection, SseEmitter.event().name("change").data(sent, MediaType.APPLICATION_JSON));
+        }
+    }
+
+    @Scheduled(fixedRateString = "${ems.events.heartbeatMs:15000}", initialDelayString = "${ems.events.heartbeatMs:15000}")
+    public void heartbeat() {
+        Instant now = Instant.now();
+        for (Set<Connection> userConnections : connections.values()) {
+            for (Connection connection : userConnections) {
+                if (isAuthorized(connection, now)) {
+                    offer(connection, SseEmitter.event().comment("heartbeat"));
+                } else {
+                    unauthorize(connection);
+                }
+            }
+        }
+    }
+
+    // The stream outlives the request that opened it, so its token is
+    // checked again here. If the revocation table cannot be read the stream
+    // stays open; the next heartbeat tries again.
+    private boolean isAuthorized(Connection connection, Instant now) {
+        JwtPrincipal principal = connection.principal;
+        if (principal.getExpiresAt() != null && !now.isBefore(principal.getExpiresAt())) {
+            return false;
+        }
+        try {
+            return !tokenRevocationRegistry.isRevoked(principal.getId(), principal.getTokenId(),
+                principal.getIssuedAt(), principal.getExpiresAt());
+        } catch (DataAccessException e) {
+            return true;
+        }
+    }
+
+    // Nothing queued is sent any more; the client is told to log in again
+    // (or refresh its token) before it reconnects
+    private void unauthorize(Connection connection) {
+        if (connection.closing || !connection.open.get()) {
+            return;
+        }
+        connection.closing = true;
+        connection.queue.clear();
+        connection.queue.offer(SseEmitter.event().name("unauthorized").data("{}"));
+        scheduleSend(connection);
+    }
+
+    private void offer(Connection connection, SseEmitter.SseEventBuilder event) {
+        if (connection.closing || !connection.open.get()) {
+            return;
+        }
+        if (!connection.queue.offer(event)) {
+            fallBehind(connection);
+        }
+        scheduleSend(connection);
+    }
+
+    // The client reads slower than changes arrive. Whatever is queued is
+    // useless to it now: it has to reload anyway.
+    private void fallBehind(Connection connection) {
+        slowConnections.increment();
+        connection.closing = true;
+        connection.queue.clear();
+        connection.queue.offer(SseEmitter.event().name("change")
+            .data(EmployeeChangeDto.resync(connection.userId), MediaType.APPLICATION_JSON));
+    }
+
+    private void scheduleSend(Connection connection) {
+        if (!connection.sending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            senders.execute(() -> send(connection));
+        } catch (TaskRejectedException e) {
+            connection.sending.set(false);
+            close(connection);
+        }
+    }
+
+    // Finds writes that have been blocked for longer than the send timeout.
+    // Runs every sendTimeoutMs, so a stalled write is noticed within twice
+    // that.
+    @Scheduled(fixedDelayString = "${ems.events.sendTimeoutMs:10000}",
+               initialDelayString = "${ems.events.sendTimeoutMs:10000}")
+    public void closeStalled() {
+        long now = System.nanoTime();
+        for (Set<Connection> userConnections : connections.values()) {
+            for (Connection connection : userConnections) {
+                if (connection.writeState.get() == WRITING && now - connection.writeStartedNanos > sendTimeoutNanos) {
+                    stall(connection);
+                }
+            }
+        }
+    }
+
+    // The blocked sender thread is replaced before the state changes, so
+    // the pool never shrinks below senderThreads, even if the write returns
+    // right now. At most senderThreads threads are replaced at a time.
+    private void stall(Connection connection) {
+        boolean replace = replacedSenders.incrementAndGet() <= senderThreads;
+        if (replace) {
+            resizeSenders(1);
+        } else {
+            replacedSenders.decrementAndGet();
+        }
+        if (connection.writeState.compareAndSet(WRITING, replace ? STALLED_REPLACED : STALLED)) {
+            slowConnections.increment();
+            remove(connection);
+        } else if (replace) {
+            releaseSender();
+        }
+    }
+
+    private void releaseSender() {
+        replacedSenders.decrementAndGet();
+        resizeSenders(-1);
+    }
+
+    private void resizeSenders(int delta) {
+        synchronized (senders) {
+            int size = senders.getCorePoolSize() + delta;
+            if (delta > 0) {
+                senders.setMaxPoolSize(size);
+                senders.setCorePoolSize(size);
+            } else {
+                senders.setCorePoolSize(size);
+                senders.setMaxPoolSize(size);
+            }
+        }
+    }
+
+    private void send(Connection connection) {
+        try {
+            SseEmitter.SseEventBuilder event;
+            while (connection.open.get() && (event = connection.queue.poll()) != null) {
+                if (!write(connection, event)) {
+                    // Too slow: closed like a connection that fell behind.
+                    // If it was given up on, this ends the response.
+                    close(connection);
+                    return;
+                }
+            }
+            if (connection.closing) {
+                close(connection);
+            }
+        } catch (IOException | IllegalStateException e) {
+            // The client went away; the container reports it to the emitter
+            remove(connection);
+        } finally {
+            connection.sending.set(false);
+        }
+        // Something may have been queued after the last poll
+        if (!connection.queue.isEmpty() && connection.open.get()) {
+            scheduleSend(connection);
+        }
+    }
+
+    // Returns false when the write took longer than the send timeout
+    private boolean write(Connection connection, SseEmitter.SseEventBuilder event) throws IOException {
+        long started = System.nanoTime();
+        connection.writeStartedNanos = started;
+        connection.writeState.set(WRITING);
+        int state = WRITING;
+        try {
+            connection.emitter.send(event);
+        } finally {
+            state = connection.writeState.getAndSet(IDLE);
+            if (state == STALLED_REPLACED) {
+                releaseSender();
+            }
+        }
+        sentEvents.increment();
+        if (state != WRITING) {
+            // Given up on (and counted) by closeStalled meanwhile
+            return false;
+        }
+        if (System.nanoTime() - started > sendTimeoutNanos) {
+            slowConnections.increment();
+            return false;
+        }
+        return true;
+    }
+
+    private void close(Connection connection) {
+        remove(connection);
+        connection.emitter.complete();
+    }
+
+    private void remove(Connection connection) {
+        if (!connection.open.compareAndSet(true, false)) {
+            return;
+        }
+        connectionCount.decrementAndGet();
+        connection.queue.clear();
+        connections.computeIfPresent(connection.userId, (userId, userConnections) -> {
+            userConnections.remove(connection);
+            return userConnections.isEmpty() ? null : userConnections;
+        });
+    }
+}
@@ -0,0 +1,165 @@
+package net.javaguides.ems.service.implementation;
+
+// Writes employee rows to the response while they are read from the
+// database. Each row is encoded straight from the JDBC ResultSet, so no
+// entity, DTO or list is kept in memory and the heap used by an export does
+// not depend on how many employees the account has.
+// JSON (a single array, used by GET /api/employees?stream=true) and NDJSON
+// write only the selected fields, with field names encoded once up front.
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import net.javaguides.ems.dto.EmployeeField;
+import net.javaguides.ems.dto.ExportFormat;
+
+class EmployeeExportWriter implements RowCallbackHandler {
+
+    static final String[] CSV_HEADER = {"id", "firstName", "lastName", "email"};
+
+    // The fields of the export file, unchanged since NDJSON was added
+    static final Set<EmployeeField> EXPORT_FIELDS = EnumSet.of(EmployeeField.ID, EmployeeField.FIRST_NAME,
+        EmployeeField.LAST_NAME, EmployeeField.EMAIL, EmployeeField.USER_ID);
+
+    // JSON field names, quoted and escaped once instead of on every row
+    private static final SerializableString[] FIELD_NAMES = new SerializableString[EmployeeField.values().length];
+
+    static {
+        for (EmployeeField field : EmployeeField.values()) {
+            FIELD_NAMES[field.ordinal()] = new SerializedString(field.getParam());
+        }
+    }
+
+    private final ExportFormat format;
+    private final EmployeeField[] fields;
+    private final Writer csv;
+    private final JsonGenerator json;
+    private long rows;
+
+    EmployeeExportWriter(ExportFormat format, OutputStream out, ObjectMapper objectMapper) throws IOException {
+        this(format, EXPORT_FIELDS, out, objectMapper);
+    }
+
+    // The selected fields are copied to an array in declaration order (the
+    // order of the SELECT list), so writing a row does not create an iterator
+    EmployeeExportWriter(ExportFormat format, Set<EmployeeField> fields, OutputStream out,
+                         ObjectMapper objectMapper) throws IOException {
+        this.format = format;
+        EnumSet<EmployeeField> ordered = EnumSet.noneOf(EmployeeField.class);
+        ordered.addAll(fields);
+        this.fields = ordered.toArray(new EmployeeField[0]);
+        if (format == ExportFormat.CSV) {
+            this.csv = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            this.json = null;
+        } else {
+            this.csv = null;
+            this.json = objectMapper.getFactory().createGenerator(out);
+            // NDJSON separates records with newlines, not the default space
+            this.json.setRootValueSeparator(null);
+        }
+    }
+
+    // Sends the CSV header (or the opening bracket of the JSON array) right
+    // away so the client sees the first byte before the query has returned
+    // anything
+    void start() throws IOException {
+        if (format == ExportFormat.CSV) {
+            csv.write(String.join(",", CSV_HEADER));
+            csv.write("\n");
+            csv.flush();
+        } else if (format == ExportFormat.JSON) {
+            json.writeStartArray();
+            json.flush();
+        }
+    }
+
+    @Override
+    public void processRow(ResultSet rs) throws SQLException {
+        try {
+            if (format == ExportFormat.CSV) {
+                writeCsvRow(rs);
+            } else {
+                writeJsonRow(rs);
+            }
+            // Push the first row out immediately; after that the buffers
+            // flush whenever they fill up
+            if (++rows == 1) {
+                flush();
+            }
+        } catch (IOException e) {
+            // The client went away; stop reading rows
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void finish() throws IOException {
+        if (format == ExportFormat.JSON) {
+            json.writeEndArray();
+        }
+        flush();
+    }
+
+    private void writeCsvRow(ResultSet rs) throws SQLException, IOException {
+        csv.write(Long.toString(rs.getLong("id")));
+        csv.write(',');
+        csv.write(csvField(rs.getString("first_name")));
+        csv.write(',');
+        csv.write(csvField(rs.getString("last_name")));
+        csv.write(',');
+        csv.write(csvField(rs.getString("email_id")));
+        csv.write('\n');
+    }
+
+    // Columns are read by position in the order of EmployeeField.columns:
+    // the id first, then the selected fields
+    private void writeJsonRow(ResultSet rs) throws SQLException, IOException {
+        json.writeStartObject();
+        int column = 2;
+        for (EmployeeField field : fields) {
+            json.writeFieldName(FIELD_NAMES[field.ordinal()]);
+            switch (field) {
+                case ID -> json.writeNumber(rs.getLong(1));
+                case FIRST_NAME, LAST_NAME, EMAIL -> json.writeString(rs.getString(column++));
+                case USER_ID, VERSION -> json.writeNumber(rs.getLong(column++));
+            }
+        }
+        json.writeEndObject();
+        if (format == ExportFormat.NDJSON) {
+            json.writeRaw('\n');
+        }
+    }
+
+    private void flush() throws IOException {
+        if (csv != null) {
+            csv.flush();
+        } else {
+            json.flush();
+        }
+    }
+
+    // Quotes a value when it contains a separator, quote or line break
+    static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        boolean quote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+            || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+        return quote ? "\"" + value.replace("\"", "\"\"") + "\"" : value;
+    }
+}
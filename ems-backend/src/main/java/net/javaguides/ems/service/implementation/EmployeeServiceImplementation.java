@@ -2,16 +2,54 @@ package net.javaguides.ems.service.implementation;
 
 import lombok.AllArgsConstructor;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import net.javaguides.ems.dto.BulkItemResultDto;
+import net.javaguides.ems.dto.BulkResultDto;
+import net.javaguides.ems.dto.ChangeToken;
+import net.javaguides.ems.dto.EmployeeChangeDto;
+import net.javaguides.ems.dto.EmployeeChangesDto;
+import net.javaguides.ems.dto.EmployeeCursor;
 import net.javaguides.ems.dto.EmployeeDto;
+import net.javaguides.ems.dto.EmployeeField;
+import net.javaguides.ems.dto.EmployeePageDto;
+import net.javaguides.ems.dto.ExportFormat;
 import net.javaguides.ems.entity.Employee;
 import net.javaguides.ems.entity.User;
+import net.javaguides.ems.exception.BadRequestException;
+import net.javaguides.ems.exception.ConflictException;
+import net.javaguides.ems.exception.GoneException;
+import net.javaguides.ems.exception.PreconditionFailedException;
 import net.javaguides.ems.exception.ResourceNotFoundException;
 import net.javaguides.ems.mapper.EmployeeMapper;
+import net.javaguides.ems.repository.EmployeeChangeRepository;
+import net.javaguides.ems.repository.EmployeeJdbcRepository;
+import net.javaguides.ems.repository.EmployeeProjectionRepository;
 import net.javaguides.ems.repository.EmployeeRepository;
+import net.javaguides.ems.repository.UserRepository;
 import net.javaguides.ems.service.EmployeeService;
 
 // @Service indicates that it is a service class which means the class which 
@@ -20,11 +58,30 @@ import net.javaguides.ems.service.EmployeeService;
 @Service
 @AllArgsConstructor
 public class EmployeeServiceImplementation implements EmployeeService {
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int MAX_BATCH_SIZE = 10_000;
+    private static final int MAX_BATCH_GET_IDS = 1_000;
+    private static final int DEFAULT_CHANGES_LIMIT = 500;
+    private static final int MAX_CHANGES_LIMIT = 5_000;
+
     // used to interact with the database
     private final EmployeeRepository employeeRepository;
+    private final UserRepository userRepository;
+    // used for bulk operations that must be sent as JDBC batches
+    private final EmployeeJdbcRepository employeeJdbcRepository;
+    // used for read-only queries that return DTOs without entities
+    private final EmployeeProjectionRepository employeeProjectionRepository;
+    // change numbers and tombstones for delta sync; every write takes one
+    private final EmployeeChangeRepository employeeChangeRepository;
+    private final ObjectMapper objectMapper;
+    // every write publishes an EmployeeChangeDto; listeners get it after
+    // the commit (event streams)
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
-    public EmployeeDto createEmployee(EmployeeDto employeeDto, User user) {
+    @Transactional
+    public EmployeeDto createEmployee(EmployeeDto employeeDto, Long userId) {
         
         Employee existingEmployee = employeeRepository.findByEmail(employeeDto.getEmail()).orElse(null);
         
@@ -32,54 +89,473 @@ public class EmployeeServiceImplementation implements EmployeeService {
             throw new ResourceNotFoundException("Employee with email " + employeeDto.getEmail() + " already exists");
         }
 
+        // getReferenceById only creates a proxy holding the id; the users row
+        // is not read, it is just needed for the user_id foreign key
+        User user = userRepository.getReferenceById(userId);
+
         // converts EmployeeDto object to Employee entity to get stored in db
         Employee employee = EmployeeMapper.mapToEmployee(employeeDto, user);
-        employee.setUser(user);
+        employee.setChangeSeq(employeeChangeRepository.nextChangeSeq(userId));
+        employee.setUpdatedAt(Instant.now());
 
         // save() - runs an insert query if employee do not exits 
         //        - runs an update query if it already exists
-        Employee savedEmployee = employeeRepository.save(employee);
+        // The check above reads the natural id cache and can miss a
+        // concurrent insert; the unique index on email_id then decides
+        Employee savedEmployee;
+        try {
+            savedEmployee = employeeRepository.save(employee);
+        } catch (DataIntegrityViolationException e) {
+            throw new ConflictException("Employee with email " + employeeDto.getEmail() + " already exists");
+        }
 
         // Again convert to employeeDto to sendt back to the client
-        return EmployeeMapper.mapToEmployeeDto(savedEmployee);
+        EmployeeDto savedEmployeeDto = EmployeeMapper.mapToEmployeeDto(savedEmployee);
+        eventPublisher.publishEvent(EmployeeChangeDto.created(userId, List.of(savedEmployeeDto)));
+        return savedEmployeeDto;
     }
 
+    // Reads are marked read-only so that, with read replicas configured,
+    // they are served by a replica (ReadWriteRoutingDataSource). SUPPORTS
+    // starts no database transaction of its own: no extra statements, and
+    // a cache hit still takes no connection.
+    // A full read of one employee is served from the second-level cache when
+    // the row is cached. Reads of selected fields build DTOs straight from
+    // the JDBC rows (no entities) and select only the requested columns.
     @Override
-    public EmployeeDto getEmployeeById(Long employeeId, User user) {
-        Employee employee = employeeRepository.findById(employeeId)
-            .filter(emp -> emp.getUser().getId().equals(user.getId()))
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public EmployeeDto getEmployeeById(Long employeeId, Long userId, Set<EmployeeField> fields) {
+        if (EmployeeField.isAll(fields)) {
+            return employeeRepository.findCachedById(employeeId)
+                .filter(employee -> employee.getUser().getId().equals(userId))
+                .map(EmployeeMapper::mapToEmployeeDto)
+                .orElseThrow(() -> new ResourceNotFoundException("Employee do not exist with given id: " + employeeId));
+        }
+        EmployeeDto employee = employeeProjectionRepository.findByIdAndUserId(employeeId, userId, fields)
             .orElseThrow(() -> new ResourceNotFoundException("Employee do not exist with given id: " + employeeId));
-        return EmployeeMapper.mapToEmployeeDto(employee);
+        return EmployeeField.retainOnly(employee, fields);
     }
 
     @Override
-    public List<EmployeeDto> getAllEmployees(User user) {
-        List<Employee> employees = employeeRepository.findByUser(user);
-        return employees.stream().map((employee) -> EmployeeMapper.mapToEmployeeDto(employee))
-            .collect(Collectors.toList());
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public List<EmployeeDto> getAllEmployees(Long userId, Set<EmployeeField> fields) {
+        List<EmployeeDto> employees = employeeProjectionRepository.findAllByUserId(userId, fields);
+        employees.forEach(employee -> EmployeeField.retainOnly(employee, fields));
+        return employees;
     } 
 
-    // Gets an updatedEmployee obj and sets its values to a new object based 
-    // on the id and again returns the object 
+    // Returns one page after the given cursor. One extra row is fetched to
+    // know whether another page exists without running a COUNT query.
     @Override
-    public EmployeeDto updateEmployee(Long employeeId, EmployeeDto updatedEmployee, User user) {
-        Employee employee = employeeRepository.findById(employeeId) 
-            .filter(emp -> emp.getUser().getId().equals(user.getId()))
-            .orElseThrow(() -> new ResourceNotFoundException("Employee do not exist with given id: " + employeeId));
-        employee.setFirstName(updatedEmployee.getFirstName());
-        employee.setLastName(updatedEmployee.getLastName());
-        employee.setEmail(updatedEmployee.getEmail());
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public EmployeePageDto getEmployeesPage(Long userId, String after, Integer limit, String sort,
+                                            Set<EmployeeField> fields) {
+        int pageSize = pageSize(limit);
+        EmployeeCursor.SortKey sortKey = EmployeeCursor.SortKey.from(sort);
+        if (sortKey == EmployeeCursor.SortKey.RELEVANCE) {
+            throw new BadRequestException("sort=relevance is only supported by search");
+        }
+        EmployeeCursor cursor = cursor(after, sortKey);
+
+        List<EmployeeDto> rows = sortKey == EmployeeCursor.SortKey.LAST_NAME
+            ? employeeProjectionRepository.findPageOrderByLastName(userId, cursor.getLastName(), cursor.getId(),
+                pageSize + 1, fields)
+            : employeeProjectionRepository.findPageOrderById(userId, cursor.getId(), pageSize + 1, fields);
 
-        // Performs both update and save operations
-        Employee updatedEmployeeObj = employeeRepository.save(employee);
-        return EmployeeMapper.mapToEmployeeDto(updatedEmployeeObj);
+        boolean hasMore = rows.size() > pageSize;
+        List<EmployeeDto> items = rows.subList(0, Math.min(rows.size(), pageSize));
+        String nextCursor = hasMore
+            ? EmployeeCursor.after(items.get(items.size() - 1), sortKey).encode()
+            : null;
+        items.forEach(employee -> EmployeeField.retainOnly(employee, fields));
+        return new EmployeePageDto(items, nextCursor, hasMore);
     }
 
+    // Prefix search over first name, last name and email, done by the
+    // database so the client never needs the whole list to filter it.
     @Override
-    public void deleteEmployee(Long employeeId, User user) {
-        Employee employee = employeeRepository.findById(employeeId)
-            .filter(emp -> emp.getUser().getId().equals(user.getId()))
-            .orElseThrow(() -> new ResourceNotFoundException("Employee do not exist with given id: " + employeeId));
-            employeeRepository.delete(employee);
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public EmployeePageDto searchEmployees(Long userId, String query, String after, Integer limit, String sort,
+                                           Set<EmployeeField> fields) {
+        String term = query == null ? "" : query.trim().toLowerCase();
+        if (term.isEmpty()) {
+            throw new BadRequestException("Search query must not be empty");
+        }
+        int pageSize = pageSize(limit);
+        EmployeeCursor.SortKey sortKey = sort == null || sort.isBlank()
+            ? EmployeeCursor.SortKey.RELEVANCE
+            : EmployeeCursor.SortKey.from(sort);
+        if (sortKey == EmployeeCursor.SortKey.ID) {
+            throw new BadRequestException("Search supports sort=relevance or sort=lastName");
+        }
+        EmployeeCursor cursor = cursor(after, sortKey);
+        String prefix = escapeLike(term) + "%";
+
+        List<EmployeeDto> items = new ArrayList<>();
+        int lastRank = -1;
+        boolean hasMore;
+        if (sortKey == EmployeeCursor.SortKey.RELEVANCE) {
+            List<EmployeeProjectionRepository.RankedEmployee> rows = employeeProjectionRepository.searchPageByRelevance(
+                userId, term, prefix, cursor.getRank(), cursor.getLastName(), cursor.getId(), pageSize + 1, fields);
+            hasMore = rows.size() > pageSize;
+            for (EmployeeProjectionRepository.RankedEmployee row : rows.subList(0, Math.min(rows.size(), pageSize))) {
+                items.add(row.getEmployee());
+                lastRank = row.getRank();
+            }
+        } else {
+            List<EmployeeDto> rows = employeeProjectionRepository.searchPageByLastName(userId, prefix,
+                cursor.getLastName(), cursor.getId(), pageSize + 1, fields);
+            hasMore = rows.size() > pageSize;
+            items.addAll(rows.subList(0, Math.min(rows.size(), pageSize)));
+        }
+
+        String nextCursor = hasMore
+            ? EmployeeCursor.after(items.get(items.size() - 1), sortKey, lastRank).encode()
+            : null;
+        items.forEach(employee -> EmployeeField.retainOnly(employee, fields));
+        return new EmployeePageDto(items, nextCursor, hasMore);
+    }
+
+    @Override
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public List<EmployeeDto> getEmployeesByIds(List<Long> employeeIds, Long userId, Set<EmployeeField> fields) {
+        if (employeeIds.size() > MAX_BATCH_GET_IDS) {
+            throw new BadRequestException("At most " + MAX_BATCH_GET_IDS + " ids can be requested at once");
+        }
+        List<EmployeeDto> employees = employeeProjectionRepository.findByIdsAndUserId(employeeIds, userId, fields);
+        employees.forEach(employee -> EmployeeField.retainOnly(employee, fields));
+        return employees;
+    }
+
+    // Bulk create: every item is validated against the same rules as
+    // createEmployee (email present and not used yet), then all accepted
+    // rows are inserted through JDBC batches in one transaction.
+    @Override
+    @Transactional
+    public BulkResultDto createEmployees(List<EmployeeDto> employees, Long userId) {
+        checkBatchSize(employees);
+        BulkItemResultDto[] results = new BulkItemResultDto[employees.size()];
+        Map<String, Long> takenEmails = employeeJdbcRepository.findEmailOwners(emailsOf(employees));
+        Set<String> batchEmails = new HashSet<>();
+        List<EmployeeDto> accepted = new ArrayList<>();
+        List<Integer> acceptedIndexes = new ArrayList<>();
+
+        for (int i = 0; i < employees.size(); i++) {
+            EmployeeDto employee = employees.get(i);
+            if (employee == null || isBlank(employee.getEmail())) {
+                results[i] = failure(i, null, BulkItemResultDto.Status.INVALID, "Email is required");
+                continue;
+            }
+            String email = employee.getEmail().toLowerCase(Locale.ROOT);
+            if (takenEmails.containsKey(email) || !batchEmails.add(email)) {
+                results[i] = failure(i, null, BulkItemResultDto.Status.CONFLICT,
+                    "Employee with email " + employee.getEmail() + " already exists");
+                continue;
+            }
+            accepted.add(employee);
+            acceptedIndexes.add(i);
+        }
+
+        List<Long> ids = accepted.isEmpty()
+            ? List.of()
+            : employeeJdbcRepository.batchInsert(accepted, userId, employeeChangeRepository.nextChangeSeq(userId));
+        List<EmployeeDto> created = new ArrayList<>(ids.size());
+        for (int j = 0; j < acceptedIndexes.size(); j++) {
+            int index = acceptedIndexes.get(j);
+            results[index] = new BulkItemResultDto(index, ids.get(j), BulkItemResultDto.Status.CREATED, null, 0L);
+            EmployeeDto employee = saved(ids.get(j), accepted.get(j), userId);
+            employee.setVersion(0L);
+            created.add(employee);
+        }
+        if (!created.isEmpty()) {
+            eventPublisher.publishEvent(EmployeeChangeDto.created(userId, created));
+        }
+        return BulkResultDto.of(Arrays.asList(results));
+    }
+
+    @Override
+    @Transactional
+    public BulkResultDto updateEmployees(List<EmployeeDto> employees, Long userId) {
+        checkBatchSize(employees);
+        BulkItemResultDto[] results = new BulkItemResultDto[employees.size()];
+        List<Long> requestedIds = employees.stream()
+            .filter(employee -> employee != null && employee.getId() != null)
+            .map(EmployeeDto::getId)
+            .collect(Collectors.toList());
+        Set<Long> ownedIds = employeeJdbcRepository.findOwnedIds(userId, requestedIds);
+        Map<String, Long> takenEmails = employeeJdbcRepository.findEmailOwners(emailsOf(employees));
+        Map<String, Long> batchEmails = new HashMap<>();
+        Set<Long> batchIds = new HashSet<>();
+        List<EmployeeDto> accepted = new ArrayList<>();
+
+        for (int i = 0; i < employees.size(); i++) {
+            EmployeeDto employee = employees.get(i);
+            if (employee == null || employee.getId() == null || isBlank(employee.getEmail())) {
+                results[i] = failure(i, null, BulkItemResultDto.Status.INVALID, "Id and email are required");
+                continue;
+            }
+            Long id = employee.getId();
+            if (!ownedIds.contains(id)) {
+                results[i] = failure(i, id, BulkItemResultDto.Status.NOT_FOUND,
+                    "Employee do not exist with given id: " + id);
+                continue;
+            }
+            if (!batchIds.add(id)) {
+                results[i] = failure(i, id, BulkItemResultDto.Status.INVALID, "Employee " + id + " appears twice");
+                continue;
+            }
+            String email = employee.getEmail().toLowerCase(Locale.ROOT);
+            Long emailOwner = takenEmails.get(email);
+            Long batchOwner = batchEmails.putIfAbsent(email, id);
+            if ((emailOwner != null && !emailOwner.equals(id)) || batchOwner != null) {
+                results[i] = failure(i, id, BulkItemResultDto.Status.CONFLICT,
+                    "Employee with email " + employee.getEmail() + " already exists");
+                continue;
+            }
+            accepted.add(employee);
+            results[i] = new BulkItemResultDto(i, id, BulkItemResultDto.Status.UPDATED, null);
+        }
+
+        if (!accepted.isEmpty()) {
+            Map<Long, Long> versions = employeeJdbcRepository.batchUpdate(accepted, userId,
+                employeeChangeRepository.nextChangeSeq(userId));
+            for (BulkItemResultDto result : results) {
+                if (result.getStatus() == BulkItemResultDto.Status.UPDATED) {
+                    result.setVersion(versions.get(result.getId()));
+                }
+            }
+            // With the new versions, so that a client that applies the event
+            // still sends If-Match on its next edit
+            eventPublisher.publishEvent(EmployeeChangeDto.updated(userId, accepted.stream()
+                .map(employee -> {
+                    EmployeeDto saved = saved(employee.getId(), employee, userId);
+                    saved.setVersion(versions.get(employee.getId()));
+                    return saved;
+                })
+                .collect(Collectors.toList())));
+        }
+        return BulkResultDto.of(Arrays.asList(results));
+    }
+
+    @Override
+    @Transactional
+    public BulkResultDto deleteEmployees(List<Long> employeeIds, Long userId) {
+        checkBatchSize(employeeIds);
+        BulkItemResultDto[] results = new BulkItemResultDto[employeeIds.size()];
+        Set<Long> ownedIds = employeeJdbcRepository.findOwnedIds(userId,
+            employeeIds.stream().filter(Objects::nonNull).collect(Collectors.toList()));
+        Set<Long> toDelete = new LinkedHashSet<>();
+
+        for (int i = 0; i < employeeIds.size(); i++) {
+            Long id = employeeIds.get(i);
+            if (id != null && ownedIds.contains(id) && toDelete.add(id)) {
+                results[i] = new BulkItemResultDto(i, id, BulkItemResultDto.Status.DELETED, null);
+            } else {
+                results[i] = failure(i, id, BulkItemResultDto.Status.NOT_FOUND,
+                    "Employee do not exist with given id: " + id);
+            }
+        }
+
+        if (!toDelete.isEmpty()) {
+            long changeSeq = employeeChangeRepository.nextChangeSeq(userId);
+            employeeJdbcRepository.deleteOwned(userId, toDelete);
+            employeeChangeRepository.recordDeletes(userId, toDelete, changeSeq);
+            eventPublisher.publishEvent(EmployeeChangeDto.deleted(userId, new ArrayList<>(toDelete)));
+        }
+        return BulkResultDto.of(Arrays.asList(results));
+    }
+
+    // Streams all of the user's employees as CSV or NDJSON. Rows are written
+    // as the cursor returns them, so memory stays flat for any row count.
+    @Override
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public void exportEmployees(Long userId, ExportFormat format, OutputStream out) throws IOException {
+        EmployeeExportWriter writer = new EmployeeExportWriter(format, out, objectMapper);
+        writer.start();
+        try {
+            employeeJdbcRepository.streamByUserId(userId, writer);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.finish();
+    }
+
+    @Override
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public void streamEmployees(Long userId, Set<EmployeeField> fields, OutputStream out) throws IOException {
+        EmployeeExportWriter writer = new EmployeeExportWriter(ExportFormat.JSON, fields, out, objectMapper);
+        writer.start();
+        try {
+            employeeJdbcRepository.streamByUserId(userId, fields, writer);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.finish();
+    }
+
+    // Delta sync. Without a token the whole list is returned (full=true);
+    // with one, only the employees created or updated since and the ids of
+    // those deleted since, in the order of their change numbers. Both
+    // reads run in one repeatable-read transaction, so they see the same
+    // commits and the new token covers exactly what was returned. When
+    // more changed than limit allows, the token points at the last change
+    // returned and hasMore is set.
+    // A token older than the compacted tombstones answers 410: sync in
+    // full again. A token ahead of this database, issued by the primary
+    // while this read is served by a lagging replica, gets an empty delta
+    // with the same token; the replica catches up by the next sync.
+    @Override
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public EmployeeChangesDto getChanges(Long userId, String since, Integer limit) {
+        int pageSize = changesLimit(limit);
+        EmployeeChangeRepository.SyncState state = employeeChangeRepository.findSyncState(userId);
+        if (since == null || since.isBlank()) {
+            List<EmployeeDto> employees = employeeProjectionRepository.findAllByUserId(userId,
+                EmployeeField.parse(null));
+            return new EmployeeChangesDto(employees, List.of(), ChangeToken.through(state.lastSeq()).encode(),
+                false, true);
+        }
+        ChangeToken token = ChangeToken.decode(since);
+        if (token.getCompleteSeq() < state.floorSeq()) {
+            throw new GoneException("Change token is too old; sync again without a token");
+        }
+        if (token.getChangeSeq() > state.lastSeq()) {
+            return new EmployeeChangesDto(List.of(), List.of(), since, false, false);
+        }
+
+        // The first pageSize + 1 changes of both kinds, merged
+        List<EmployeeChangeRepository.Change> changes = new ArrayList<>(employeeChangeRepository.findChangedSince(
+            userId, token.getChangeSeq(), token.getId(), pageSize + 1));
+        changes.addAll(employeeChangeRepository.findDeletedSince(userId, token.getChangeSeq(), token.getId(),
+            pageSize + 1));
+        changes.sort(Comparator.comparingLong(EmployeeChangeRepository.Change::changeSeq)
+            .thenComparingLong(EmployeeChangeRepository.Change::id));
+        boolean hasMore = changes.size() > pageSize;
+        List<EmployeeChangeRepository.Change> page = changes.subList(0, Math.min(changes.size(), pageSize));
+
+        List<EmployeeDto> changed = new ArrayList<>();
+        List<Long> deleted = new ArrayList<>();
+        for (EmployeeChangeRepository.Change change : page) {
+            if (change.isDeleted()) {
+                deleted.add(change.id());
+            } else {
+                changed.add(change.employee());
+            }
+        }
+        ChangeToken next = hasMore
+            ? new ChangeToken(page.get(page.size() - 1).changeSeq(), page.get(page.size() - 1).id())
+            : ChangeToken.through(state.lastSeq());
+        return new EmployeeChangesDto(changed, deleted, next.encode(), hasMore, false);
+    }
+
+    // The employee as stored by a bulk write; the version is only known
+    // for new rows
+    private static EmployeeDto saved(Long id, EmployeeDto employee, Long userId) {
+        EmployeeDto saved = new EmployeeDto(id, employee.getFirstName(), employee.getLastName(), employee.getEmail());
+        saved.setUserId(userId);
+        return saved;
+    }
+
+    private static void checkBatchSize(List<?> items) {
+        if (items.isEmpty() || items.size() > MAX_BATCH_SIZE) {
+            throw new BadRequestException("A batch must contain between 1 and " + MAX_BATCH_SIZE + " items");
+        }
+    }
+
+    private static Set<String> emailsOf(List<EmployeeDto> employees) {
+        return employees.stream()
+            .filter(employee -> employee != null && !isBlank(employee.getEmail()))
+            .map(employee -> employee.getEmail().toLowerCase(Locale.ROOT))
+            .collect(Collectors.toSet());
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    private static BulkItemResultDto failure(int index, Long id, BulkItemResultDto.Status status, String error) {
+        return new BulkItemResultDto(index, id, status, error);
+    }
+
+    private static int pageSize(Integer limit) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new BadRequestException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        return pageSize;
+    }
+
+    private static int changesLimit(Integer limit) {
+        int pageSize = limit == null ? DEFAULT_CHANGES_LIMIT : limit;
+        if (pageSize < 1 || pageSize > MAX_CHANGES_LIMIT) {
+            throw new BadRequestException("limit must be between 1 and " + MAX_CHANGES_LIMIT);
+        }
+        return pageSize;
+    }
+
+    private static EmployeeCursor cursor(String after, EmployeeCursor.SortKey sortKey) {
+        return after == null || after.isBlank()
+            ? EmployeeCursor.first(sortKey)
+            : EmployeeCursor.decode(after, sortKey);
+    }
+
+    // Escapes LIKE wildcards so a search for "a_b" does not match "axb"
+    private static String escapeLike(String term) {
+        return term.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+
+    // Single-statement, owner-scoped update. The WHERE clause checks the
+    // owner and, when the client sent If-Match, the version, so there is no
+    // read before the write and a concurrent edit cannot be overwritten.
+    // The new version is read back in the same transaction and goes into
+    // the response and the change event.
+    @Override
+    @Transactional
+    public EmployeeDto updateEmployee(Long employeeId, EmployeeDto updatedEmployee, Long userId, Long expectedVersion) {
+        Long version;
+        try {
+            version = employeeJdbcRepository.updateOwned(employeeId, userId, updatedEmployee, expectedVersion,
+                employeeChangeRepository.nextChangeSeq(userId));
+        } catch (DataIntegrityViolationException e) {
+            throw new ConflictException("Employee with email " + updatedEmployee.getEmail() + " already exists");
+        }
+        if (version == null) {
+            throw missingOrStale(employeeId, userId, expectedVersion);
+        }
+        EmployeeDto employeeDto = new EmployeeDto(employeeId, updatedEmployee.getFirstName(),
+            updatedEmployee.getLastName(), updatedEmployee.getEmail());
+        employeeDto.setUserId(userId);
+        employeeDto.setVersion(version);
+        eventPublisher.publishEvent(EmployeeChangeDto.updated(userId, List.of(employeeDto)));
+        return employeeDto;
+    }
+
+    @Override
+    @Transactional
+    public void deleteEmployee(Long employeeId, Long userId, Long expectedVersion) {
+        long changeSeq = employeeChangeRepository.nextChangeSeq(userId);
+        if (employeeJdbcRepository.deleteOwned(employeeId, userId, expectedVersion) == 0) {
+            throw missingOrStale(employeeId, userId, expectedVersion);
+        }
+        employeeChangeRepository.recordDeletes(userId, List.of(employeeId), changeSeq);
+        eventPublisher.publishEvent(EmployeeChangeDto.deleted(userId, List.of(employeeId)));
+    }
+
+    // Only runs after a conditional statement matched nothing, to tell a
+    // stale version (412) apart from a missing or foreign row (404)
+    private RuntimeException missingOrStale(Long employeeId, Long userId, Long expectedVersion) {
+        return missingOrStale(employeeId,
+            expectedVersion != null && employeeRepository.existsByIdAndUserId(employeeId, userId));
+    }
+
+    // The error for a conditional write that matched nothing, once it is
+    // known whether the user's row still exists; ems-reactive answers with
+    // the same one
+    public static RuntimeException missingOrStale(Long employeeId, boolean stale) {
+        if (stale) {
+            return new PreconditionFailedException("Employee " + employeeId
+                + " was changed by someone else; reload it and try again");
+        }
+        return new ResourceNotFoundException("Employee do not exist with given id: " + employeeId);
     }
-}
\ No newline at end of file
+}
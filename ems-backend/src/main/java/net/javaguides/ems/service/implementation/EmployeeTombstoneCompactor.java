@@ -0,0 +1,80 @@
+package net.javaguides.ems.service.implementation;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import net.javaguides.ems.repository.EmployeeChangeRepository;
+import net.javaguides.ems.sharding.ShardContext;
+import net.javaguides.ems.sharding.ShardRoutingDataSource;
+
+// Compaction policy for delta sync tombstones: the ids of deleted employees
+// are kept for ems.sync.tombstoneRetentionHours, long enough for clients
+// that sync now and then. Older ones are dropped user by user, raising the
+// user's floor; a client whose token is older than that gets 410 and syncs
+// in full once. With sharding on, every shard is compacted.
+@Component
+public class EmployeeTombstoneCompactor {
+
+    private static final Logger log = LoggerFactory.getLogger(EmployeeTombstoneCompactor.class);
+
+    // Users compacted per query
+    private static final int BATCH_SIZE = 500;
+
+    private final EmployeeChangeRepository employeeChangeRepository;
+    private final ObjectProvider<ShardRoutingDataSource> shards;
+    private final Duration retention;
+
+    public EmployeeTombstoneCompactor(EmployeeChangeRepository employeeChangeRepository,
+                                      ObjectProvider<ShardRoutingDataSource> shards,
+                                      @Value("${ems.sync.tombstoneRetentionHours:720}") long retentionHours) {
+        this.employeeChangeRepository = employeeChangeRepository;
+        this.shards = shards;
+        this.retention = Duration.ofHours(retentionHours);
+    }
+
+    @Scheduled(fixedDelayString = "${ems.sync.compactionIntervalMs:3600000}",
+               initialDelayString = "${ems.sync.compactionIntervalMs:3600000}")
+    public void compact() {
+        Instant before = Instant.now().minus(retention);
+        ShardRoutingDataSource routing = shards.getIfAvailable();
+        if (routing == null) {
+            compact(before, "the database");
+            return;
+        }
+        for (String shard : routing.getShardNames()) {
+            ShardContext.call(shard, () -> {
+                compact(before, shard);
+                return null;
+            });
+        }
+    }
+
+    private void compact(Instant before, String database) {
+        try {
+            int users = 0;
+            int tombstones = 0;
+            Map<Long, Long> compactable;
+            do {
+                compactable = employeeChangeRepository.findCompactable(before, BATCH_SIZE);
+                for (Map.Entry<Long, Long> user : compactable.entrySet()) {
+                    tombstones += employeeChangeRepository.compact(user.getKey(), user.getValue());
+                }
+                users += compactable.size();
+            } while (compactable.size() == BATCH_SIZE);
+            if (tombstones > 0) {
+                log.info("Compacted {} employee tombstones of {} users on {}", tombstones, users, database);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not compact employee tombstones on {}, retrying on the next run", database, e);
+        }
+    }
+}
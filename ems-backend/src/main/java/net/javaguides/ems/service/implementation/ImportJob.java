@@ -0,0 +1,94 @@
+package net.javaguides.ems.service.implementation;
+
+// Live state of one CSV import. The worker thread updates the counters
+// while status requests read them, so every field is atomic or volatile.
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.javaguides.ems.dto.ImportJobDto;
+import net.javaguides.ems.dto.ImportRowErrorDto;
+
+class ImportJob {
+
+    // Only the first errors are kept so a file full of bad rows cannot use
+    // unbounded memory
+    static final int MAX_REPORTED_ERRORS = 1000;
+
+    private final String id;
+    private final Long userId;
+    private final Instant createdAt = Instant.now();
+    private final AtomicLong rowsRead = new AtomicLong();
+    private final AtomicLong rowsImported = new AtomicLong();
+    private final AtomicLong rowsFailed = new AtomicLong();
+    private final ConcurrentLinkedQueue<ImportRowErrorDto> errors = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger reportedErrors = new AtomicInteger();
+    private volatile ImportJobDto.Status status = ImportJobDto.Status.QUEUED;
+    private volatile String failureReason;
+    private volatile Instant finishedAt;
+
+    ImportJob(String id, Long userId) {
+        this.id = id;
+        this.userId = userId;
+    }
+
+    String getId() {
+        return id;
+    }
+
+    Long getUserId() {
+        return userId;
+    }
+
+    Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    void start() {
+        status = ImportJobDto.Status.RUNNING;
+    }
+
+    void rowRead() {
+        rowsRead.incrementAndGet();
+    }
+
+    void rowImported() {
+        rowsImported.incrementAndGet();
+    }
+
+    void rowFailed(long line, String message) {
+        rowsFailed.incrementAndGet();
+        if (reportedErrors.getAndIncrement() < MAX_REPORTED_ERRORS) {
+            errors.add(new ImportRowErrorDto(line, message));
+        }
+    }
+
+    void complete() {
+        finishedAt = Instant.now();
+        status = ImportJobDto.Status.COMPLETED;
+    }
+
+    void fail(String reason) {
+        failureReason = reason;
+        finishedAt = Instant.now();
+        status = ImportJobDto.Status.FAILED;
+    }
+
+    ImportJobDto toDto() {
+        return new ImportJobDto(
+            id,
+            status,
+            rowsRead.get(),
+            rowsImported.get(),
+            rowsFailed.get(),
+            new ArrayList<>(errors),
+            reportedErrors.get() > MAX_REPORTED_ERRORS,
+            failureReason,
+            createdAt,
+            finishedAt
+        );
+    }
+}
@@ -0,0 +1,211 @@
+package net.javaguides.ems.service.implementation;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import jakarta.annotation.PreDestroy;
+import net.javaguides.ems.dto.BulkItemResultDto;
+import net.javaguides.ems.dto.BulkResultDto;
+import net.javaguides.ems.dto.EmployeeDto;
+import net.javaguides.ems.dto.ImportJobDto;
+import net.javaguides.ems.exception.BadRequestException;
+import net.javaguides.ems.exception.ResourceNotFoundException;
+import net.javaguides.ems.exception.ServiceBusyException;
+import net.javaguides.ems.service.EmployeeService;
+import net.javaguides.ems.service.ImportService;
+
+// Imports employees from a CSV upload in the background.
+// The upload is copied to a temporary file and read one record at a time.
+// Rows are collected into chunks and each chunk is saved through
+// EmployeeService.createEmployees, which validates the rows (email present
+// and unique) and commits them in its own transaction. Memory is bounded by
+// the chunk size and no transaction stays open for the whole file.
+@Service
+public class ImportServiceImplementation implements ImportService {
+
+    // Finished jobs stay queryable for this long
+    private static final Duration JOB_RETENTION = Duration.ofHours(1);
+
+    private final EmployeeService employeeService;
+    private final int chunkSize;
+    private final ThreadPoolTaskExecutor executor;
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+
+    public ImportServiceImplementation(EmployeeService employeeService,
+                                       @Value("${ems.import.chunkSize:1000}") int chunkSize,
+                                       @Value("${ems.import.concurrency:2}") int concurrency,
+                                       @Value("${ems.import.queueCapacity:10}") int queueCapacity,
+                                       @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.employeeService = employeeService;
+        this.chunkSize = chunkSize;
+
+        // A few imports run at once, a short queue waits behind them and
+        // anything beyond that is rejected instead of piling up
+        this.executor = new ThreadPoolTaskExecutor();
+        this.executor.setCorePoolSize(concurrency);
+        this.executor.setMaxPoolSize(concurrency);
+        this.executor.setQueueCapacity(queueCapacity);
+        this.executor.setThreadNamePrefix("ems-import-");
+        if (virtualThreads) {
+            // Same bounds, but the workers are virtual threads that release
+            // their carrier while blocked on JDBC
+            this.executor.setThreadFactory(Thread.ofVirtual().name("ems-import-", 0).factory());
+        }
+        this.executor.initialize();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public ImportJobDto startImport(MultipartFile file, Long userId) {
+        if (file == null || file.isEmpty()) {
+            throw new BadRequestException("A non-empty CSV file is required");
+        }
+        evictFinishedJobs();
+
+        Path upload;
+        try {
+            // The multipart temp file is removed when the request ends, so
+            // keep our own copy for the background worker
+            upload = Files.createTempFile("ems-import-", ".csv");
+            file.transferTo(upload);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not store the uploaded file", e);
+        }
+
+        ImportJob job = new ImportJob(UUID.randomUUID().toString(), userId);
+        jobs.put(job.getId(), job);
+        try {
+            executor.execute(() -> run(job, upload));
+        } catch (TaskRejectedException e) {
+            jobs.remove(job.getId());
+            deleteQuietly(upload);
+            throw new ServiceBusyException("Too many imports are running, please try again later");
+        }
+        return job.toDto();
+    }
+
+    @Override
+    public ImportJobDto getImport(String jobId, Long userId) {
+        ImportJob job = jobs.get(jobId);
+        if (job == null || !job.getUserId().equals(userId)) {
+            throw new ResourceNotFoundException("Import do not exist with given id: " + jobId);
+        }
+        return job.toDto();
+    }
+
+    private void run(ImportJob job, Path upload) {
+        job.start();
+        try (CsvReader reader = new CsvReader(Files.newBufferedReader(upload, StandardCharsets.UTF_8))) {
+            int[] columns = readHeader(reader.next());
+
+            List<EmployeeDto> chunk = new ArrayList<>(chunkSize);
+            List<Long> lines = new ArrayList<>(chunkSize);
+            List<String> record;
+            while ((record = reader.next()) != null) {
+                if (record.size() == 1 && record.get(0).isBlank()) {
+                    continue;
+                }
+                job.rowRead();
+                chunk.add(new EmployeeDto(null, field(record, columns[0]), field(record, columns[1]),
+                    field(record, columns[2])));
+                lines.add(reader.recordLine());
+                if (chunk.size() == chunkSize) {
+                    importChunk(job, chunk, lines);
+                    chunk.clear();
+                    lines.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                importChunk(job, chunk, lines);
+            }
+            job.complete();
+        } catch (IOException | RuntimeException e) {
+            job.fail(e.getMessage());
+        } finally {
+            deleteQuietly(upload);
+        }
+    }
+
+    private void importChunk(ImportJob job, List<EmployeeDto> chunk, List<Long> lines) {
+        try {
+            BulkResultDto result = employeeService.createEmployees(chunk, job.getUserId());
+            for (BulkItemResultDto item : result.getItems()) {
+                if (item.isSuccess()) {
+                    job.rowImported();
+                } else {
+                    job.rowFailed(lines.get(item.getIndex()), item.getError());
+                }
+            }
+        } catch (DataAccessException e) {
+            // The chunk was rolled back (for example a concurrent insert took
+            // one of its emails); report its rows and go on with the next one
+            for (Long line : lines) {
+                job.rowFailed(line, "Chunk rejected by the database: " + e.getMostSpecificCause().getMessage());
+            }
+        }
+    }
+
+    // Returns the positions of the firstName, lastName and email columns
+    // (-1 when a name column is absent). The email column is required.
+    private static int[] readHeader(List<String> header) throws IOException {
+        if (header == null) {
+            throw new IOException("The file is empty");
+        }
+        int[] columns = {-1, -1, -1};
+        for (int i = 0; i < header.size(); i++) {
+            String name = header.get(i).replace("\uFEFF", "").replace("_", "").trim().toLowerCase(Locale.ROOT);
+            switch (name) {
+                case "firstname" -> columns[0] = i;
+                case "lastname" -> columns[1] = i;
+                case "email", "emailid" -> columns[2] = i;
+                default -> { }
+            }
+        }
+        if (columns[2] < 0) {
+            throw new IOException("The CSV header must contain an email column");
+        }
+        return columns;
+    }
+
+    private static String field(List<String> record, int column) {
+        if (column < 0 || column >= record.size()) {
+            return null;
+        }
+        String value = record.get(column).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private void evictFinishedJobs() {
+        Instant cutoff = Instant.now().minus(JOB_RETENTION);
+        jobs.values().removeIf(job -> job.getFinishedAt() != null && job.getFinishedAt().isBefore(cutoff));
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // the temp directory is cleaned up by the OS eventually
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package net.javaguides.ems.service.implementation;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import net.javaguides.ems.exception.ServiceBusyException;
+import net.javaguides.ems.service.PasswordHashingService;
+
+// BCrypt is CPU-bound and slow on purpose (tens of ms per call). Running it
+// on the Tomcat workers lets a login burst occupy all of them, so it runs
+// here on a small pool sized to the CPU count. A bounded queue absorbs short
+// bursts; beyond that requests are rejected with 503 instead of waiting.
+// The pool uses platform threads even in virtual-thread mode: the work
+// never blocks, so virtual threads would only add scheduling overhead.
+@Service
+public class PasswordHashingServiceImplementation implements PasswordHashingService {
+
+    private final PasswordEncoder passwordEncoder;
+    private final int bcryptStrength;
+    private final ThreadPoolTaskExecutor executor;
+
+    public PasswordHashingServiceImplementation(PasswordEncoder passwordEncoder,
+                                                MeterRegistry meterRegistry,
+                                                @Value("${ems.password.bcryptStrength:10}") int bcryptStrength,
+                                                @Value("${ems.password.concurrency:0}") int concurrency,
+                                                @Value("${ems.password.queueCapacity:100}") int queueCapacity) {
+        this.passwordEncoder = passwordEncoder;
+        this.bcryptStrength = bcryptStrength;
+
+        // 0 means one thread per CPU
+        int threads = concurrency > 0 ? concurrency : Runtime.getRuntime().availableProcessors();
+        this.executor = new ThreadPoolTaskExecutor();
+        this.executor.setCorePoolSize(threads);
+        this.executor.setMaxPoolSize(threads);
+        this.executor.setQueueCapacity(queueCapacity);
+        this.executor.setThreadNamePrefix("ems-bcrypt-");
+        this.executor.initialize();
+
+        Gauge.builder("ems.password.queue.size", executor, pool -> pool.getThreadPoolExecutor().getQueue().size())
+            .description("Password hashing requests waiting for a thread")
+            .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public CompletableFuture<String> encode(String rawPassword) {
+        return submit(() -> passwordEncoder.encode(rawPassword));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> matches(String rawPassword, String encodedPassword) {
+        return submit(() -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    // BCrypt hashes look like $2a$10$...; the two digits are the cost.
+    // Unlike BCryptPasswordEncoder.upgradeEncoding this also reports hashes
+    // with a higher cost, so lowering the setting takes effect as well.
+    @Override
+    public boolean needsRehash(String encodedPassword) {
+        if (encodedPassword == null || encodedPassword.length() < 7 || encodedPassword.charAt(0) != '$') {
+            return false;
+        }
+        int costStart = encodedPassword.indexOf('$', 1) + 1;
+        if (costStart <= 0 || costStart + 2 > encodedPassword.length()) {
+            return false;
+        }
+        try {
+            return Integer.parseInt(encodedPassword.substring(costStart, costStart + 2)) != bcryptStrength;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> work) {
+        try {
+            return CompletableFuture.supplyAsync(work, executor);
+        } catch (TaskRejectedException e) {
+            throw new ServiceBusyException("Too many sign-in requests at the moment, please try again shortly");
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package net.javaguides.ems.service.implementation;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Service;
+
+import io.jsonwebtoken.Claims;
+import lombok.AllArgsConstructor;
+import net.javaguides.ems.dto.JwtResponse;
+import net.javaguides.ems.entity.User;
+import net.javaguides.ems.repository.UserRepository;
+import net.javaguides.ems.security.CustomUserDetails;
+import net.javaguides.ems.security.JwtTokenUtil;
+import net.javaguides.ems.security.TokenRevocationRegistry;
+import net.javaguides.ems.service.TokenService;
+
+@Service
+@AllArgsConstructor
+public class TokenServiceImplementation implements TokenService {
+
+    private final JwtTokenUtil jwtTokenUtil;
+    private final TokenRevocationRegistry tokenRevocationRegistry;
+    private final UserRepository userRepository;
+
+    // The access token carries the user id and roles so later requests can
+    // be authenticated without reading the users table
+    @Override
+    public JwtResponse issueTokens(User user) {
+        CustomUserDetails userDetails = new CustomUserDetails(user);
+        List<String> roles = userDetails.getAuthorities().stream()
+            .map(GrantedAuthority::getAuthority)
+            .collect(Collectors.toList());
+        String accessToken = jwtTokenUtil.generateToken(userDetails.getUsername(), userDetails.getId(), roles);
+        String refreshToken = jwtTokenUtil.generateRefreshToken(userDetails.getUsername(), userDetails.getId());
+        return new JwtResponse(accessToken, refreshToken, jwtTokenUtil.getAccessTokenExpirationMs() / 1000);
+    }
+
+    // Rotation: the presented refresh token is revoked before the new pair
+    // is issued. The revocation is an insert keyed on the token id, so when
+    // the same token is sent twice (a retry, or a stolen copy) only the
+    // first request gets new tokens.
+    @Override
+    public Optional<JwtResponse> refresh(String refreshToken) {
+        Claims claims = jwtTokenUtil.verifyToken(refreshToken);
+        if (claims == null || !JwtTokenUtil.isRefreshToken(claims) || claims.getId() == null
+                || tokenRevocationRegistry.isRevoked(claims)) {
+            return Optional.empty();
+        }
+        Number userId = claims.get(JwtTokenUtil.CLAIM_USER_ID, Number.class);
+        if (userId == null) {
+            return Optional.empty();
+        }
+        // By id, from the second-level cache; the user may have been deleted
+        Optional<User> user = userRepository.findById(userId.longValue());
+        if (user.isEmpty()
+                || !tokenRevocationRegistry.revoke(claims.getId(), userId.longValue(), claims.getExpiration().toInstant())) {
+            return Optional.empty();
+        }
+        return Optional.of(issueTokens(user.get()));
+    }
+
+    @Override
+    public void logout(String accessToken, String refreshToken) {
+        revoke(accessToken);
+        revoke(refreshToken);
+    }
+
+    private void revoke(String token) {
+        if (token == null) {
+            return;
+        }
+        Claims claims = jwtTokenUtil.verifyToken(token);
+        if (claims == null || claims.getId() == null) {
+            return;
+        }
+        Number userId = claims.get(JwtTokenUtil.CLAIM_USER_ID, Number.class);
+        tokenRevocationRegistry.revoke(claims.getId(), userId != null ? userId.longValue() : null,
+            claims.getExpiration().toInstant());
+    }
+}
@@ -1,50 +1,141 @@
 package net.javaguides.ems.service.implementation;
 
+import java.time.Instant;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
-import org.springframework.beans.factory.annotation.Autowired;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import net.javaguides.ems.entity.User;
+import net.javaguides.ems.exception.ServiceBusyException;
 import net.javaguides.ems.repository.UserRepository;
+import net.javaguides.ems.security.TokenRevocationRegistry;
+import net.javaguides.ems.service.PasswordHashingService;
 import net.javaguides.ems.service.UserService;
 
 @Service
 public class UserServiceImplementation implements UserService {
 
-    @Autowired
-    private UserRepository userRepository;
+    private static final Logger log = LoggerFactory.getLogger(UserServiceImplementation.class);
 
-    private final PasswordEncoder passwordEncoder;
+    private final UserRepository userRepository;
+    private final PasswordHashingService passwordHashingService;
+    private final TransactionTemplate transactionTemplate;
+    private final TokenRevocationRegistry tokenRevocationRegistry;
+    // Runs the database work that follows a hash. The hashing pool is sized
+    // to the CPU count for BCrypt alone; a save there would hold one of its
+    // threads for a connection and a round trip, and a slow database would
+    // turn into 503s for every login. Spring's application executor (virtual
+    // threads when spring.threads.virtual.enabled is set) does not have that
+    // limit.
+    private final Executor databaseExecutor;
 
-    public UserServiceImplementation(PasswordEncoder passwordEncoder) {
-        this.passwordEncoder = passwordEncoder;
+    // Checked against when the user does not exist, so an unknown name
+    // takes as long to reject as a wrong password
+    private final String unknownUserHash;
+
+    public UserServiceImplementation(UserRepository userRepository,
+                                     PasswordHashingService passwordHashingService,
+                                     PasswordEncoder passwordEncoder,
+                                     TransactionTemplate transactionTemplate,
+                                     TokenRevocationRegistry tokenRevocationRegistry,
+                                     @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+                                     Executor databaseExecutor) {
+        this.userRepository = userRepository;
+        this.passwordHashingService = passwordHashingService;
+        this.transactionTemplate = transactionTemplate;
+        this.tokenRevocationRegistry = tokenRevocationRegistry;
+        this.databaseExecutor = databaseExecutor;
+        this.unknownUserHash = passwordEncoder.encode("unknown-user");
     }
 
+    // The password is hashed once; the token is issued from the saved user
+    // without authenticating again
     @Override
-    public boolean signup(String userName, String rawPassword) {
+    public CompletableFuture<Optional<User>> signup(String userName, String rawPassword) {
         if (userRepository.existsByUserName(userName)) {
-            return false;
+            return CompletableFuture.completedFuture(Optional.empty());
         }
-        String hashedPassword = passwordEncoder.encode(rawPassword);
-        User user = new User(userName, hashedPassword);
-        userRepository.save(user);
-        return true;
+        return passwordHashingService.encode(rawPassword).thenApplyAsync(hash -> {
+            try {
+                return Optional.of(userRepository.save(new User(userName, hash)));
+            } catch (DataIntegrityViolationException e) {
+                // Someone registered the same name in the meantime
+                return Optional.empty();
+            }
+        }, databaseExecutor);
+    }
+
+    @Override
+    public CompletableFuture<Optional<User>> signin(String userName, String rawPassword) {
+        Optional<User> user = userRepository.findByUserName(userName);
+        String hash = user.map(User::getPasswordHash).orElse(unknownUserHash);
+        return passwordHashingService.matches(rawPassword, hash).thenApply(matches -> {
+            if (!matches || user.isEmpty()) {
+                return Optional.empty();
+            }
+            if (passwordHashingService.needsRehash(hash)) {
+                rehash(user.get().getId(), hash, rawPassword);
+            }
+            return user;
+        });
     }
 
+    // Every token issued before the reset stops working: on this instance
+    // right away, on the others when they next poll credentials_changed_at
     @Override
-    public boolean signin(String userName, String rawPassword) {
-        Optional<User> userOpt = userRepository.findByUserName(userName);
-        if (userOpt.isEmpty()) {
-            return false;
+    public CompletableFuture<Boolean> resetPassword(String userName, String newPassword) {
+        Optional<User> user = userRepository.findByUserName(userName);
+        if (user.isEmpty()) {
+            return CompletableFuture.completedFuture(false);
         }
-        User user = userOpt.get();
-        return passwordEncoder.matches(rawPassword, user.getPasswordHash());
+        Long userId = user.get().getId();
+        return passwordHashingService.encode(newPassword).thenApplyAsync(hash -> {
+            Instant changedAt = Instant.now();
+            boolean reset = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                Optional<User> current = userRepository.findById(userId);
+                current.ifPresent(existing -> {
+                    existing.setPasswordHash(hash);
+                    existing.setCredentialsChangedAt(changedAt);
+                });
+                return current.isPresent();
+            }));
+            if (reset) {
+                tokenRevocationRegistry.revokeAllIssuedBefore(userId, changedAt);
+            }
+            return reset;
+        }, databaseExecutor);
     }
 
     @Override
     public Optional<User> findByUserName(String userName) {
         return userRepository.findByUserName(userName);
     }
+
+    // Moves the stored hash to the configured cost after a successful login.
+    // It runs after the response and is skipped when the hashing pool is
+    // busy or the password changed in the meantime; the next login retries.
+    private void rehash(Long userId, String oldHash, String rawPassword) {
+        try {
+            passwordHashingService.encode(rawPassword)
+                .thenAcceptAsync(newHash -> transactionTemplate.executeWithoutResult(status ->
+                    userRepository.findById(userId)
+                        .filter(existing -> oldHash.equals(existing.getPasswordHash()))
+                        .ifPresent(existing -> existing.setPasswordHash(newHash))), databaseExecutor)
+                .exceptionally(e -> {
+                    log.warn("Could not rehash the password of user {}", userId, e);
+                    return null;
+                });
+        } catch (ServiceBusyException e) {
+            log.debug("Hashing pool busy, password of user {} is rehashed on a later login", userId);
+        }
+    }
 }
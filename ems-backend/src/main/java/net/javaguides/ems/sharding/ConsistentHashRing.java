@@ -0,0 +1,73 @@
+package net.javaguides.ems.sharding;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+// Places user ids on shards by consistent hashing: every shard owns many
+// points (virtual nodes) on a 64-bit ring and a user belongs to the first
+// point at or after the hash of its id. Adding a shard only takes users
+// from the points it lands in front of, about 1/N of them, instead of
+// reshuffling everyone as userId % N would.
+// The ring only decides where a new user goes; ShardDirectory remembers the
+// answer, so changing the shard list never moves data by itself.
+public class ConsistentHashRing {
+
+    private final TreeMap<Long, String> ring = new TreeMap<>();
+
+    public ConsistentHashRing(List<String> shards, int pointsPerShard) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        for (String shard : shards) {
+            for (int i = 0; i < pointsPerShard; i++) {
+                ring.put(hash(shard + "#" + i), shard);
+            }
+        }
+    }
+
+    public String shardFor(long userId) {
+        SortedMap<Long, String> tail = ring.tailMap(mix(userId));
+        return tail.isEmpty() ? ring.firstEntry().getValue() : tail.get(tail.firstKey());
+    }
+
+    // Share of the ring each shard owns, for the actuator endpoint
+    public Map<String, Double> ownership() {
+        Map<String, Double> owned = new TreeMap<>();
+        if (ring.size() == 1) {
+            owned.put(ring.firstEntry().getValue(), 1.0);
+            return owned;
+        }
+        long previous = ring.lastKey();
+        for (Map.Entry<Long, String> point : ring.entrySet()) {
+            // A point owns the arc back to the previous one; the subtraction
+            // wraps around like the ring does
+            long span = point.getKey() - previous;
+            owned.merge(point.getValue(), (span >= 0 ? span : span + 0x1p64) / 0x1p64, Double::sum);
+            previous = point.getKey();
+        }
+        return owned;
+    }
+
+    // FNV-1a over the bytes, finished with the murmur3 mixer so that similar
+    // names ("shard-1#1", "shard-1#2") spread over the whole ring
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,181 @@
+package net.javaguides.ems.sharding;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import net.javaguides.ems.dto.EmployeeDto;
+
+// Keeps email_id unique across shards, and employee ids with it. A shard
+// can only check its own rows, so every employee on any shard also has a
+// row in employee_emails in the main database, keyed by its email. The ids
+// come from employee_id_sequence there, handed out in blocks, so two
+// shards never use the same id and an employee keeps its id when its user
+// is moved.
+// EmployeeJdbcRepository claims here (in a transaction of its own) before
+// it writes a shard, and gives the claim back if the shard transaction
+// rolls back; an email change is moved back the same way. The two
+// databases do not commit together: a crash in between leaves a claim
+// without a row (or on the new email), and that email stays taken until
+// its claim is fixed by hand.
+public class EmployeeEmailRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(EmployeeEmailRegistry.class);
+
+    private static final int CHUNK_SIZE = 500;
+
+    private final JdbcTemplate main;
+    private final NamedParameterJdbcTemplate namedMain;
+    private final TransactionTemplate transactionTemplate;
+    private final int idBlockSize;
+
+    // The current block of ids: nextId up to (not including) blockEnd
+    private long nextId;
+    private long blockEnd;
+
+    public EmployeeEmailRegistry(DataSource mainDataSource, int idBlockSize) {
+        this.main = new JdbcTemplate(mainDataSource);
+        this.namedMain = new NamedParameterJdbcTemplate(main);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(mainDataSource));
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.idBlockSize = idBlockSize;
+    }
+
+    // Reserves an id and the email of every employee, all or none of them.
+    // Returns the ids in the same order. Throws DuplicateKeyException when
+    // an email is taken.
+    public List<Long> claim(List<EmployeeDto> employees, Long userId) {
+        List<Long> ids = allocateIds(employees.size());
+        List<Object[]> rows = new ArrayList<>(employees.size());
+        for (int i = 0; i < employees.size(); i++) {
+            rows.add(new Object[] {employees.get(i).getEmail(), ids.get(i), userId});
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            for (List<Object[]> chunk : chunks(rows)) {
+                main.batchUpdate("INSERT INTO employee_emails (email_id, employee_id, user_id) VALUES (?, ?, ?)",
+                    chunk);
+            }
+        });
+        return ids;
+    }
+
+    // Moves the claims of the employees to their new emails, all or none.
+    // Returns the emails they had before (by employee id), for
+    // restoreEmails.
+    public Map<Long, String> changeEmails(List<EmployeeDto> employees) {
+        List<Object[]> rows = employees.stream()
+            .map(employee -> new Object[] {employee.getEmail(), employee.getId()})
+            .toList();
+        List<Long> ids = employees.stream().map(EmployeeDto::getId).toList();
+        return transactionTemplate.execute(status -> {
+            Map<Long, String> previous = new HashMap<>();
+            for (List<Long> chunk : chunks(ids)) {
+                namedMain.query("SELECT employee_id, email_id FROM employee_emails WHERE employee_id IN (:ids)",
+                    new MapSqlParameterSource("ids", chunk),
+                    (RowCallbackHandler) rs -> previous.put(rs.getLong("employee_id"), rs.getString("email_id")));
+            }
+            for (List<Object[]> chunk : chunks(rows)) {
+                main.batchUpdate("UPDATE employee_emails SET email_id = ? WHERE employee_id = ?", chunk);
+            }
+            return previous;
+        });
+    }
+
+    // Undoes changeEmails when the shard write it belonged to rolled back.
+    // Claim by claim: an old email that another employee took in between
+    // cannot be given back, and is only logged.
+    public void restoreEmails(Map<Long, String> previous) {
+        previous.forEach((employeeId, email) -> {
+            try {
+                main.update("UPDATE employee_emails SET email_id = ? WHERE employee_id = ?", email, employeeId);
+            } catch (DuplicateKeyException e) {
+                log.error("Could not give email {} back to employee {}: it was claimed again meanwhile",
+                    email, employeeId, e);
+            }
+        });
+    }
+
+    public void release(Collection<Long> employeeIds) {
+        for (List<Long> chunk : chunks(new ArrayList<>(employeeIds))) {
+            namedMain.update("DELETE FROM employee_emails WHERE employee_id IN (:ids)",
+                new MapSqlParameterSource("ids", chunk));
+        }
+    }
+
+    // Same contract as EmployeeJdbcRepository.findEmailOwners, over all
+    // shards
+    public Map<String, Long> findOwners(Collection<String> emails) {
+        Map<String, Long> owners = new HashMap<>();
+        for (List<String> chunk : chunks(new ArrayList<>(emails))) {
+            namedMain.query("SELECT employee_id, email_id FROM employee_emails WHERE email_id IN (:emails)",
+                new MapSqlParameterSource("emails", chunk),
+                (RowCallbackHandler) rs -> owners.put(
+                    rs.getString("email_id").toLowerCase(Locale.ROOT), rs.getLong("employee_id")));
+        }
+        return owners;
+    }
+
+    // Run at startup: claims the employees written to shard-0 while
+    // sharding was off and moves the id sequence past them. The sequence
+    // row lock keeps instances starting together from doing it twice.
+    public int backfill() {
+        try {
+            return transactionTemplate.execute(status -> {
+                main.queryForObject("SELECT next_id FROM employee_id_sequence WHERE id = 1 FOR UPDATE", Long.class);
+                int claimed = main.update("INSERT INTO employee_emails (email_id, employee_id, user_id) "
+                    + "SELECT e.email_id, e.id, e.user_id FROM employees e "
+                    + "WHERE NOT EXISTS (SELECT 1 FROM employee_emails c WHERE c.employee_id = e.id)");
+                main.update("UPDATE employee_id_sequence SET next_id = (SELECT COALESCE(MAX(id), 0) + 1 FROM employees) "
+                    + "WHERE id = 1 AND next_id <= (SELECT COALESCE(MAX(id), 0) FROM employees)");
+                return claimed;
+            });
+        } catch (DuplicateKeyException e) {
+            throw new IllegalStateException("Employees on shard-0 reuse an email or id already claimed on another "
+                + "shard (were they written with sharding turned off?); fix them before enabling sharding", e);
+        }
+    }
+
+    private synchronized List<Long> allocateIds(int count) {
+        if (blockEnd - nextId < count) {
+            int size = Math.max(count, idBlockSize);
+            Long start = transactionTemplate.execute(status -> {
+                Long first = main.queryForObject("SELECT next_id FROM employee_id_sequence WHERE id = 1 FOR UPDATE",
+                    Long.class);
+                main.update("UPDATE employee_id_sequence SET next_id = ? WHERE id = 1", first + size);
+                return first;
+            });
+            // The rest of the old block is skipped; gaps in ids are fine
+            nextId = start;
+            blockEnd = start + size;
+        }
+        List<Long> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(nextId++);
+        }
+        return ids;
+    }
+
+    private static <T> List<List<T>> chunks(List<T> items) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int start = 0; start < items.size(); start += CHUNK_SIZE) {
+            chunks.add(items.subList(start, Math.min(items.size(), start + CHUNK_SIZE)));
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,38 @@
+package net.javaguides.ems.sharding;
+
+// The shard the current thread works on. ShardRoutingDataSource reads it
+// whenever a connection is taken, so it has to be set before the
+// transaction starts, which ShardedEmployeeService does around every call.
+// Nothing set means shard-0, the main database.
+public final class ShardContext {
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    @FunctionalInterface
+    public interface ShardWork<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    private ShardContext() {
+    }
+
+    public static String current() {
+        return CURRENT.get();
+    }
+
+    // Runs the work on the shard and restores the previous one afterwards,
+    // so calls can nest
+    public static <T, E extends Exception> T call(String shard, ShardWork<T, E> work) throws E {
+        String previous = CURRENT.get();
+        CURRENT.set(shard);
+        try {
+            return work.run();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package net.javaguides.ems.sharding;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.sql.DataSource;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import net.javaguides.ems.exception.ServiceBusyException;
+
+// Which shard holds each user's employees: the user_shards table in the
+// main database. The table is the authority; the hash ring only picks the
+// shard the first time a user is seen, so adding a shard or changing the
+// ring never strands anyone's rows - ShardRebalancer moves them explicitly.
+// Users who already had employees on shard-0 before sharding was turned on
+// are kept there.
+// Lookups are cached for ems.sharding.directoryCacheMs. A move waits longer
+// than that before it copies anything (ShardRebalancer), so no instance can
+// still be writing from a stale entry.
+public class ShardDirectory {
+
+    private static final int PAGE_SIZE = 1000;
+
+    private record Placement(String shard, String movingTo, long loadedAt) { }
+
+    private record Assignment(long userId, String shard) { }
+
+    private final JdbcTemplate main;
+    private final ConsistentHashRing ring;
+    private final long cacheMillis;
+    private final int cacheMaxEntries;
+    private final ConcurrentHashMap<Long, Placement> cache = new ConcurrentHashMap<>();
+
+    public ShardDirectory(DataSource mainDataSource, ConsistentHashRing ring, long cacheMillis,
+                          int cacheMaxEntries) {
+        this.main = new JdbcTemplate(mainDataSource);
+        this.ring = ring;
+        this.cacheMillis = cacheMillis;
+        this.cacheMaxEntries = cacheMaxEntries;
+    }
+
+    public ConsistentHashRing getRing() {
+        return ring;
+    }
+
+    // For reads: during a move this stays the source until the copy is done
+    public String shardFor(Long userId) {
+        return placement(userId).shard();
+    }
+
+    // For writes, which are refused while the user's rows are being copied
+    public String shardForWrite(Long userId) {
+        Placement placement = placement(userId);
+        if (placement.movingTo() != null) {
+            throw new ServiceBusyException("Your employees are being moved to another server, please try again shortly");
+        }
+        return placement.shard();
+    }
+
+    // Uncached, for the rebalancer
+    String currentShard(Long userId) {
+        cache.remove(userId);
+        return placement(userId).shard();
+    }
+
+    // Marks the user as moving from -> to. False when the user is not on
+    // `from` any more or another move is under way.
+    boolean startMove(Long userId, String from, String to) {
+        int updated = main.update(
+            "UPDATE user_shards SET moving_to = ? WHERE user_id = ? AND shard_id = ? AND moving_to IS NULL",
+            to, userId, from);
+        cache.remove(userId);
+        return updated == 1;
+    }
+
+    void finishMove(Long userId) {
+        main.update("UPDATE user_shards SET shard_id = moving_to, moving_to = NULL "
+            + "WHERE user_id = ? AND moving_to IS NOT NULL", userId);
+        cache.remove(userId);
+    }
+
+    // Also used by hand (actuator) for a move whose instance died; the
+    // half-copied rows on the target are removed by the next move there
+    public boolean cancelMove(Long userId) {
+        int updated = main.update("UPDATE user_shards SET moving_to = NULL WHERE user_id = ? AND moving_to IS NOT NULL",
+            userId);
+        cache.remove(userId);
+        return updated == 1;
+    }
+
+    public Map<String, Long> userCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        main.query("SELECT shard_id, COUNT(*) FROM user_shards GROUP BY shard_id ORDER BY shard_id",
+            (RowCallbackHandler) rs -> counts.put(rs.getString(1), rs.getLong(2)));
+        return counts;
+    }
+
+    public List<Long> findMoving() {
+        return main.queryForList("SELECT user_id FROM user_shards WHERE moving_to IS NOT NULL ORDER BY user_id",
+            Long.class);
+    }
+
+    // Users not on the shard the ring picks for them, e.g. after a shard
+    // was added. Pages through the directory in user_id order.
+    List<Long> findMisplaced(int limit) {
+        List<Long> misplaced = new ArrayList<>();
+        long after = 0;
+        while (misplaced.size() < limit) {
+            List<Assignment> page = main.query(
+                "SELECT user_id, shard_id FROM user_shards WHERE user_id > ? AND moving_to IS NULL "
+                    + "ORDER BY user_id LIMIT " + PAGE_SIZE,
+                (rs, rowNum) -> new Assignment(rs.getLong(1), rs.getString(2)), after);
+            if (page.isEmpty()) {
+                break;
+            }
+            for (Assignment assignment : page) {
+                if (misplaced.size() < limit && !ring.shardFor(assignment.userId()).equals(assignment.shard())) {
+                    misplaced.add(assignment.userId());
+                }
+            }
+            after = page.get(page.size() - 1).userId();
+        }
+        return misplaced;
+    }
+
+    private Placement placement(Long userId) {
+        long now = System.currentTimeMillis();
+        Placement cached = cache.get(userId);
+        if (cached != null && now - cached.loadedAt() < cacheMillis) {
+            return cached;
+        }
+        Placement loaded = load(userId, now);
+        if (cache.size() >= cacheMaxEntries) {
+            cache.clear();
+        }
+        cache.put(userId, loaded);
+        return loaded;
+    }
+
+    private Placement load(Long userId, long now) {
+        List<Placement> rows = main.query("SELECT shard_id, moving_to FROM user_shards WHERE user_id = ?",
+            (rs, rowNum) -> new Placement(rs.getString(1), rs.getString(2), now), userId);
+        if (!rows.isEmpty()) {
+            return rows.get(0);
+        }
+        // First time under sharding
+        boolean hasMainShardRows = !main.queryForList("SELECT id FROM employees WHERE user_id = ? LIMIT 1",
+            Long.class, userId).isEmpty();
+        String shard = hasMainShardRows ? ShardRoutingDataSource.MAIN_SHARD : ring.shardFor(userId);
+        try {
+            main.update("INSERT INTO user_shards (user_id, shard_id) VALUES (?, ?)", userId, shard);
+        } catch (DuplicateKeyException e) {
+            // Placed by a concurrent request or another instance
+            return load(userId, now);
+        }
+        return new Placement(shard, null, now);
+    }
+}
@@ -0,0 +1,175 @@
+package net.javaguides.ems.sharding;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+// Moves users' employees between shards while the application runs:
+// 1. the users are marked as moving; their writes get 503 from then on
+// 2. wait ems.sharding.drainMs, longer than the directory cache, so every
+//    instance sees the mark and writes already running have finished
+// 3. copy the rows (same ids) to the target and point the directory there;
+//    reads keep going to the source until this point. The user's change
+//    numbers and tombstones go along, so delta sync tokens stay valid.
+// 4. wait again for reads still on the source, then delete the rows there
+// Users are moved in groups of ems.sharding.moveBatchSize so that the
+// waits are shared. One move at a time per instance.
+public class ShardRebalancer {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardRebalancer.class);
+
+    private static final int COPY_CHUNK_SIZE = 1000;
+
+    private static final String SELECT_SQL =
+        "SELECT id, first_name, last_name, email_id, user_id, version, change_seq, updated_at FROM employees "
+        + "WHERE user_id = ? AND id > ? ORDER BY id LIMIT " + COPY_CHUNK_SIZE;
+
+    private static final String INSERT_SQL =
+        "INSERT INTO employees (id, first_name, last_name, email_id, user_id, version, change_seq, updated_at) "
+        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String SELECT_TOMBSTONES_SQL =
+        "SELECT employee_id, user_id, change_seq, deleted_at FROM employee_tombstones "
+        + "WHERE user_id = ? AND employee_id > ? ORDER BY employee_id LIMIT " + COPY_CHUNK_SIZE;
+
+    private static final String INSERT_TOMBSTONES_SQL =
+        "INSERT INTO employee_tombstones (employee_id, user_id, change_seq, deleted_at) VALUES (?, ?, ?, ?)";
+
+    public record Move(Long userId, String from, String to, int rows) { }
+
+    private final ShardDirectory directory;
+    private final ShardRoutingDataSource shards;
+    private final long drainMillis;
+    private final int batchSize;
+
+    public ShardRebalancer(ShardDirectory directory, ShardRoutingDataSource shards, long drainMillis, int batchSize) {
+        this.directory = directory;
+        this.shards = shards;
+        this.drainMillis = drainMillis;
+        this.batchSize = batchSize;
+    }
+
+    // Returns nothing when the user is already there or being moved
+    public synchronized List<Move> moveUser(Long userId, String target) {
+        shards.getShard(target);
+        Map<Long, String> targets = new LinkedHashMap<>();
+        targets.put(userId, target);
+        return moveAll(targets);
+    }
+
+    // Moves up to maxUsers users to the shard the ring picks for them
+    public synchronized List<Move> rebalance(int maxUsers) {
+        List<Long> misplaced = directory.findMisplaced(maxUsers);
+        List<Move> moves = new ArrayList<>();
+        for (int start = 0; start < misplaced.size(); start += batchSize) {
+            Map<Long, String> targets = new LinkedHashMap<>();
+            for (Long userId : misplaced.subList(start, Math.min(misplaced.size(), start + batchSize))) {
+                targets.put(userId, directory.getRing().shardFor(userId));
+            }
+            moves.addAll(moveAll(targets));
+        }
+        return moves;
+    }
+
+    private List<Move> moveAll(Map<Long, String> targets) {
+        List<Move> started = new ArrayList<>();
+        targets.forEach((userId, target) -> {
+            String source = directory.currentShard(userId);
+            if (!source.equals(target) && directory.startMove(userId, source, target)) {
+                started.add(new Move(userId, source, target, 0));
+            }
+        });
+        if (started.isEmpty()) {
+            return List.of();
+        }
+        try {
+            pause();
+        } catch (RuntimeException e) {
+            started.forEach(move -> directory.cancelMove(move.userId()));
+            throw e;
+        }
+
+        List<Move> copied = new ArrayList<>();
+        for (Move move : started) {
+            try {
+                int rows = copy(move);
+                directory.finishMove(move.userId());
+                copied.add(new Move(move.userId(), move.from(), move.to(), rows));
+            } catch (RuntimeException e) {
+                log.warn("Could not move the employees of user {} from {} to {}", move.userId(), move.from(),
+                    move.to(), e);
+                directory.cancelMove(move.userId());
+            }
+        }
+        pause();
+
+        for (Move move : copied) {
+            deleteUser(new JdbcTemplate(shards.getShard(move.from())), move.userId());
+            log.info("Moved {} employees of user {} from {} to {}", move.rows(), move.userId(), move.from(),
+                move.to());
+        }
+        return copied;
+    }
+
+    private int copy(Move move) {
+        JdbcTemplate source = new JdbcTemplate(shards.getShard(move.from()));
+        JdbcTemplate target = new JdbcTemplate(shards.getShard(move.to()));
+        // Left behind by an earlier move that failed half way
+        deleteUser(target, move.userId());
+        source.query("SELECT user_id, last_seq, floor_seq FROM employee_sync_state WHERE user_id = ?",
+            (RowCallbackHandler) rs -> target.update(
+                "INSERT INTO employee_sync_state (user_id, last_seq, floor_seq) VALUES (?, ?, ?)",
+                rs.getLong("user_id"), rs.getLong("last_seq"), rs.getLong("floor_seq")),
+            move.userId());
+        copyTombstones(source, target, move.userId());
+        int rows = 0;
+        long after = 0;
+        while (true) {
+            List<Object[]> chunk = source.query(SELECT_SQL, (rs, rowNum) -> new Object[] {
+                rs.getLong("id"), rs.getString("first_name"), rs.getString("last_name"), rs.getString("email_id"),
+                rs.getLong("user_id"), rs.getLong("version"), rs.getLong("change_seq"),
+                rs.getTimestamp("updated_at")}, move.userId(), after);
+            if (chunk.isEmpty()) {
+                return rows;
+            }
+            target.batchUpdate(INSERT_SQL, chunk);
+            rows += chunk.size();
+            after = (Long) chunk.get(chunk.size() - 1)[0];
+        }
+    }
+
+    private void copyTombstones(JdbcTemplate source, JdbcTemplate target, Long userId) {
+        long after = 0;
+        while (true) {
+            List<Object[]> chunk = source.query(SELECT_TOMBSTONES_SQL, (rs, rowNum) -> new Object[] {
+                rs.getLong("employee_id"), rs.getLong("user_id"), rs.getLong("change_seq"),
+                rs.getTimestamp("deleted_at")}, userId, after);
+            if (chunk.isEmpty()) {
+                return;
+            }
+            target.batchUpdate(INSERT_TOMBSTONES_SQL, chunk);
+            after = (Long) chunk.get(chunk.size() - 1)[0];
+        }
+    }
+
+    private static void deleteUser(JdbcTemplate shard, Long userId) {
+        shard.update("DELETE FROM employees WHERE user_id = ?", userId);
+        shard.update("DELETE FROM employee_tombstones WHERE user_id = ?", userId);
+        shard.update("DELETE FROM employee_sync_state WHERE user_id = ?", userId);
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(drainMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while moving employees between shards", e);
+        }
+    }
+}
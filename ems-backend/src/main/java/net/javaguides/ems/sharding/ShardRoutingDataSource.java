@@ -0,0 +1,60 @@
+package net.javaguides.ems.sharding;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+// Hands out connections of the shard in ShardContext, or of shard-0 (the
+// main database, which also holds users, tokens and the shard directory)
+// when none is set. Hibernate, JdbcTemplate and Flyway all go through it,
+// so only employee work that ShardedEmployeeService wrapped ever leaves
+// shard-0.
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    public static final String MAIN_SHARD = "shard-0";
+
+    private final Map<String, DataSource> shards;
+
+    // shards must contain MAIN_SHARD
+    public ShardRoutingDataSource(Map<String, DataSource> shards) {
+        if (!shards.containsKey(MAIN_SHARD)) {
+            throw new IllegalArgumentException("The shards must include " + MAIN_SHARD);
+        }
+        this.shards = new LinkedHashMap<>(shards);
+        setTargetDataSources(new LinkedHashMap<Object, Object>(shards));
+        setDefaultTargetDataSource(shards.get(MAIN_SHARD));
+        // An unknown shard name is a bug, not a reason to use shard-0
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    public Set<String> getShardNames() {
+        return shards.keySet();
+    }
+
+    public DataSource getShard(String name) {
+        DataSource shard = shards.get(name);
+        if (shard == null) {
+            throw new IllegalArgumentException("Unknown shard " + name);
+        }
+        return shard;
+    }
+
+    // Closes the pools when the context shuts down
+    public void close() throws Exception {
+        for (DataSource shard : shards.values()) {
+            if (shard instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ShardContext.current();
+    }
+}
@@ -0,0 +1,136 @@
+package net.javaguides.ems.sharding;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Set;
+
+import net.javaguides.ems.dto.BulkItemResultDto;
+import net.javaguides.ems.dto.BulkResultDto;
+import net.javaguides.ems.dto.EmployeeChangesDto;
+import net.javaguides.ems.dto.EmployeeDto;
+import net.javaguides.ems.dto.EmployeeField;
+import net.javaguides.ems.dto.EmployeePageDto;
+import net.javaguides.ems.dto.ExportFormat;
+import net.javaguides.ems.exception.BadRequestException;
+import net.javaguides.ems.exception.ResourceNotFoundException;
+import net.javaguides.ems.service.EmployeeService;
+
+// The EmployeeService controllers and imports get when sharding is on. It
+// looks up the user's shard and runs the real service inside it, so the
+// transaction, JPA and JDBC all work on that shard's database. Writes are
+// refused (503) while the user's rows are being moved.
+public class ShardedEmployeeService implements EmployeeService {
+
+    private final EmployeeService delegate;
+    private final ShardDirectory directory;
+
+    public ShardedEmployeeService(EmployeeService delegate, ShardDirectory directory) {
+        this.delegate = delegate;
+        this.directory = directory;
+    }
+
+    // The single create goes through the bulk path: it is the one that
+    // checks emails across shards and inserts with a claimed id. Failures
+    // are reported as createEmployee always did.
+    @Override
+    public EmployeeDto createEmployee(EmployeeDto employeeDto, Long userId) {
+        BulkItemResultDto result = ShardContext.call(directory.shardForWrite(userId),
+            () -> delegate.createEmployees(List.of(employeeDto), userId)).getItems().get(0);
+        if (result.getStatus() == BulkItemResultDto.Status.CONFLICT) {
+            throw new ResourceNotFoundException(result.getError());
+        }
+        if (!result.isSuccess()) {
+            throw new BadRequestException(result.getError());
+        }
+        EmployeeDto created = new EmployeeDto(result.getId(), employeeDto.getFirstName(), employeeDto.getLastName(),
+            employeeDto.getEmail());
+        created.setUserId(userId);
+        created.setVersion(0L);
+        return created;
+    }
+
+    @Override
+    public EmployeeDto getEmployeeById(Long employeeId, Long userId, Set<EmployeeField> fields) {
+        return ShardContext.call(directory.shardFor(userId),
+            () -> delegate.getEmployeeById(employeeId, userId, fields));
+    }
+
+    @Override
+    public List<EmployeeDto> getAllEmployees(Long userId, Set<EmployeeField> fields) {
+        return ShardContext.call(directory.shardFor(userId), () -> delegate.getAllEmployees(userId, fields));
+    }
+
+    @Override
+    public EmployeePageDto getEmployeesPage(Long userId, String after, Integer limit, String sort,
+                                            Set<EmployeeField> fields) {
+        return ShardContext.call(directory.shardFor(userId),
+            () -> delegate.getEmployeesPage(userId, after, limit, sort, fields));
+    }
+
+    @Override
+    public EmployeePageDto searchEmployees(Long userId, String query, String after, Integer limit, String sort,
+                                           Set<EmployeeField> fields) {
+        return ShardContext.call(directory.shardFor(userId),
+            () -> delegate.searchEmployees(userId, query, after, limit, sort, fields));
+    }
+
+    @Override
+    public EmployeeDto updateEmployee(Long employeeId, EmployeeDto updatedEmployee, Long userId, Long expectedVersion) {
+        return ShardContext.call(directory.shardForWrite(userId),
+            () -> delegate.updateEmployee(employeeId, updatedEmployee, userId, expectedVersion));
+    }
+
+    @Override
+    public void deleteEmployee(Long employeeId, Long userId, Long expectedVersion) {
+        ShardContext.call(directory.shardForWrite(userId), () -> {
+            delegate.deleteEmployee(employeeId, userId, expectedVersion);
+            return null;
+        });
+    }
+
+    @Override
+    public List<EmployeeDto> getEmployeesByIds(List<Long> employeeIds, Long userId, Set<EmployeeField> fields) {
+        return ShardContext.call(directory.shardFor(userId),
+            () -> delegate.getEmployeesByIds(employeeIds, userId, fields));
+    }
+
+    @Override
+    public BulkResultDto createEmployees(List<EmployeeDto> employees, Long userId) {
+        return ShardContext.call(directory.shardForWrite(userId), () -> delegate.createEmployees(employees, userId));
+    }
+
+    @Override
+    public BulkResultDto updateEmployees(List<EmployeeDto> employees, Long userId) {
+        return ShardContext.call(directory.shardForWrite(userId), () -> delegate.updateEmployees(employees, userId));
+    }
+
+    @Override
+    public BulkResultDto deleteEmployees(List<Long> employeeIds, Long userId) {
+        return ShardContext.call(directory.shardForWrite(userId),
+            () -> delegate.deleteEmployees(employeeIds, userId));
+    }
+
+    @Override
+    public void exportEmployees(Long userId, ExportFormat format, OutputStream out) throws IOException {
+        ShardContext.<Void, IOException>call(directory.shardFor(userId), () -> {
+            delegate.exportEmployees(userId, format, out);
+            return null;
+        });
+    }
+
+    @Override
+    public void streamEmployees(Long userId, Set<EmployeeField> fields, OutputStream out) throws IOException {
+        ShardContext.<Void, IOException>call(directory.shardFor(userId), () -> {
+            delegate.streamEmployees(userId, fields, out);
+            return null;
+        });
+    }
+
+    // Change numbers and tombstones move with the user's rows, so tokens
+    // stay valid across a move
+    @Override
+    public EmployeeChangesDto getChanges(Long userId, String since, Integer limit) {
+        return ShardContext.call(directory.shardFor(userId), () -> delegate.getChanges(userId, since, limit));
+    }
+}
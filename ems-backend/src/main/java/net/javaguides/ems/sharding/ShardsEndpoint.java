@@ -0,0 +1,53 @@
+package net.javaguides.ems.sharding;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+
+// /actuator/shards on the management port:
+//   GET                      users per shard, ring shares, users being moved
+//   POST {"maxUsers": 100}   rebalance: move users to the shard the ring picks
+//   POST /{userId} {"shard": "shard-2"}   move one user
+//   DELETE /{userId}         cancel a move left behind by a stopped instance
+// Moves run in the request and take at least twice ems.sharding.drainMs.
+@Endpoint(id = "shards")
+public class ShardsEndpoint {
+
+    private final ShardDirectory directory;
+    private final ShardRebalancer rebalancer;
+
+    public ShardsEndpoint(ShardDirectory directory, ShardRebalancer rebalancer) {
+        this.directory = directory;
+        this.rebalancer = rebalancer;
+    }
+
+    @ReadOperation
+    public Map<String, Object> shards() {
+        Map<String, Object> shards = new LinkedHashMap<>();
+        shards.put("users", directory.userCounts());
+        shards.put("ringShare", directory.getRing().ownership());
+        shards.put("moving", directory.findMoving());
+        return shards;
+    }
+
+    @WriteOperation
+    public List<ShardRebalancer.Move> rebalance(int maxUsers) {
+        return rebalancer.rebalance(maxUsers);
+    }
+
+    @WriteOperation
+    public List<ShardRebalancer.Move> move(@Selector Long userId, String shard) {
+        return rebalancer.moveUser(userId, shard);
+    }
+
+    @DeleteOperation
+    public Map<String, Object> cancelMove(@Selector Long userId) {
+        return Map.of("userId", userId, "cancelled", directory.cancelMove(userId));
+    }
+}
@@ -0,0 +1,26 @@
+-- The original schema, as spring.jpa.hibernate.ddl-auto=update first
+-- created it. A database that already has these tables is baselined at
+-- this version on first start (spring.flyway.baseline-on-migrate) and only
+-- runs the migrations after it. What ddl-auto added later, as the entities
+-- grew, is in V5, which only creates what is missing.
+-- The scripts are run against MySQL and against H2 in MySQL mode (load
+-- harness, tests), so they stick to syntax both accept.
+
+CREATE TABLE users (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    user_name VARCHAR(50) NOT NULL,
+    password_hash VARCHAR(255) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_users_user_name UNIQUE (user_name)
+);
+
+CREATE TABLE employees (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    first_name VARCHAR(255),
+    last_name VARCHAR(255),
+    email_id VARCHAR(255) NOT NULL,
+    user_id BIGINT NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_employees_email_id UNIQUE (email_id),
+    CONSTRAINT fk_employees_user FOREIGN KEY (user_id) REFERENCES users (id)
+);
@@ -0,0 +1,17 @@
+-- Indexes for the employee queries the API runs (EmployeeProjectionRepository,
+-- EmployeeJdbcRepository). Every one of them is scoped to one user, so
+-- user_id leads:
+-- - (user_id, id): full lists, id-ordered pages, streaming and exports in
+--   index order, and the owner checks (user_id = ? AND id IN (...)), which
+--   it covers since they only read id
+-- - (user_id, last_name_key, id): last-name-ordered pages and search
+-- The email lookups and duplicate checks use the unique index on email_id.
+--
+-- last_name_key is last_name with NULL read as '', the sort key of the
+-- last-name cursor. Sorting by it instead of COALESCE(last_name, '') lets
+-- the index return the rows already in order. MySQL keeps it as a virtual
+-- column; only the index stores it.
+ALTER TABLE employees ADD COLUMN last_name_key VARCHAR(255) GENERATED ALWAYS AS (COALESCE(last_name, ''));
+
+CREATE INDEX idx_employees_user_id ON employees (user_id, id);
+CREATE INDEX idx_employees_user_last_name ON employees (user_id, last_name_key, id);
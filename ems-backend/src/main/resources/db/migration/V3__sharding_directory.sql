@@ -0,0 +1,33 @@
+-- Tables for sharding (ems.sharding.enabled, ShardingConfig). They live in
+-- the main database, which is also shard-0; the other shards only hold
+-- employees (db/shard). Nothing uses them while sharding is off.
+-- - user_shards: which shard holds each user's employees. moving_to is set
+--   while ShardRebalancer copies them to another shard.
+-- - employee_emails: one row per employee on any shard, so that email_id
+--   stays unique across shards.
+-- - employee_id_sequence: employee ids for all shards, so they never
+--   collide. Starts after the ids already used here.
+CREATE TABLE user_shards (
+    user_id BIGINT NOT NULL,
+    shard_id VARCHAR(64) NOT NULL,
+    moving_to VARCHAR(64),
+    PRIMARY KEY (user_id)
+);
+
+CREATE INDEX idx_user_shards_shard_id ON user_shards (shard_id);
+
+CREATE TABLE employee_emails (
+    email_id VARCHAR(255) NOT NULL,
+    employee_id BIGINT NOT NULL,
+    user_id BIGINT NOT NULL,
+    PRIMARY KEY (email_id),
+    CONSTRAINT uk_employee_emails_employee_id UNIQUE (employee_id)
+);
+
+CREATE TABLE employee_id_sequence (
+    id INT NOT NULL,
+    next_id BIGINT NOT NULL,
+    PRIMARY KEY (id)
+);
+
+INSERT INTO employee_id_sequence (id, next_id) SELECT 1, COALESCE(MAX(id), 0) + 1 FROM employees;
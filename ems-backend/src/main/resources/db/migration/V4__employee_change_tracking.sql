@@ -0,0 +1,31 @@
+-- Change tracking for delta sync (GET /api/employees/changes).
+-- - employees.change_seq: per-user number of the write that last changed
+--   the row, updated_at: when. Rows from before this migration have 0 and
+--   NULL; a client's first sync is a full one anyway.
+-- - employee_tombstones: the ids of deleted rows, so that a client can be
+--   told to drop them. Compacted after ems.sync.tombstoneRetentionHours.
+-- - employee_sync_state: per user, the last change number handed out, and
+--   floor_seq, the highest one whose tombstones were compacted away. A
+--   change token older than the floor can no longer be served.
+ALTER TABLE employees ADD COLUMN updated_at TIMESTAMP(6);
+ALTER TABLE employees ADD COLUMN change_seq BIGINT DEFAULT 0 NOT NULL;
+
+CREATE INDEX idx_employees_user_change_seq ON employees (user_id, change_seq, id);
+
+CREATE TABLE employee_tombstones (
+    employee_id BIGINT NOT NULL,
+    user_id BIGINT NOT NULL,
+    change_seq BIGINT NOT NULL,
+    deleted_at TIMESTAMP(6) NOT NULL,
+    PRIMARY KEY (employee_id)
+);
+
+CREATE INDEX idx_employee_tombstones_user_change_seq ON employee_tombstones (user_id, change_seq, employee_id);
+CREATE INDEX idx_employee_tombstones_deleted_at ON employee_tombstones (deleted_at);
+
+CREATE TABLE employee_sync_state (
+    user_id BIGINT NOT NULL,
+    last_seq BIGINT NOT NULL,
+    floor_seq BIGINT DEFAULT 0 NOT NULL,
+    PRIMARY KEY (user_id)
+);
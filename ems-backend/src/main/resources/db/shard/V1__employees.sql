@@ -0,0 +1,19 @@
+-- The employees table of a shard other than shard-0 (ems.sharding.shards),
+-- migrated by ShardingConfig on startup. Same columns and indexes as in the
+-- main database (db/migration V1, V2), except what the main database now
+-- does for all shards: ids come from employee_id_sequence, emails are kept
+-- unique by employee_emails, and users live there too. So there is no
+-- AUTO_INCREMENT, no unique email index and no foreign key here.
+CREATE TABLE employees (
+    id BIGINT NOT NULL,
+    first_name VARCHAR(255),
+    last_name VARCHAR(255),
+    email_id VARCHAR(255) NOT NULL,
+    version BIGINT DEFAULT 0 NOT NULL,
+    user_id BIGINT NOT NULL,
+    last_name_key VARCHAR(255) GENERATED ALWAYS AS (COALESCE(last_name, '')),
+    PRIMARY KEY (id)
+);
+
+CREATE INDEX idx_employees_user_id ON employees (user_id, id);
+CREATE INDEX idx_employees_user_last_name ON employees (user_id, last_name_key, id);
@@ -0,0 +1,25 @@
+-- Change tracking on a shard, as db/migration V4 does for the main
+-- database. A user's tombstones and sync state live on the same shard as
+-- the user's employees and move with them (ShardRebalancer).
+ALTER TABLE employees ADD COLUMN updated_at TIMESTAMP(6);
+ALTER TABLE employees ADD COLUMN change_seq BIGINT DEFAULT 0 NOT NULL;
+
+CREATE INDEX idx_employees_user_change_seq ON employees (user_id, change_seq, id);
+
+CREATE TABLE employee_tombstones (
+    employee_id BIGINT NOT NULL,
+    user_id BIGINT NOT NULL,
+    change_seq BIGINT NOT NULL,
+    deleted_at TIMESTAMP(6) NOT NULL,
+    PRIMARY KEY (employee_id)
+);
+
+CREATE INDEX idx_employee_tombstones_user_change_seq ON employee_tombstones (user_id, change_seq, employee_id);
+CREATE INDEX idx_employee_tombstones_deleted_at ON employee_tombstones (deleted_at);
+
+CREATE TABLE employee_sync_state (
+    user_id BIGINT NOT NULL,
+    last_seq BIGINT NOT NULL,
+    floor_seq BIGINT DEFAULT 0 NOT NULL,
+    PRIMARY KEY (user_id)
+);
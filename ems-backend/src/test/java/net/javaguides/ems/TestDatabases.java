@@ -0,0 +1,33 @@
+package net.javaguides.ems;
+
+import java.util.UUID;
+
+import javax.sql.DataSource;
+
+import org.flywaydb.core.Flyway;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+// In-memory H2 databases in MySQL mode for tests that run the real SQL.
+// Each call gets a database of its own, kept until the test runs SHUTDOWN.
+public final class TestDatabases {
+
+    private TestDatabases() {
+    }
+
+    // An empty database
+    public static DataSource h2(String name) {
+        return new DriverManagerDataSource("jdbc:h2:mem:" + name + "-" + UUID.randomUUID()
+            + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1", "sa", "");
+    }
+
+    // A database with the Flyway migrations applied, from db/migration
+    // unless other locations are given (db/shard for a shard)
+    public static DataSource migratedH2(String name, String... locations) {
+        DataSource dataSource = h2(name);
+        Flyway.configure().dataSource(dataSource)
+            .locations(locations.length > 0 ? locations : new String[] {"classpath:db/migration"})
+            .load()
+            .migrate();
+        return dataSource;
+    }
+}
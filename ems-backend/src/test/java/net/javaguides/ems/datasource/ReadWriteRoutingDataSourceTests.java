@@ -0,0 +1,179 @@
+package net.javaguides.ems.datasource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.UUID;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.javaguides.ems.security.JwtPrincipal;
+
+// Two in-memory H2 databases stand in for the primary and one replica.
+// Replication is simulated by copying the heartbeat row, and every
+// database answers "which one am I" from its node table.
+class ReadWriteRoutingDataSourceTests {
+
+    private static final long MAX_LAG_MS = 2000;
+
+    private JdbcTemplate primaryDb;
+    private JdbcTemplate replicaDb;
+    private ReplicaHealthMonitor monitor;
+    private JdbcTemplate jdbcTemplate;
+    private DataSourceTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        DataSource primary = database("primary");
+        DataSource replica = database("replica");
+        primaryDb = new JdbcTemplate(primary);
+        replicaDb = new JdbcTemplate(replica);
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ReadYourWritesTracker readYourWrites = new ReadYourWritesTracker(60_000, 1000);
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(primary,
+            List.of(new ReplicaDataSource("replica-0", replica)), readYourWrites, meterRegistry);
+        monitor = new ReplicaHealthMonitor(primary, routing.getReplicas(), readYourWrites, meterRegistry,
+            MAX_LAG_MS, 1);
+
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        primaryDb.execute("SHUTDOWN");
+        replicaDb.execute("SHUTDOWN");
+    }
+
+    @Test
+    void readOnlyTransactionsUseTheReplicaOnceItIsCaughtUp() {
+        // No heartbeat yet: the replica's lag is unknown
+        monitor.check();
+        assertThat(readOnly()).isEqualTo("primary");
+
+        replicate();
+        monitor.check();
+        assertThat(readOnly()).isEqualTo("replica");
+        assertThat(readOnlySupports()).isEqualTo("replica");
+        assertThat(readWrite()).isEqualTo("primary");
+        assertThat(jdbcTemplate.queryForObject("SELECT name FROM node", String.class)).isEqualTo("primary");
+    }
+
+    @Test
+    void laggingReplicaIsTakenOutOfRotation() {
+        monitor.check();
+        replicate();
+        monitor.check();
+        assertThat(readOnly()).isEqualTo("replica");
+
+        Timestamp primaryBeat = beat(primaryDb);
+        setBeat(replicaDb, new Timestamp(primaryBeat.getTime() - MAX_LAG_MS - 3000));
+        monitor.check();
+        assertThat(readOnly()).isEqualTo("primary");
+
+        replicate();
+        monitor.check();
+        assertThat(readOnly()).isEqualTo("replica");
+    }
+
+    @Test
+    void failingReplicaFallsBackToThePrimary() {
+        monitor.check();
+        replicate();
+        monitor.check();
+
+        replicaDb.execute("DROP TABLE replication_heartbeat");
+        monitor.check();
+        assertThat(readOnly()).isEqualTo("primary");
+    }
+
+    @Test
+    void userReadsFromThePrimaryAfterTheirOwnWrite() {
+        monitor.check();
+        replicate();
+        monitor.check();
+
+        signIn(1L);
+        assertThat(readOnly()).isEqualTo("replica");
+        readWrite();
+        assertThat(readOnly()).isEqualTo("primary");
+
+        // Other users are not affected
+        signIn(2L);
+        assertThat(readOnly()).isEqualTo("replica");
+
+        // A rolled back write changed nothing, so it does not stick
+        signIn(3L);
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            jdbcTemplate.update("UPDATE node SET name = name");
+            status.setRollbackOnly();
+        });
+        assertThat(readOnly()).isEqualTo("replica");
+    }
+
+    private String readOnly() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        return template.execute(status -> jdbcTemplate.queryForObject("SELECT name FROM node", String.class));
+    }
+
+    // How the service reads are declared: read-only without a transaction
+    private String readOnlySupports() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_SUPPORTS);
+        return template.execute(status -> jdbcTemplate.queryForObject("SELECT name FROM node", String.class));
+    }
+
+    private String readWrite() {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            jdbcTemplate.update("UPDATE node SET name = name");
+            return jdbcTemplate.queryForObject("SELECT name FROM node", String.class);
+        });
+    }
+
+    private void replicate() {
+        setBeat(replicaDb, beat(primaryDb));
+    }
+
+    private static Timestamp beat(JdbcTemplate db) {
+        return db.queryForObject("SELECT beat_at FROM replication_heartbeat WHERE id = 1", Timestamp.class);
+    }
+
+    private static void setBeat(JdbcTemplate db, Timestamp beat) {
+        db.update("MERGE INTO replication_heartbeat (id, beat_at) KEY (id) VALUES (1, ?)", beat);
+    }
+
+    private static void signIn(Long userId) {
+        JwtPrincipal principal = new JwtPrincipal(userId, "user" + userId, List.of());
+        SecurityContextHolder.getContext().setAuthentication(
+            new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+    }
+
+    private static DataSource database(String name) {
+        DataSource dataSource = new DriverManagerDataSource(
+            "jdbc:h2:mem:" + name + "-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate db = new JdbcTemplate(dataSource);
+        db.execute("CREATE TABLE replication_heartbeat (id INT PRIMARY KEY, beat_at TIMESTAMP(6) NOT NULL)");
+        db.execute("CREATE TABLE node (name VARCHAR(20) NOT NULL)");
+        db.update("INSERT INTO node (name) VALUES (?)", name);
+        return dataSource;
+    }
+}
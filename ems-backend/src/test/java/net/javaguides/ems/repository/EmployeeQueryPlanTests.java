@@ -0,0 +1,211 @@
+package net.javaguides.ems.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import net.javaguides.ems.TestDatabases;
+import net.javaguides.ems.dto.EmployeeField;
+import net.javaguides.ems.sharding.EmployeeEmailRegistry;
+
+// Runs the employee repository queries against the Flyway schema (H2 in
+// MySQL mode) and checks the plan of every statement they send: each one
+// must look rows up through an index, never scan the table. A query
+// rewritten so that no index fits any more (e.g. a function around an
+// indexed column) fails here.
+class EmployeeQueryPlanTests {
+
+    private static final int USERS = 100;
+    private static final int EMPLOYEES_PER_USER = 20;
+    private static final Set<EmployeeField> ALL_FIELDS = EnumSet.allOf(EmployeeField.class);
+
+    private static final String BY_USER = "idx_employees_user_id";
+    private static final String BY_USER_AND_LAST_NAME = "idx_employees_user_last_name";
+    private static final String PRIMARY_KEY = "primary_key";
+    private static final String BY_EMAIL = "uk_employees_email_id";
+    private static final String BY_USER_AND_CHANGE = "idx_employees_user_change_seq";
+    private static final String TOMBSTONES_BY_USER_AND_CHANGE = "idx_employee_tombstones_user_change_seq";
+
+    private JdbcTemplate db;
+    private ExplainingJdbcTemplate explaining;
+    private EmployeeProjectionRepository projectionRepository;
+    private EmployeeJdbcRepository jdbcRepository;
+    private EmployeeChangeRepository changeRepository;
+
+    // Sends every query twice: first prefixed with EXPLAIN, keeping the
+    // plan, then as it is
+    static class ExplainingJdbcTemplate extends JdbcTemplate {
+
+        private final List<String> plans = new ArrayList<>();
+
+        ExplainingJdbcTemplate(DataSource dataSource) {
+            super(dataSource);
+        }
+
+        @Override
+        public <T> T query(PreparedStatementCreator psc, PreparedStatementSetter pss, ResultSetExtractor<T> rse)
+                throws DataAccessException {
+            plans.add(execute((Connection con) -> psc.createPreparedStatement(explaining(con)),
+                (PreparedStatement ps) -> {
+                    if (pss != null) {
+                        pss.setValues(ps);
+                    }
+                    try (ResultSet rs = ps.executeQuery()) {
+                        rs.next();
+                        return rs.getString(1);
+                    }
+                }));
+            return super.query(psc, pss, rse);
+        }
+
+        List<String> takePlans() {
+            List<String> taken = List.copyOf(plans);
+            plans.clear();
+            return taken;
+        }
+
+        private static Connection explaining(Connection con) {
+            return (Connection) Proxy.newProxyInstance(ExplainingJdbcTemplate.class.getClassLoader(),
+                new Class<?>[] {Connection.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("prepareStatement")) {
+                        args[0] = "EXPLAIN " + args[0];
+                    }
+                    try {
+                        return method.invoke(con, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        DataSource dataSource = TestDatabases.migratedH2("plans");
+
+        db = new JdbcTemplate(dataSource);
+        List<Object[]> users = new ArrayList<>();
+        List<Object[]> employees = new ArrayList<>();
+        List<Object[]> tombstones = new ArrayList<>();
+        for (int user = 1; user <= USERS; user++) {
+            users.add(new Object[] {user, "user" + user, "hash"});
+            for (int i = 0; i < EMPLOYEES_PER_USER; i++) {
+                // Some rows without a last name, as the API allows
+                String lastName = i % 5 == 0 ? null : "Last" + i;
+                employees.add(new Object[] {"First" + i, lastName, "e" + user + "-" + i + "@example.com", user, i});
+                // Deleted rows, with ids past the live ones
+                tombstones.add(new Object[] {100_000L + user * EMPLOYEES_PER_USER + i, user, i});
+            }
+        }
+        db.batchUpdate("INSERT INTO users (id, user_name, password_hash) VALUES (?, ?, ?)", users);
+        db.batchUpdate("INSERT INTO employees (first_name, last_name, email_id, user_id, change_seq) "
+            + "VALUES (?, ?, ?, ?, ?)", employees);
+        db.batchUpdate("INSERT INTO employee_tombstones (employee_id, user_id, change_seq, deleted_at) "
+            + "VALUES (?, ?, ?, CURRENT_TIMESTAMP)", tombstones);
+        // Row counts and selectivity for the planner
+        db.execute("ANALYZE");
+
+        explaining = new ExplainingJdbcTemplate(dataSource);
+        NamedParameterJdbcTemplate named = new NamedParameterJdbcTemplate(explaining);
+        projectionRepository = new EmployeeProjectionRepository(named);
+        // The entity manager factory is only needed by writes (cache eviction);
+        // no email registry, as with sharding off
+        jdbcRepository = new EmployeeJdbcRepository(explaining, named, null,
+            new StaticListableBeanFactory().getBeanProvider(EmployeeEmailRegistry.class));
+        changeRepository = new EmployeeChangeRepository(explaining);
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.execute("SHUTDOWN");
+    }
+
+    @Test
+    void listsAndIdPagesUseTheUserIndex() {
+        projectionRepository.findAllByUserId(7L, ALL_FIELDS);
+        assertPlans(BY_USER, BY_USER_AND_LAST_NAME);
+
+        projectionRepository.findPageOrderById(7L, 0L, 51, ALL_FIELDS);
+        assertPlans(BY_USER, BY_USER_AND_LAST_NAME);
+
+        jdbcRepository.streamByUserId(7L, rs -> { });
+        assertPlans(BY_USER, BY_USER_AND_LAST_NAME);
+
+        jdbcRepository.streamByUserId(7L, EnumSet.of(EmployeeField.FIRST_NAME), rs -> { });
+        assertPlans(BY_USER, BY_USER_AND_LAST_NAME);
+    }
+
+    @Test
+    void lastNamePagesAndSearchUseAUserIndex() {
+        projectionRepository.findPageOrderByLastName(7L, "", 0L, 51, ALL_FIELDS);
+        assertPlans(BY_USER_AND_LAST_NAME, BY_USER);
+
+        projectionRepository.searchPageByLastName(7L, "last%", "", 0L, 51, ALL_FIELDS);
+        assertPlans(BY_USER_AND_LAST_NAME, BY_USER);
+
+        projectionRepository.searchPageByRelevance(7L, "last1", "last1%", -1, "", 0L, 51, ALL_FIELDS);
+        assertPlans(BY_USER_AND_LAST_NAME, BY_USER);
+    }
+
+    @Test
+    void lookupsByIdAndOwnerChecksUseAnIndex() {
+        projectionRepository.findByIdAndUserId(150L, 8L, ALL_FIELDS);
+        assertPlans(PRIMARY_KEY, BY_USER);
+
+        projectionRepository.findByIdsAndUserId(List.of(141L, 142L, 150L), 8L, ALL_FIELDS);
+        assertPlans(PRIMARY_KEY, BY_USER);
+
+        jdbcRepository.findOwnedIds(8L, List.of(141L, 142L, 150L));
+        assertPlans(PRIMARY_KEY, BY_USER);
+    }
+
+    @Test
+    void emailLookupsUseTheUniqueIndex() {
+        jdbcRepository.findEmailOwners(List.of("e1-1@example.com", "e2-2@example.com"));
+        assertPlans(BY_EMAIL);
+    }
+
+    @Test
+    void changeFeedsSeekToTheTokenThroughAChangeIndex() {
+        changeRepository.findChangedSince(7L, 12L, 150L, 501);
+        assertPlans(BY_USER_AND_CHANGE, BY_USER);
+
+        changeRepository.findDeletedSince(7L, 12L, 100_150L, 501);
+        assertPlans(TOMBSTONES_BY_USER_AND_CHANGE);
+    }
+
+    // Every statement since the last call has a plan that looks rows up
+    // through one of the given indexes (an index condition, not a scan)
+    private void assertPlans(String... indexes) {
+        Pattern indexLookup = Pattern.compile("\\.(" + String.join("|", indexes) + ")\\w*:");
+        List<String> plans = explaining.takePlans();
+        assertThat(plans).isNotEmpty();
+        for (String plan : plans) {
+            String normalized = plan.replace("\"", "").toLowerCase();
+            assertThat(normalized).as(plan).doesNotContain("tablescan");
+            assertThat(indexLookup.matcher(normalized).find()).as(plan).isTrue();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package net.javaguides.ems.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import net.javaguides.ems.TestDatabases;
+
+// Upgrades of databases that ddl-auto=update created, baselined at V1 the
+// way application.properties configures it, on H2 in MySQL mode
+class SchemaMigrationTests {
+
+    @Test
+    void anOriginalSchemaGetsEverythingAddedSince() {
+        JdbcTemplate db = new JdbcTemplate(TestDatabases.h2("migration"));
+        db.execute("CREATE TABLE users (id BIGINT NOT NULL AUTO_INCREMENT, user_name VARCHAR(50) NOT NULL, "
+            + "password_hash VARCHAR(255) NOT NULL, PRIMARY KEY (id))");
+        db.execute("CREATE TABLE employees (id BIGINT NOT NULL AUTO_INCREMENT, first_name VARCHAR(255), "
+            + "last_name VARCHAR(255), email_id VARCHAR(255) NOT NULL, user_id BIGINT NOT NULL, PRIMARY KEY (id))");
+        db.update("INSERT INTO users (id, user_name, password_hash) VALUES (1, 'alice', 'hash')");
+        db.update("INSERT INTO employees (first_name, last_name, email_id, user_id) "
+            + "VALUES ('A', 'B', 'a@example.com', 1)");
+
+        migrate(db);
+
+        assertThat(db.queryForObject("SELECT version FROM employees", Long.class)).isZero();
+        assertThat(db.queryForList("SELECT credentials_changed_at FROM users")).hasSize(1);
+        assertThat(db.queryForObject("SELECT COUNT(*) FROM revoked_tokens", Long.class)).isZero();
+        assertThat(db.queryForObject("SELECT COUNT(*) FROM replication_heartbeat", Long.class)).isZero();
+        assertThat(indexes(db, "users")).contains("idx_users_credentials_changed_at");
+        assertThat(indexes(db, "revoked_tokens"))
+            .contains("idx_revoked_tokens_revoked_at", "idx_revoked_tokens_expires_at");
+    }
+
+    @Test
+    void whatDdlAutoAlreadyAddedIsLeftAsItIs() {
+        JdbcTemplate db = new JdbcTemplate(TestDatabases.h2("migration"));
+        db.execute("CREATE TABLE users (id BIGINT NOT NULL AUTO_INCREMENT, user_name VARCHAR(50) NOT NULL, "
+            + "password_hash VARCHAR(255) NOT NULL, credentials_changed_at TIMESTAMP(6), PRIMARY KEY (id))");
+        db.execute("CREATE INDEX idx_users_credentials_changed_at ON users (credentials_changed_at)");
+        db.execute("CREATE TABLE employees (id BIGINT NOT NULL AUTO_INCREMENT, first_name VARCHAR(255), "
+            + "last_name VARCHAR(255), email_id VARCHAR(255) NOT NULL, version BIGINT NOT NULL, "
+            + "user_id BIGINT NOT NULL, PRIMARY KEY (id))");
+        db.execute("CREATE TABLE revoked_tokens (jti VARCHAR(36) NOT NULL, user_id BIGINT, "
+            + "expires_at TIMESTAMP(6) NOT NULL, revoked_at TIMESTAMP(6) NOT NULL, PRIMARY KEY (jti))");
+        db.execute("CREATE INDEX idx_revoked_tokens_revoked_at ON revoked_tokens (revoked_at)");
+        db.update("INSERT INTO revoked_tokens (jti, user_id, expires_at, revoked_at) "
+            + "VALUES ('kept', 1, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)");
+
+        migrate(db);
+
+        assertThat(db.queryForObject("SELECT COUNT(*) FROM revoked_tokens", Long.class)).isEqualTo(1);
+        assertThat(indexes(db, "revoked_tokens"))
+            .contains("idx_revoked_tokens_revoked_at", "idx_revoked_tokens_expires_at");
+        assertThat(db.queryForObject("SELECT COUNT(*) FROM replication_heartbeat", Long.class)).isZero();
+        assertThat(db.queryForObject("SELECT COUNT(*) FROM flyway_schema_history WHERE version = '5' AND success",
+            Long.class)).isEqualTo(1);
+    }
+
+    private static void migrate(JdbcTemplate db) {
+        Flyway.configure().dataSource(db.getDataSource())
+            .baselineOnMigrate(true)
+            .baselineVersion("1")
+            .load()
+            .migrate();
+    }
+
+    private static List<String> indexes(JdbcTemplate db, String table) {
+        return db.queryForList("SELECT index_name FROM information_schema.indexes WHERE table_name = ?",
+            String.class, table);
+    }
+}
@@ -0,0 +1,158 @@
+package net.javaguides.ems.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import net.javaguides.ems.exception.TooManyRequestsException;
+
+// TokenBucketRateLimiter on a clock the test moves, and AuthRateLimiter as
+// the auth endpoints use it
+class RateLimiterTests {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicLong clock = new AtomicLong(1_000 * SECOND);
+
+    @Test
+    void aBurstIsFollowedByOneAttemptPerInterval() {
+        // 3 at once, then one per second
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(3, 60, 100, clock::get);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(limiter.tryAcquire("alice")).isZero();
+        }
+        assertThat(limiter.tryAcquire("alice")).isEqualTo(SECOND);
+
+        clock.addAndGet(SECOND / 2);
+        assertThat(limiter.tryAcquire("alice")).isEqualTo(SECOND / 2);
+        clock.addAndGet(SECOND / 2);
+        assertThat(limiter.tryAcquire("alice")).isZero();
+        assertThat(limiter.tryAcquire("alice")).isEqualTo(SECOND);
+
+        // A long pause refills the bucket, but never beyond its capacity
+        clock.addAndGet(60 * SECOND);
+        for (int i = 0; i < 3; i++) {
+            assertThat(limiter.tryAcquire("alice")).isZero();
+        }
+        assertThat(limiter.tryAcquire("alice")).isPositive();
+        // Other keys are not affected
+        assertThat(limiter.tryAcquire("bob")).isZero();
+    }
+
+    @Test
+    void newKeysGetTheirOwnBucketWhenTheMapIsFull() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 1, 2, clock::get);
+        assertThat(limiter.tryAcquire("a")).isZero();
+        clock.addAndGet(SECOND);
+        assertThat(limiter.tryAcquire("b")).isZero();
+
+        // Nothing is idle: every new key pushes one out, and is still
+        // limited on its own
+        for (String key : new String[] {"c", "d", "e"}) {
+            assertThat(limiter.tryAcquire(key)).as(key).isZero();
+            assertThat(limiter.tryAcquire(key)).as(key).isPositive();
+            assertThat(limiter.size()).isLessThanOrEqualTo(2);
+        }
+    }
+
+    @Test
+    void theBucketThatRefillsFirstIsPushedOut() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 1, 2, clock::get);
+        assertThat(limiter.tryAcquire("early")).isZero();
+        clock.addAndGet(10 * SECOND);
+        assertThat(limiter.tryAcquire("late")).isZero();
+
+        assertThat(limiter.tryAcquire("new")).isZero();
+
+        // "late" kept its state, "early" starts over
+        assertThat(limiter.tryAcquire("late")).isPositive();
+        assertThat(limiter.tryAcquire("early")).isZero();
+    }
+
+    @Test
+    void aUsernameCannotBeLockedOutFromAnotherAddress() {
+        AuthRateLimiter limiter = authRateLimiter(100, 2);
+        limiter.checkIpAndUser("10.0.0.1", "alice");
+        limiter.checkIpAndUser("10.0.0.1", "Alice");
+
+        TooManyRequestsException throttled = catchThrowableOfType(TooManyRequestsException.class,
+            () -> limiter.checkIpAndUser("10.0.0.1", "ALICE"));
+        assertThat(throttled.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        // 2 per minute: the next attempt is 30 seconds away
+        assertThat(throttled.getRetryAfterSeconds()).isEqualTo(30);
+
+        // The user signing in from elsewhere is not affected
+        limiter.checkIpAndUser("10.0.0.2", "alice");
+    }
+
+    @Test
+    void guessesSpreadOverManyAddressesRunIntoTheAccountLimit() {
+        AuthRateLimiter limiter = authRateLimiter(100, 2, 5);
+        for (int i = 1; i <= 5; i++) {
+            limiter.checkIpAndUser("10.0.0." + i, "alice");
+        }
+
+        TooManyRequestsException throttled = catchThrowableOfType(TooManyRequestsException.class,
+            () -> limiter.checkIpAndUser("10.0.0.6", "Alice"));
+        // 5 per minute: the next attempt is 12 seconds away
+        assertThat(throttled.getRetryAfterSeconds()).isEqualTo(12);
+        // Other accounts are not affected
+        limiter.checkIpAndUser("10.0.0.6", "bob");
+    }
+
+    @Test
+    void aThrottledRequestIsAnswered429WithRetryAfter() throws Exception {
+        MockMvc mvc = MockMvcBuilders.standaloneSetup(new SigninController(authRateLimiter(1, 100))).build();
+
+        mvc.perform(post("/signin").param("userName", "alice"))
+            .andExpect(status().isOk());
+        mvc.perform(post("/signin").param("userName", "alice"))
+            .andExpect(status().isTooManyRequests())
+            .andExpect(header().string(HttpHeaders.RETRY_AFTER, "60"));
+    }
+
+    private static AuthRateLimiter authRateLimiter(int ipCapacity, int userCapacity) {
+        return authRateLimiter(ipCapacity, userCapacity, 100);
+    }
+
+    // Each bucket refills its capacity once a minute
+    private static AuthRateLimiter authRateLimiter(int ipCapacity, int userCapacity, int accountCapacity) {
+        return new AuthRateLimiter(new SimpleMeterRegistry(), ipCapacity, ipCapacity, userCapacity, userCapacity,
+            accountCapacity, accountCapacity, 1000);
+    }
+
+    // Checks the limiter the way AuthController does. Not a @RestController,
+    // so no application context picks it up; standaloneSetup maps it anyway.
+    static class SigninController {
+
+        private final AuthRateLimiter authRateLimiter;
+
+        SigninController(AuthRateLimiter authRateLimiter) {
+            this.authRateLimiter = authRateLimiter;
+        }
+
+        @PostMapping("/signin")
+        @ResponseBody
+        String signin(@RequestParam("userName") String userName, HttpServletRequest request) {
+            authRateLimiter.checkIpAndUser(request.getRemoteAddr(), userName);
+            return "ok";
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package net.javaguides.ems.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.javaguides.ems.dto.JwtResponse;
+import net.javaguides.ems.entity.RevokedToken;
+import net.javaguides.ems.entity.User;
+import net.javaguides.ems.repository.RevokedTokenRepository;
+import net.javaguides.ems.repository.UserRepository;
+import net.javaguides.ems.service.implementation.TokenServiceImplementation;
+
+// TokenRevocationRegistry with the revoked_tokens table kept in a map, so
+// that a test can count which lookups reach it. Two registries on the same
+// map play two instances between polls.
+class TokenRevocationTests {
+
+    private static final long USER = 7L;
+    private static final long DAY_MS = 86_400_000L;
+
+    private final Map<String, RevokedToken> revokedTokens = new ConcurrentHashMap<>();
+    private final RevokedTokenRepository revokedTokenRepository = mock(RevokedTokenRepository.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    // Every test token expires in the same filter window. Claims keep whole
+    // seconds only.
+    private final Instant expiresAt = Instant.now().plus(1, ChronoUnit.HOURS).truncatedTo(ChronoUnit.SECONDS);
+
+    @BeforeEach
+    void setUp() {
+        when(revokedTokenRepository.saveAndFlush(any(RevokedToken.class))).thenAnswer(invocation -> {
+            RevokedToken token = invocation.getArgument(0);
+            if (revokedTokens.putIfAbsent(token.getId(), token) != null) {
+                throw new DataIntegrityViolationException("Duplicate entry for key 'PRIMARY'");
+            }
+            return token;
+        });
+        when(revokedTokenRepository.existsById(any())).thenAnswer(
+            invocation -> revokedTokens.containsKey(invocation.<String>getArgument(0)));
+    }
+
+    @Test
+    void aPasswordResetRevokesTokensIssuedBeforeIt() {
+        TokenRevocationRegistry registry = registry(100_000, 100);
+        Instant reset = Instant.now().truncatedTo(ChronoUnit.SECONDS).plusMillis(300);
+        registry.revokeAllIssuedBefore(USER, reset);
+
+        assertThat(registry.isRevoked(claims(USER, "before", reset.minusSeconds(60)))).isTrue();
+        assertThat(registry.isRevoked(claims(USER, "same-second-before", reset.minusMillis(1)))).isTrue();
+        // A login right after the reset, in the same second
+        assertThat(registry.isRevoked(claims(USER, "same-second-after", reset.plusMillis(1)))).isFalse();
+        assertThat(registry.isRevoked(claims(USER + 1, "other-user", reset.minusSeconds(60)))).isFalse();
+
+        // Without iat_ms only iat is known, the start of the second, which
+        // is before the reset
+        Claims legacy = claims(USER, "legacy", reset.truncatedTo(ChronoUnit.SECONDS));
+        legacy.remove(JwtTokenUtil.CLAIM_ISSUED_AT_MS);
+        assertThat(registry.isRevoked(legacy)).isTrue();
+    }
+
+    @Test
+    void tokensIssuedRightAfterAResetAreAccepted() {
+        JwtTokenUtil jwtTokenUtil = jwtTokenUtil();
+        TokenRevocationRegistry registry = registry(100_000, 100);
+        registry.revokeAllIssuedBefore(USER, Instant.now());
+
+        String token = jwtTokenUtil.generateToken("alice", USER, List.of("ROLE_USER"));
+        assertThat(registry.isRevoked(jwtTokenUtil.verifyToken(token))).isFalse();
+    }
+
+    @Test
+    void aFilterFalsePositiveIsConfirmedOnceAndThenAnsweredFromMemory() {
+        // One id per window: a few revocations fill the filter, so almost
+        // every other id is a "maybe"
+        TokenRevocationRegistry registry = registry(1, 100);
+        for (int i = 0; i < 5; i++) {
+            registry.revoke("revoked-" + i, USER, expiresAt);
+        }
+
+        String falsePositive = findFalsePositive(registry);
+        assertThat(confirmations()).isEqualTo(1);
+        assertThat(registry.isRevoked(claims(USER, falsePositive, Instant.now()))).isFalse();
+        assertThat(confirmations()).isEqualTo(1);
+
+        // Revoked ids are answered from memory as well
+        assertThat(registry.isRevoked(claims(USER, "revoked-0", Instant.now()))).isTrue();
+        assertThat(confirmations()).isEqualTo(1);
+    }
+
+    @Test
+    void revocationsDroppedFromAFullCacheAreReadAgain() {
+        TokenRevocationRegistry registry = registry(1, 2);
+        for (int i = 0; i < 5; i++) {
+            registry.revoke("filler-" + i, USER, expiresAt);
+        }
+        registry.revoke("revoked", USER, expiresAt);
+        // Two more answers push the revoked one out
+        findFalsePositive(registry);
+        findFalsePositive(registry);
+        double before = confirmations();
+
+        assertThat(registry.isRevoked(claims(USER, "revoked", Instant.now()))).isTrue();
+        assertThat(confirmations()).isEqualTo(before + 1);
+        // and it is remembered again
+        assertThat(registry.isRevoked(claims(USER, "revoked", Instant.now()))).isTrue();
+        assertThat(confirmations()).isEqualTo(before + 1);
+    }
+
+    @Test
+    void aRefreshTokenCanOnlyBeUsedOnce() {
+        JwtTokenUtil jwtTokenUtil = jwtTokenUtil();
+        User user = new User("alice", "hash");
+        user.setId(USER);
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(user));
+        TokenServiceImplementation tokens = new TokenServiceImplementation(jwtTokenUtil,
+            registry(100_000, 100), userRepository);
+        // Another instance that has not polled the first one's revocations
+        TokenServiceImplementation otherInstance = new TokenServiceImplementation(jwtTokenUtil,
+            registry(100_000, 100), userRepository);
+
+        JwtResponse issued = tokens.issueTokens(user);
+        Optional<JwtResponse> rotated = tokens.refresh(issued.getRefreshToken());
+        assertThat(rotated).isPresent();
+
+        // Reused on the same instance: known revoked
+        assertThat(tokens.refresh(issued.getRefreshToken())).isEmpty();
+        // Reused on another one before its next poll: the insert of the
+        // revocation fails
+        assertThat(otherInstance.refresh(issued.getRefreshToken())).isEmpty();
+        // The new refresh token works once
+        assertThat(otherInstance.refresh(rotated.get().getRefreshToken())).isPresent();
+        assertThat(tokens.refresh(rotated.get().getRefreshToken())).isEmpty();
+    }
+
+    private TokenRevocationRegistry registry(int expectedPerBucket, int confirmedMaxEntries) {
+        return new TokenRevocationRegistry(revokedTokenRepository, userRepository,
+            new TokenRevocationState(meterRegistry, 10_000, DAY_MS, expectedPerBucket, confirmedMaxEntries, 14 * DAY_MS));
+    }
+
+    // An id that was never revoked but that the filter cannot rule out
+    private String findFalsePositive(TokenRevocationRegistry registry) {
+        double before = confirmations();
+        for (int i = 0; i < 10_000; i++) {
+            String id = UUID.randomUUID().toString();
+            assertThat(registry.isRevoked(claims(USER, id, Instant.now()))).isFalse();
+            if (confirmations() > before) {
+                return id;
+            }
+        }
+        throw new AssertionError("No false positive found");
+    }
+
+    private double confirmations() {
+        return meterRegistry.counter("ems.revocation.confirmations").count();
+    }
+
+    private Claims claims(long userId, String id, Instant issuedAt) {
+        Claims claims = Jwts.claims();
+        claims.setId(id);
+        claims.setIssuedAt(Date.from(issuedAt));
+        claims.put(JwtTokenUtil.CLAIM_ISSUED_AT_MS, issuedAt.toEpochMilli());
+        claims.setExpiration(Date.from(expiresAt));
+        claims.put(JwtTokenUtil.CLAIM_USER_ID, userId);
+        return claims;
+    }
+
+    private static JwtTokenUtil jwtTokenUtil() {
+        JwtTokenUtil jwtTokenUtil = new JwtTokenUtil();
+        byte[] secret = new byte[64];
+        for (int i = 0; i < secret.length; i++) {
+            secret[i] = (byte) i;
+        }
+        ReflectionTestUtils.setField(jwtTokenUtil, "jwtSecret", Base64.getEncoder().encodeToString(secret));
+        ReflectionTestUtils.setField(jwtTokenUtil, "jwtExpirationMs", 900_000);
+        ReflectionTestUtils.setField(jwtTokenUtil, "jwtRefreshExpirationMs", 14 * DAY_MS);
+        ReflectionTestUtils.setField(jwtTokenUtil, "cacheMaxEntries", 100);
+        jwtTokenUtil.init();
+        return jwtTokenUtil;
+    }
+}
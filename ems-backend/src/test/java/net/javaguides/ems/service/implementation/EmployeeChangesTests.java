@@ -0,0 +1,242 @@
+package net.javaguides.ems.service.implementation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.persistence.EntityManagerFactory;
+import net.javaguides.ems.TestDatabases;
+import net.javaguides.ems.dto.BulkItemResultDto;
+import net.javaguides.ems.dto.BulkResultDto;
+import net.javaguides.ems.dto.ChangeToken;
+import net.javaguides.ems.dto.EmployeeChangeDto;
+import net.javaguides.ems.dto.EmployeeChangesDto;
+import net.javaguides.ems.dto.EmployeeDto;
+import net.javaguides.ems.repository.EmployeeChangeRepository;
+import net.javaguides.ems.repository.EmployeeJdbcRepository;
+import net.javaguides.ems.repository.EmployeeProjectionRepository;
+import net.javaguides.ems.repository.EmployeeRepository;
+import net.javaguides.ems.repository.UserRepository;
+import net.javaguides.ems.sharding.EmployeeEmailRegistry;
+import net.javaguides.ems.sharding.ShardRoutingDataSource;
+
+// Delta sync through the service and the real SQL, on the Flyway schema
+// (H2 in MySQL mode): what a client sees after a full sync, after writes,
+// across pages and after tombstones were compacted. The JPA repositories
+// are only needed by the single-row create, which is not used here.
+class EmployeeChangesTests {
+
+    private static final long USER = 1L;
+    private static final long OTHER_USER = 2L;
+
+    private JdbcTemplate db;
+    private EmployeeServiceImplementation service;
+    private EmployeeJdbcRepository jdbcRepository;
+    private EmployeeChangeRepository changeRepository;
+    private EmployeeTombstoneCompactor compactor;
+    private final List<Object> events = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        db = new JdbcTemplate(TestDatabases.migratedH2("changes"));
+        db.update("INSERT INTO users (id, user_name, password_hash) VALUES (?, 'alice', 'hash'), (?, 'bob', 'hash')",
+            USER, OTHER_USER);
+
+        NamedParameterJdbcTemplate named = new NamedParameterJdbcTemplate(db);
+        StaticListableBeanFactory noBeans = new StaticListableBeanFactory();
+        jdbcRepository = new EmployeeJdbcRepository(db, named, mock(EntityManagerFactory.class, RETURNS_DEEP_STUBS),
+            noBeans.getBeanProvider(EmployeeEmailRegistry.class));
+        changeRepository = new EmployeeChangeRepository(db);
+        service = new EmployeeServiceImplementation(mock(EmployeeRepository.class), mock(UserRepository.class),
+            jdbcRepository, new EmployeeProjectionRepository(named), changeRepository, new ObjectMapper(),
+            events::add);
+        compactor = new EmployeeTombstoneCompactor(changeRepository,
+            noBeans.getBeanProvider(ShardRoutingDataSource.class), 720);
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.execute("SHUTDOWN");
+    }
+
+    @Test
+    void aFullSyncIsFollowedByDeltasOfOnlyWhatChanged() {
+        List<Long> ids = create(USER, "a@example.com", "b@example.com", "c@example.com");
+        create(OTHER_USER, "other@example.com");
+
+        EmployeeChangesDto full = service.getChanges(USER, null, null);
+        assertThat(full.isFull()).isTrue();
+        assertThat(full.getChanged()).extracting(EmployeeDto::getId).containsExactlyElementsOf(ids);
+
+        service.updateEmployees(List.of(new EmployeeDto(ids.get(0), "New", "Name", "a@example.com")), USER);
+        service.deleteEmployee(ids.get(1), USER, null);
+        Long added = create(USER, "d@example.com").get(0);
+        create(OTHER_USER, "other2@example.com");
+
+        EmployeeChangesDto delta = service.getChanges(USER, full.getToken(), null);
+        assertThat(delta.isFull()).isFalse();
+        assertThat(delta.isHasMore()).isFalse();
+        assertThat(delta.getChanged()).extracting(EmployeeDto::getId).containsExactly(ids.get(0), added);
+        assertThat(delta.getChanged().get(0).getFirstName()).isEqualTo("New");
+        assertThat(delta.getDeleted()).containsExactly(ids.get(1));
+
+        EmployeeChangesDto none = service.getChanges(USER, delta.getToken(), null);
+        assertThat(none.getChanged()).isEmpty();
+        assertThat(none.getDeleted()).isEmpty();
+    }
+
+    @Test
+    void deletesAreKeptAsTombstones() {
+        List<Long> ids = create(USER, "a@example.com", "b@example.com", "c@example.com");
+        String token = service.getChanges(USER, null, null).getToken();
+
+        service.deleteEmployees(List.of(ids.get(0), ids.get(2)), USER);
+
+        assertThat(db.queryForList("SELECT employee_id FROM employee_tombstones WHERE user_id = ? "
+            + "ORDER BY employee_id", Long.class, USER)).containsExactly(ids.get(0), ids.get(2));
+        EmployeeChangesDto delta = service.getChanges(USER, token, null);
+        assertThat(delta.getChanged()).isEmpty();
+        assertThat(delta.getDeleted()).containsExactly(ids.get(0), ids.get(2));
+    }
+
+    @Test
+    void pagesSplitOneChangeAcrossRowsAndTombstones() {
+        Long deleted = create(USER, "old@example.com").get(0);
+        String token = service.getChanges(USER, null, null).getToken();
+
+        // One change that inserts two rows and deletes one: all three share
+        // a change number, so the pages are cut by id inside it
+        long changeSeq = changeRepository.nextChangeSeq(USER);
+        List<Long> inserted = jdbcRepository.batchInsert(List.of(
+            new EmployeeDto(null, "New", "One", "new1@example.com"),
+            new EmployeeDto(null, "New", "Two", "new2@example.com")), USER, changeSeq);
+        jdbcRepository.deleteOwned(deleted, USER, null);
+        changeRepository.recordDeletes(USER, List.of(deleted), changeSeq);
+
+        List<Long> changed = new ArrayList<>();
+        List<Long> deletedIds = new ArrayList<>();
+        List<Boolean> hasMore = new ArrayList<>();
+        for (int page = 0; page < 3; page++) {
+            EmployeeChangesDto changes = service.getChanges(USER, token, 1);
+            assertThat(changes.getChanged().size() + changes.getDeleted().size()).isEqualTo(1);
+            changes.getChanged().forEach(employee -> changed.add(employee.getId()));
+            deletedIds.addAll(changes.getDeleted());
+            hasMore.add(changes.isHasMore());
+            token = changes.getToken();
+        }
+        assertThat(hasMore).containsExactly(true, true, false);
+        assertThat(changed).containsExactlyElementsOf(inserted);
+        assertThat(deletedIds).containsExactly(deleted);
+        assertThat(service.getChanges(USER, token, 1).getDeleted()).isEmpty();
+    }
+
+    @Test
+    void tokensOlderThanCompactedTombstonesAreGone() {
+        List<Long> ids = create(USER, "a@example.com", "b@example.com");
+        String before = service.getChanges(USER, null, null).getToken();
+        service.deleteEmployee(ids.get(0), USER, null);
+        String after = service.getChanges(USER, before, null).getToken();
+
+        db.update("UPDATE employee_tombstones SET deleted_at = ?",
+            Timestamp.from(Instant.now().minus(Duration.ofDays(60))));
+        compactor.compact();
+
+        assertThat(db.queryForObject("SELECT COUNT(*) FROM employee_tombstones", Long.class)).isZero();
+        Throwable gone = catchThrowable(() -> service.getChanges(USER, before, null));
+        assertThat(status(gone)).isEqualTo(HttpStatus.GONE);
+        // A client that already saw the delete keeps syncing
+        assertThat(service.getChanges(USER, after, null).getDeleted()).isEmpty();
+        // and one that was sent away starts over with a full sync
+        assertThat(service.getChanges(USER, null, null).getChanged()).extracting(EmployeeDto::getId)
+            .containsExactly(ids.get(1));
+    }
+
+    @Test
+    void aTokenAheadOfThisDatabaseGetsAnEmptyDelta() {
+        create(USER, "a@example.com");
+        long lastSeq = changeRepository.findSyncState(USER).lastSeq();
+        String ahead = ChangeToken.through(lastSeq + 5).encode();
+
+        EmployeeChangesDto changes = service.getChanges(USER, ahead, null);
+
+        assertThat(changes.getChanged()).isEmpty();
+        assertThat(changes.getDeleted()).isEmpty();
+        assertThat(changes.getToken()).isEqualTo(ahead);
+    }
+
+    @Test
+    void updatesReportTheNewVersionInTheResponseAndTheEvent() {
+        List<Long> ids = create(USER, "a@example.com", "b@example.com");
+        events.clear();
+
+        // Without If-Match the version is still known
+        EmployeeDto updated = service.updateEmployee(ids.get(0),
+            new EmployeeDto(null, "New", "Name", "a@example.com"), USER, null);
+        assertThat(updated.getVersion()).isEqualTo(1);
+        assertThat(eventVersions()).containsExactly(1L);
+
+        events.clear();
+        BulkResultDto bulk = service.updateEmployees(List.of(
+            new EmployeeDto(ids.get(0), "Newer", "Name", "a@example.com"),
+            new EmployeeDto(ids.get(1), "New", "Name", "b@example.com")), USER);
+        assertThat(bulk.getItems()).extracting(BulkItemResultDto::getVersion).containsExactly(2L, 1L);
+        assertThat(eventVersions()).containsExactly(2L, 1L);
+        assertThat(db.queryForList("SELECT version FROM employees ORDER BY id", Long.class))
+            .containsExactly(2L, 1L);
+    }
+
+    @Test
+    void malformedTokensAreBadRequests() {
+        assertThat(status(catchThrowable(() -> service.getChanges(USER, "not-a-token", null))))
+            .isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(status(catchThrowable(() -> service.getChanges(USER, "%%%", null))))
+            .isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(status(catchThrowable(() -> service.getChanges(USER, null, 0))))
+            .isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    private List<Long> create(long userId, String... emails) {
+        List<EmployeeDto> employees = new ArrayList<>();
+        for (String email : emails) {
+            employees.add(new EmployeeDto(null, "First", "Last", email));
+        }
+        return service.createEmployees(employees, userId).getItems().stream()
+            .map(BulkItemResultDto::getId)
+            .toList();
+    }
+
+    private List<Long> eventVersions() {
+        return events.stream()
+            .map(EmployeeChangeDto.class::cast)
+            .flatMap(change -> change.getEmployees().stream())
+            .map(EmployeeDto::getVersion)
+            .toList();
+    }
+
+    // The status Spring answers with for the exception
+    private static HttpStatus status(Throwable e) {
+        assertThat(e).isNotNull();
+        ResponseStatus status = AnnotatedElementUtils.findMergedAnnotation(e.getClass(), ResponseStatus.class);
+        assertThat(status).as(e.toString()).isNotNull();
+        return status.code();
+    }
+}
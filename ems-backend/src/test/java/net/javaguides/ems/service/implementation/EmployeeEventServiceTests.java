@@ -0,0 +1,357 @@
+package net.javaguides.ems.service.implementation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.javaguides.ems.dto.EmployeeChangeDto;
+import net.javaguides.ems.dto.EmployeeDto;
+import net.javaguides.ems.security.JwtPrincipal;
+import net.javaguides.ems.security.TokenRevocationRegistry;
+
+// The event streams with emitters that record what is written to them
+// instead of a socket, and can hold a write to play a client that stopped
+// reading. The scheduled jobs (heartbeat, closeStalled) are called by hand.
+class EmployeeEventServiceTests {
+
+    private static final long USER = 1L;
+    private static final long WAIT_SECONDS = 5;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final TokenRevocationRegistry revocations = mock(TokenRevocationRegistry.class);
+    private final List<TestEventService> services = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        when(revocations.isRevoked(anyLong(), any(), any(), any())).thenReturn(false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        services.forEach(EmployeeEventServiceImplementation::shutdown);
+    }
+
+    @Test
+    void aConnectionThatFallsBehindGetsOneResyncAndIsClosed() throws Exception {
+        TestEventService service = service(4, 100, 10, 100, 2, 10000);
+        FakeEmitter slow = service.open(principal(USER), true);
+        FakeEmitter fast = service.open(principal(USER));
+        // The held "ready" event has left the queue; the queue takes four
+        // more before the fifth overflows it
+        slow.awaitHeldWrite();
+        fast.awaitEvents(1);
+
+        for (int i = 1; i <= 5; i++) {
+            service.onEmployeeChange(EmployeeChangeDto.deleted(USER, List.of((long) i)));
+        }
+        fast.awaitEvents(6);
+        slow.releaseWrites();
+        slow.awaitCompleted();
+
+        assertThat(fast.types()).containsExactly("ready", "DELETED", "DELETED", "DELETED", "DELETED", "DELETED");
+        assertThat(fast.isCompleted()).isFalse();
+        assertThat(slow.types()).containsExactly("ready", "RESYNC");
+        assertThat(meterRegistry.counter("ems.events.dropped").count()).isEqualTo(1);
+    }
+
+    @Test
+    void openStreamsAreCappedPerUserAndInTotal() {
+        TestEventService service = service(64, 3, 2, 100, 2, 10000);
+        service.open(principal(USER));
+        service.open(principal(USER));
+
+        Throwable perUser = catchThrowable(() -> service.open(principal(USER)));
+        assertThat(perUser).isInstanceOf(ResponseStatusException.class);
+        assertThat(((ResponseStatusException) perUser).getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(((ResponseStatusException) perUser).getHeaders().getFirst("Retry-After")).isNotNull();
+
+        service.open(principal(2L));
+        Throwable total = catchThrowable(() -> service.open(principal(3L)));
+        assertThat(total).isNotNull();
+        assertThat(AnnotatedElementUtils.findMergedAnnotation(total.getClass(), ResponseStatus.class).code())
+            .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(meterRegistry.get("ems.events.connections").gauge().value()).isEqualTo(3);
+    }
+
+    @Test
+    void largeChangesAreSentAsResync() throws Exception {
+        TestEventService service = service(64, 100, 10, 2, 2, 10000);
+        FakeEmitter emitter = service.open(principal(USER));
+        FakeEmitter otherUser = service.open(principal(2L));
+
+        service.onEmployeeChange(EmployeeChangeDto.created(USER, employees(2)));
+        service.onEmployeeChange(EmployeeChangeDto.updated(USER, employees(3)));
+        emitter.awaitEvents(3);
+        otherUser.awaitEvents(1);
+
+        assertThat(emitter.types()).containsExactly("ready", "CREATED", "RESYNC");
+        assertThat(otherUser.types()).containsExactly("ready");
+    }
+
+    @Test
+    void changesOfRolledBackWritesAreNotSent() throws Exception {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(EventsConfig.class)) {
+            TestEventService service = context.getBean(TestEventService.class);
+            TransactionTemplate transaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+            FakeEmitter emitter = service.open(principal(USER));
+            emitter.awaitEvents(1);
+
+            transaction.executeWithoutResult(status -> {
+                context.publishEvent(EmployeeChangeDto.deleted(USER, List.of(1L)));
+                // Nothing is sent before the commit
+                assertThat(emitter.types()).containsExactly("ready");
+                status.setRollbackOnly();
+            });
+            transaction.executeWithoutResult(status ->
+                context.publishEvent(EmployeeChangeDto.created(USER, employees(1))));
+            emitter.awaitEvents(2);
+
+            assertThat(emitter.types()).containsExactly("ready", "CREATED");
+        }
+    }
+
+    @Test
+    void streamsCloseOnceTheirTokenExpiresOrIsRevoked() throws Exception {
+        TestEventService service = service(64, 100, 10, 100, 2, 10000);
+        FakeEmitter valid = service.open(principal(USER));
+        FakeEmitter expired = service.open(new JwtPrincipal(USER, "user", List.of(), "expired",
+            Instant.now().minusSeconds(600), Instant.now().minusSeconds(1)));
+        FakeEmitter revoked = service.open(principal(USER, "revoked"));
+        when(revocations.isRevoked(eq(USER), eq("revoked"), any(), any())).thenReturn(true);
+        for (FakeEmitter emitter : List.of(valid, expired, revoked)) {
+            emitter.awaitEvents(1);
+        }
+
+        service.heartbeat();
+        expired.awaitCompleted();
+        revoked.awaitCompleted();
+        valid.awaitEvents(2);
+
+        assertThat(expired.types()).containsExactly("ready", "unauthorized");
+        assertThat(revoked.types()).containsExactly("ready", "unauthorized");
+        assertThat(valid.types()).containsExactly("ready", "heartbeat");
+        assertThat(valid.isCompleted()).isFalse();
+
+        // Closed streams get nothing more
+        service.onEmployeeChange(EmployeeChangeDto.deleted(USER, List.of(1L)));
+        valid.awaitEvents(3);
+        assertThat(revoked.types()).containsExactly("ready", "unauthorized");
+    }
+
+    @Test
+    void aStalledWriteDoesNotHoldUpOtherStreams() throws Exception {
+        // One sender thread, which the stalled client blocks
+        TestEventService service = service(64, 100, 10, 100, 1, 50);
+        FakeEmitter stalled = service.open(principal(USER), true);
+        stalled.awaitHeldWrite();
+        FakeEmitter other = service.open(principal(2L));
+
+        Thread.sleep(100);
+        service.closeStalled();
+        // A thread stands in for the blocked one
+        other.awaitEvents(1);
+        assertThat(meterRegistry.get("ems.events.connections").gauge().value()).isEqualTo(1);
+        assertThat(meterRegistry.counter("ems.events.dropped").count()).isEqualTo(1);
+
+        // The stalled client gets nothing more, and its response is ended
+        // once the write returns
+        service.onEmployeeChange(EmployeeChangeDto.deleted(USER, List.of(1L)));
+        stalled.releaseWrites();
+        stalled.awaitCompleted();
+        assertThat(stalled.types()).containsExactly("ready");
+    }
+
+    private TestEventService service(int bufferSize, int maxConnections, int maxConnectionsPerUser,
+                                     int maxItemsPerEvent, int senderThreads, long sendTimeoutMs) {
+        TestEventService service = new TestEventService(meterRegistry, revocations, bufferSize, maxConnections,
+            maxConnectionsPerUser, maxItemsPerEvent, senderThreads, sendTimeoutMs);
+        services.add(service);
+        return service;
+    }
+
+    private static JwtPrincipal principal(long userId) {
+        return principal(userId, UUID.randomUUID().toString());
+    }
+
+    private static JwtPrincipal principal(long userId, String tokenId) {
+        return new JwtPrincipal(userId, "user" + userId, List.of(), tokenId,
+            Instant.now(), Instant.now().plusSeconds(600));
+    }
+
+    private static List<EmployeeDto> employees(int count) {
+        List<EmployeeDto> employees = new ArrayList<>();
+        for (long id = 1; id <= count; id++) {
+            employees.add(new EmployeeDto(id, "First", "Last", "e" + id + "@example.com"));
+        }
+        return employees;
+    }
+
+    // Registered directly rather than as a @Configuration, so the
+    // application's component scan never picks it up
+    @EnableTransactionManagement
+    static class EventsConfig {
+
+        @Bean
+        DataSource dataSource() {
+            return new DriverManagerDataSource("jdbc:h2:mem:events-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                "sa", "");
+        }
+
+        @Bean
+        PlatformTransactionManager transactionManager(DataSource dataSource) {
+            return new DataSourceTransactionManager(dataSource);
+        }
+
+        @Bean
+        TestEventService employeeEventService() {
+            TokenRevocationRegistry revocations = mock(TokenRevocationRegistry.class);
+            return new TestEventService(new SimpleMeterRegistry(), revocations, 64, 100, 10, 100, 2, 10000);
+        }
+    }
+
+    static class TestEventService extends EmployeeEventServiceImplementation {
+
+        private FakeEmitter next;
+
+        TestEventService(MeterRegistry meterRegistry, TokenRevocationRegistry revocations, int bufferSize,
+                         int maxConnections, int maxConnectionsPerUser, int maxItemsPerEvent, int senderThreads,
+                         long sendTimeoutMs) {
+            super(meterRegistry, revocations, bufferSize, maxConnections, maxConnectionsPerUser, maxItemsPerEvent,
+                senderThreads, sendTimeoutMs, false);
+        }
+
+        FakeEmitter open(JwtPrincipal principal) {
+            return open(principal, false);
+        }
+
+        // With holdWrites, every write blocks until releaseWrites
+        synchronized FakeEmitter open(JwtPrincipal principal, boolean holdWrites) {
+            next = new FakeEmitter(holdWrites);
+            subscribe(principal);
+            return next;
+        }
+
+        @Override
+        SseEmitter createEmitter() {
+            return next;
+        }
+    }
+
+    // Records each event as its name (or comment), with the change type in
+    // place of the name for change events
+    static class FakeEmitter extends SseEmitter {
+
+        private static final Pattern NAME = Pattern.compile("^(?:event:(\\w+)|:(\\w+))", Pattern.MULTILINE);
+
+        private final List<String> types = new CopyOnWriteArrayList<>();
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private final CountDownLatch writeHeld = new CountDownLatch(1);
+        private final CountDownLatch release;
+
+        FakeEmitter(boolean holdWrites) {
+            release = holdWrites ? new CountDownLatch(1) : null;
+        }
+
+        void releaseWrites() {
+            release.countDown();
+        }
+
+        void awaitHeldWrite() throws InterruptedException {
+            assertThat(writeHeld.await(WAIT_SECONDS, TimeUnit.SECONDS)).as("write started").isTrue();
+        }
+
+        void awaitEvents(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(WAIT_SECONDS);
+            while (types.size() < count && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertThat(types).hasSizeGreaterThanOrEqualTo(count);
+        }
+
+        void awaitCompleted() throws InterruptedException {
+            assertThat(completed.await(WAIT_SECONDS, TimeUnit.SECONDS)).as("completed").isTrue();
+        }
+
+        boolean isCompleted() {
+            return completed.getCount() == 0;
+        }
+
+        List<String> types() {
+            return List.copyOf(types);
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            Set<ResponseBodyEmitter.DataWithMediaType> parts = builder.build();
+            CountDownLatch held = release;
+            if (held != null) {
+                writeHeld.countDown();
+                try {
+                    if (!held.await(WAIT_SECONDS, TimeUnit.SECONDS)) {
+                        throw new IOException("Write timed out");
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+            }
+            StringBuilder text = new StringBuilder();
+            String type = null;
+            for (ResponseBodyEmitter.DataWithMediaType part : parts) {
+                if (part.getData() instanceof EmployeeChangeDto change) {
+                    type = change.getType().name();
+                } else {
+                    text.append(part.getData());
+                }
+            }
+            if (type == null) {
+                Matcher name = NAME.matcher(text);
+                assertThat(name.find()).as(text.toString()).isTrue();
+                type = name.group(1) != null ? name.group(1) : name.group(2);
+            }
+            types.add(type);
+        }
+
+        @Override
+        public void complete() {
+            completed.countDown();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package net.javaguides.ems.service.implementation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.javaguides.ems.entity.User;
+import net.javaguides.ems.exception.ServiceBusyException;
+import net.javaguides.ems.repository.UserRepository;
+import net.javaguides.ems.security.TokenRevocationRegistry;
+
+// Signup and signin around the hashing pool: which thread touches the
+// database, what a full pool answers, and the rehash after a login. BCrypt
+// runs at a low cost to keep the tests fast.
+class UserServiceTests {
+
+    private static final String DATABASE_THREAD = "test-db-";
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    // Threads the repository was called on
+    private final List<String> databaseThreads = new CopyOnWriteArrayList<>();
+    private PasswordHashingServiceImplementation hashing;
+
+    @AfterEach
+    void tearDown() {
+        hashing.shutdown();
+    }
+
+    @Test
+    void theNewUserIsSavedOffTheHashingPool() throws Exception {
+        hashing = hashing(new BCryptPasswordEncoder(4), 4, 100);
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> {
+            databaseThreads.add(Thread.currentThread().getName());
+            User user = invocation.getArgument(0);
+            user.setId(1L);
+            return user;
+        });
+
+        Optional<User> user = service().signup("alice", "secret").get(5, TimeUnit.SECONDS);
+
+        assertThat(user).isPresent();
+        assertThat(databaseThreads).hasSize(1).allMatch(name -> name.startsWith(DATABASE_THREAD));
+    }
+
+    @Test
+    void aFullHashingPoolIsAnsweredWith503() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder slowEncoder = mock(PasswordEncoder.class);
+        when(slowEncoder.encode(anyString())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return "hash";
+        });
+        // One thread and no queue: the first signup takes the pool
+        hashing = hashing(slowEncoder, 4, 0);
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        UserServiceImplementation service = service();
+
+        CompletableFuture<Optional<User>> first = service.signup("alice", "secret");
+        Throwable busy = catchThrowable(() -> service.signup("bob", "secret"));
+
+        assertThat(busy).isInstanceOf(ServiceBusyException.class);
+        ResponseStatus status = AnnotatedElementUtils.findMergedAnnotation(busy.getClass(), ResponseStatus.class);
+        assertThat(status.code()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        release.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS)).isPresent();
+    }
+
+    @Test
+    void aLoginMovesTheHashToTheConfiguredCost() throws Exception {
+        hashing = hashing(new BCryptPasswordEncoder(5), 5, 100);
+        String oldHash = new BCryptPasswordEncoder(4).encode("secret");
+        User user = new User("alice", oldHash);
+        user.setId(1L);
+        when(userRepository.findByUserName("alice")).thenReturn(Optional.of(user));
+        when(userRepository.findById(1L)).thenAnswer(invocation -> {
+            databaseThreads.add(Thread.currentThread().getName());
+            return Optional.of(user);
+        });
+        UserServiceImplementation service = service();
+
+        // A wrong password changes nothing
+        assertThat(service.signin("alice", "wrong").get(5, TimeUnit.SECONDS)).isEmpty();
+        assertThat(user.getPasswordHash()).isEqualTo(oldHash);
+
+        assertThat(service.signin("alice", "secret").get(5, TimeUnit.SECONDS)).contains(user);
+        await().atMost(Duration.ofSeconds(5)).until(() -> user.getPasswordHash().startsWith("$2a$05$"));
+        assertThat(new BCryptPasswordEncoder().matches("secret", user.getPasswordHash())).isTrue();
+        assertThat(databaseThreads).hasSize(1).allMatch(name -> name.startsWith(DATABASE_THREAD));
+
+        // At the configured cost already: no second rehash
+        assertThat(service.signin("alice", "secret").get(5, TimeUnit.SECONDS)).contains(user);
+        assertThat(databaseThreads).hasSize(1);
+    }
+
+    private PasswordHashingServiceImplementation hashing(PasswordEncoder encoder, int strength, int queueCapacity) {
+        return new PasswordHashingServiceImplementation(encoder, new SimpleMeterRegistry(), strength, 1,
+            queueCapacity);
+    }
+
+    private UserServiceImplementation service() {
+        return new UserServiceImplementation(userRepository, hashing, new BCryptPasswordEncoder(4),
+            new TransactionTemplate(mock(PlatformTransactionManager.class)), mock(TokenRevocationRegistry.class),
+            new SimpleAsyncTaskExecutor(DATABASE_THREAD));
+    }
+}
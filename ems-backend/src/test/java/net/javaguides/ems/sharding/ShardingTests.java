@@ -0,0 +1,220 @@
+package net.javaguides.ems.sharding;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.persistence.EntityManagerFactory;
+import net.javaguides.ems.TestDatabases;
+import net.javaguides.ems.dto.EmployeeDto;
+import net.javaguides.ems.dto.EmployeeField;
+import net.javaguides.ems.exception.ServiceBusyException;
+import net.javaguides.ems.repository.EmployeeJdbcRepository;
+import net.javaguides.ems.repository.EmployeeProjectionRepository;
+
+// Three H2 databases wired the way ShardingConfig wires the real ones:
+// shard-0 is the main database (db/migration), shard-1 and shard-2 only
+// have the employees table (db/shard). The repositories run on whichever
+// shard ShardContext names, as they do under ShardedEmployeeService.
+class ShardingTests {
+
+    private static final String MAIN = ShardRoutingDataSource.MAIN_SHARD;
+
+    private final Map<String, JdbcTemplate> databases = new LinkedHashMap<>();
+    private final Set<Long> usedUserIds = new HashSet<>();
+    private ShardRoutingDataSource routing;
+    private ShardDirectory directory;
+    private ShardRebalancer rebalancer;
+    private EmployeeJdbcRepository jdbcRepository;
+    private EmployeeProjectionRepository projectionRepository;
+
+    @BeforeEach
+    void setUp() {
+        Map<String, DataSource> shards = new LinkedHashMap<>();
+        for (int i = 0; i < 3; i++) {
+            String name = "shard-" + i;
+            DataSource dataSource = TestDatabases.migratedH2(name,
+                name.equals(MAIN) ? "classpath:db/migration" : "classpath:db/shard");
+            shards.put(name, dataSource);
+            databases.put(name, new JdbcTemplate(dataSource));
+        }
+        routing = new ShardRoutingDataSource(shards);
+
+        // No directory cache and no drain wait: every step is seen at once
+        directory = new ShardDirectory(shards.get(MAIN), new ConsistentHashRing(List.copyOf(shards.keySet()), 128),
+            0, 1000);
+        EmployeeEmailRegistry registry = new EmployeeEmailRegistry(shards.get(MAIN), 10);
+        registry.backfill();
+        rebalancer = new ShardRebalancer(directory, routing, 0, 10);
+
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        beans.addBean("employeeEmailRegistry", registry);
+        NamedParameterJdbcTemplate named = new NamedParameterJdbcTemplate(routing);
+        jdbcRepository = new EmployeeJdbcRepository(named.getJdbcTemplate(), named,
+            mock(EntityManagerFactory.class, RETURNS_DEEP_STUBS), beans.getBeanProvider(EmployeeEmailRegistry.class));
+        projectionRepository = new EmployeeProjectionRepository(named);
+    }
+
+    @AfterEach
+    void tearDown() {
+        databases.values().forEach(db -> db.execute("SHUTDOWN"));
+    }
+
+    @Test
+    void employeesAreWrittenToTheShardOfTheirUser() {
+        long alice = userPlacedOn("shard-1");
+        long bob = userPlacedOn("shard-2");
+
+        List<Long> aliceIds = insert(alice, "a1@example.com", "a2@example.com");
+        List<Long> bobIds = insert(bob, "b1@example.com");
+
+        assertThat(countOn("shard-1", alice)).isEqualTo(2);
+        assertThat(countOn("shard-2", bob)).isEqualTo(1);
+        assertThat(countOn(MAIN, alice) + countOn("shard-2", alice) + countOn(MAIN, bob)).isZero();
+        // Ids come from one sequence, so they are unique over all shards
+        assertThat(aliceIds).doesNotContainAnyElementsOf(bobIds);
+    }
+
+    @Test
+    void emailsAreUniqueAcrossShards() {
+        long alice = userPlacedOn("shard-1");
+        long bob = userPlacedOn("shard-2");
+        List<Long> aliceIds = insert(alice, "same@example.com");
+
+        assertThat(jdbcRepository.findEmailOwners(List.of("same@example.com")))
+            .containsEntry("same@example.com", aliceIds.get(0));
+        assertThatThrownBy(() -> insert(bob, "same@example.com"))
+            .isInstanceOf(DataIntegrityViolationException.class);
+        assertThat(countOn("shard-2", bob)).isZero();
+
+        // Deleting the employee frees the email
+        ShardContext.call(directory.shardForWrite(alice), () -> jdbcRepository.deleteOwned(alice, aliceIds));
+        insert(bob, "same@example.com");
+        assertThat(countOn("shard-2", bob)).isEqualTo(1);
+    }
+
+    @Test
+    void anEmailChangeIsMovedBackWhenTheShardTransactionRollsBack() {
+        long alice = userPlacedOn("shard-1");
+        long bob = userPlacedOn("shard-2");
+        Long id = insert(alice, "old@example.com").get(0);
+        TransactionTemplate shardTransaction = new TransactionTemplate(new DataSourceTransactionManager(routing));
+
+        ShardContext.call(directory.shardForWrite(alice), () -> shardTransaction.execute(status -> {
+            jdbcRepository.updateOwned(id, alice, new EmployeeDto(id, "First", "Last", "new@example.com"), null, 2L);
+            // Anything failing after the update, e.g. the commit
+            status.setRollbackOnly();
+            return null;
+        }));
+
+        assertThat(jdbcRepository.findEmailOwners(List.of("old@example.com", "new@example.com")))
+            .containsOnlyKeys("old@example.com")
+            .containsEntry("old@example.com", id);
+        assertThatThrownBy(() -> insert(bob, "old@example.com"))
+            .isInstanceOf(DataIntegrityViolationException.class);
+
+        // Committed, the claim moves with the row
+        ShardContext.call(directory.shardForWrite(alice), () -> shardTransaction.execute(status -> {
+            jdbcRepository.batchUpdate(List.of(new EmployeeDto(id, "First", "Last", "new@example.com")), alice, 3L);
+            return null;
+        }));
+        assertThat(jdbcRepository.findEmailOwners(List.of("old@example.com", "new@example.com")))
+            .containsOnlyKeys("new@example.com");
+        insert(bob, "old@example.com");
+        assertThat(countOn("shard-2", bob)).isEqualTo(1);
+    }
+
+    @Test
+    void movingAUserKeepsItsEmployees() {
+        long alice = userPlacedOn("shard-1");
+        List<Long> ids = insert(alice, "a1@example.com", "a2@example.com", "a3@example.com");
+
+        List<ShardRebalancer.Move> moves = rebalancer.moveUser(alice, "shard-2");
+
+        assertThat(moves).singleElement().extracting(ShardRebalancer.Move::rows).isEqualTo(3);
+        assertThat(directory.shardFor(alice)).isEqualTo("shard-2");
+        assertThat(countOn("shard-1", alice)).isZero();
+        List<EmployeeDto> employees = ShardContext.call(directory.shardFor(alice),
+            () -> projectionRepository.findAllByUserId(alice, EnumSet.allOf(EmployeeField.class)));
+        assertThat(employees).extracting(EmployeeDto::getId).containsExactlyElementsOf(ids);
+        // The emails still belong to the same employees
+        assertThat(jdbcRepository.findEmailOwners(List.of("a1@example.com")))
+            .containsEntry("a1@example.com", ids.get(0));
+    }
+
+    @Test
+    void writesAreRefusedWhileAUserIsMoving() {
+        long alice = userPlacedOn("shard-1");
+        assertThat(directory.shardFor(alice)).isEqualTo("shard-1");
+        assertThat(directory.startMove(alice, "shard-1", "shard-2")).isTrue();
+
+        assertThatThrownBy(() -> directory.shardForWrite(alice)).isInstanceOf(ServiceBusyException.class);
+        assertThat(directory.shardFor(alice)).isEqualTo("shard-1");
+
+        directory.cancelMove(alice);
+        assertThat(directory.shardForWrite(alice)).isEqualTo("shard-1");
+    }
+
+    @Test
+    void usersWithEmployeesFromBeforeShardingStayOnTheMainShardUntilRebalanced() {
+        long carol = userPlacedOn("shard-2");
+        JdbcTemplate main = databases.get(MAIN);
+        main.update("INSERT INTO users (id, user_name, password_hash) VALUES (?, 'carol', 'hash')", carol);
+        main.update("INSERT INTO employees (id, first_name, email_id, user_id) VALUES (1, 'Old', 'old@example.com', ?)",
+            carol);
+        new EmployeeEmailRegistry(main.getDataSource(), 10).backfill();
+
+        assertThat(directory.shardFor(carol)).isEqualTo(MAIN);
+        assertThat(jdbcRepository.findEmailOwners(List.of("old@example.com"))).containsEntry("old@example.com", 1L);
+        // New ids start after the ones already used on shard-0
+        assertThat(insert(carol, "new@example.com")).allMatch(id -> id > 1);
+
+        assertThat(rebalancer.rebalance(10)).singleElement().extracting(ShardRebalancer.Move::to).isEqualTo("shard-2");
+        assertThat(countOn("shard-2", carol)).isEqualTo(2);
+        assertThat(countOn(MAIN, carol)).isZero();
+    }
+
+    private List<Long> insert(long userId, String... emails) {
+        List<EmployeeDto> employees = new ArrayList<>();
+        for (String email : emails) {
+            employees.add(new EmployeeDto(null, "First", "Last", email));
+        }
+        return ShardContext.call(directory.shardForWrite(userId),
+            () -> jdbcRepository.batchInsert(employees, userId, 1L));
+    }
+
+    private long countOn(String shard, long userId) {
+        return databases.get(shard).queryForObject("SELECT COUNT(*) FROM employees WHERE user_id = ?", Long.class,
+            userId);
+    }
+
+    // A user id the hash ring puts on the shard, not used by the test yet
+    private long userPlacedOn(String shard) {
+        for (long userId = 1; ; userId++) {
+            if (directory.getRing().shardFor(userId).equals(shard) && usedUserIds.add(userId)) {
+                return userId;
+            }
+        }
+    }
+}
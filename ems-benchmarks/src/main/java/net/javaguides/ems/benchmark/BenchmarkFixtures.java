@@ -0,0 +1,43 @@
+package net.javaguides.ems.benchmark;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import org.springframework.test.util.ReflectionTestUtils;
+
+import net.javaguides.ems.dto.EmployeeDto;
+import net.javaguides.ems.security.JwtTokenUtil;
+
+// Builds the objects under test the way Spring would, without starting a
+// context: @Value fields are set by reflection, then init() runs.
+final class BenchmarkFixtures {
+
+    // 64 bytes, the minimum key size for HS512
+    static final String JWT_SECRET = Base64.getEncoder()
+        .encodeToString("ems-benchmark-secret-ems-benchmark-secret-ems-benchmark-secret-!!".getBytes());
+
+    private BenchmarkFixtures() {
+    }
+
+    static JwtTokenUtil jwtTokenUtil() {
+        JwtTokenUtil jwtTokenUtil = new JwtTokenUtil();
+        ReflectionTestUtils.setField(jwtTokenUtil, "jwtSecret", JWT_SECRET);
+        ReflectionTestUtils.setField(jwtTokenUtil, "jwtExpirationMs", 86_400_000);
+        ReflectionTestUtils.setField(jwtTokenUtil, "jwtRefreshExpirationMs", 1_209_600_000L);
+        ReflectionTestUtils.setField(jwtTokenUtil, "cacheMaxEntries", 10_000);
+        jwtTokenUtil.init();
+        return jwtTokenUtil;
+    }
+
+    static List<EmployeeDto> employees(int count) {
+        List<EmployeeDto> employees = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            EmployeeDto employee = new EmployeeDto((long) i, "First" + i, "Last" + i, "employee" + i + "@example.com");
+            employee.setUserId(1L);
+            employee.setVersion(0L);
+            employees.add(employee);
+        }
+        return employees;
+    }
+}
@@ -0,0 +1,57 @@
+package net.javaguides.ems.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import net.javaguides.ems.dto.EmployeeDto;
+
+// Serialising the employee list as GET /api/employees does. The mapper is
+// built with Spring's defaults, like the one Boot configures.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EmployeeJsonBenchmark {
+
+    @Param({"100", "10000", "100000"})
+    private int size;
+
+    private ObjectMapper objectMapper;
+    private List<EmployeeDto> employees;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        employees = BenchmarkFixtures.employees(size);
+    }
+
+    // Written straight to a stream, as the message converter does
+    @Benchmark
+    public void writeToStream() throws IOException {
+        objectMapper.writeValue(OutputStream.nullOutputStream(), employees);
+    }
+
+    @Benchmark
+    public byte[] writeAsBytes() throws IOException {
+        return objectMapper.writeValueAsBytes(employees);
+    }
+}
@@ -0,0 +1,52 @@
+package net.javaguides.ems.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.javaguides.ems.dto.EmployeeDto;
+import net.javaguides.ems.entity.Employee;
+import net.javaguides.ems.entity.User;
+import net.javaguides.ems.mapper.EmployeeMapper;
+
+// Entity <-> DTO conversion, done once per employee on every read and write
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EmployeeMapperBenchmark {
+
+    private Employee employee;
+    private EmployeeDto employeeDto;
+    private User user;
+
+    @Setup
+    public void setUp() {
+        user = new User("benchmark", "hash");
+        user.setId(1L);
+        employeeDto = BenchmarkFixtures.employees(1).get(0);
+        employee = EmployeeMapper.mapToEmployee(employeeDto, user);
+        employee.setVersion(0L);
+    }
+
+    @Benchmark
+    public EmployeeDto mapToEmployeeDto() {
+        return EmployeeMapper.mapToEmployeeDto(employee);
+    }
+
+    @Benchmark
+    public Employee mapToEmployee() {
+        return EmployeeMapper.mapToEmployee(employeeDto, user);
+    }
+}
@@ -0,0 +1,114 @@
+package net.javaguides.ems.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.runner.IterationType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import net.javaguides.ems.dto.EmployeeDto;
+
+// The employee list in each response encoding: plain JSON, gzipped JSON
+// (server.compression), CBOR and Smile. write is the server's cost,
+// read the client's. The encoded size of each combination is reported next
+// to the timings, as write:bytes and read:bytes (PayloadSize), e.g.
+//   java -jar ems-benchmarks/target/benchmarks.jar EmployeePayloadBenchmark
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EmployeePayloadBenchmark {
+
+    private static final TypeReference<List<EmployeeDto>> EMPLOYEE_LIST = new TypeReference<>() { };
+
+    @Param({"json", "json-gzip", "cbor", "smile"})
+    private String encoding;
+
+    @Param({"100", "10000"})
+    private int size;
+
+    private ObjectMapper objectMapper;
+    private boolean gzip;
+    private List<EmployeeDto> employees;
+    private byte[] payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        // Built like the converters in MessageConverterConfig
+        objectMapper = switch (encoding) {
+            case "cbor" -> Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build();
+            case "smile" -> Jackson2ObjectMapperBuilder.json().factory(new SmileFactory()).build();
+            default -> Jackson2ObjectMapperBuilder.json().build();
+        };
+        gzip = encoding.equals("json-gzip");
+        employees = BenchmarkFixtures.employees(size);
+        payload = encode();
+    }
+
+    @Benchmark
+    public byte[] write(PayloadSize payloadSize) throws IOException {
+        return encode();
+    }
+
+    @Benchmark
+    public List<EmployeeDto> read(PayloadSize payloadSize) throws IOException {
+        InputStream in = new ByteArrayInputStream(payload);
+        try (InputStream source = gzip ? new GZIPInputStream(in) : in) {
+            return objectMapper.readValue(source, EMPLOYEE_LIST);
+        }
+    }
+
+    private byte[] encode() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = gzip ? new GZIPOutputStream(bytes) : bytes) {
+            objectMapper.writeValue(out, employees);
+        }
+        return bytes.toByteArray();
+    }
+
+    // A secondary result instead of output from the setup: it ends up in the
+    // results table (and -rf json) with the timings. JMH adds EVENTS counters
+    // up over the measurement iterations, so the size is counted in the
+    // first one only and the total is the size itself.
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class PayloadSize {
+        public long bytes;
+        private boolean counted;
+
+        @Setup(Level.Iteration)
+        public void count(EmployeePayloadBenchmark benchmark, IterationParams iteration) {
+            boolean first = iteration.getType() == IterationType.MEASUREMENT && !counted;
+            bytes = first ? benchmark.payload.length : 0;
+            counted |= first;
+        }
+    }
+}
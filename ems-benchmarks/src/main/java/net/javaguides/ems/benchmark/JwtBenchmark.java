@@ -0,0 +1,54 @@
+package net.javaguides.ems.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.javaguides.ems.security.JwtTokenUtil;
+
+// Token signing and checking. validateToken is what every request pays:
+// after the first call the token is answered from the verified-token
+// cache. parseAndVerify always checks the HS512 signature, which is the
+// cost of a token the cache has not seen yet.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtBenchmark {
+
+    private JwtTokenUtil jwtTokenUtil;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtTokenUtil = BenchmarkFixtures.jwtTokenUtil();
+        token = jwtTokenUtil.generateToken("benchmark", 1L, List.of("ROLE_USER"));
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtTokenUtil.generateToken("benchmark", 1L, List.of("ROLE_USER"));
+    }
+
+    @Benchmark
+    public boolean validateToken() {
+        return jwtTokenUtil.validateToken(token);
+    }
+
+    @Benchmark
+    public String parseAndVerify() {
+        return jwtTokenUtil.getUsernameFromToken(token);
+    }
+}
@@ -165,6 +165,7 @@ function signup(username, password) {
         .then(data => {
             if (data.token) {
                 localStorage.setItem('jwtToken', data.token);
+                localStorage.setItem('refreshToken', data.refreshToken);
                 localStorage.setItem('loggedInUser', username);
                 alert('Signup successful. Redirecting...');
                 window.location.href = 'mainPage.html';
@@ -189,11 +190,16 @@ function signin(username, password) {
     })
         .then(response => {
             if (response.ok) return response.json();
+            if (response.status === 429) {
+                const retryAfter = response.headers.get('Retry-After');
+                throw new Error('Too many login attempts. Please try again in ' + (retryAfter || 'a few') + ' seconds.');
+            }
             throw new Error('Invalid username or password');
         })
         .then(data => {
             if (data.token) {
                 localStorage.setItem('jwtToken', data.token);
+                localStorage.setItem('refreshToken', data.refreshToken);
                 localStorage.setItem('loggedInUser', username);
                 alert('Login successful. Redirecting...');
                 window.location.href = 'mainPage.html';
@@ -1,10 +1,17 @@
 // API Configuration
 const API_BASE_URL = 'https://employee-management-i4e5.onrender.com/api/employees';
+const AUTH_BASE_URL = 'https://employee-management-i4e5.onrender.com/auth';
+const SEARCH_PAGE_SIZE = 100;
+const STREAM_RETRY_MIN_MS = 3000;
+const STREAM_RETRY_MAX_MS = 30000;
 
 // Global State
 let employees = [];
 let currentEmployeeId = null;
 let isEditMode = false;
+let streamRetryMs = STREAM_RETRY_MIN_MS;
+// Where the last sync left off (GET /api/employees/changes)
+let changeToken = null;
 
 // DOM Elements
 const employeeGrid = document.getElementById('employeeGrid');
@@ -30,10 +37,11 @@ document.addEventListener('DOMContentLoaded', () => {
   initializeUserInfo();
 });
 
-// Initialize Application - fetch employees
+// Initialize Application - fetch employees, then follow their changes
 async function initializeApp() {
   showLoading();
   await fetchEmployees();
+  watchEmployeeChanges();
 }
 
 // Setup Event Listeners
@@ -115,23 +123,106 @@ function toggleAccountDetails() {
   }
 }
 
-// Handle logout action
-function handleLogout() {
+// Handle logout action: revoke both tokens on the server, then forget them.
+// The local session ends even if the server cannot be reached.
+async function handleLogout() {
+  try {
+    await fetch(`${AUTH_BASE_URL}/logout`, {
+      method: 'POST',
+      headers: {
+        'Content-Type': 'application/json',
+        'Authorization': 'Bearer ' + localStorage.getItem('jwtToken'),
+      },
+      body: JSON.stringify({ refreshToken: localStorage.getItem('refreshToken') }),
+    });
+  } catch (error) {
+    console.error('Error logging out:', error);
+  }
+  endSession();
+}
+
+function endSession() {
+  localStorage.removeItem('jwtToken');
+  localStorage.removeItem('refreshToken');
   localStorage.removeItem('loggedInUser');
   window.location.href = 'index.html';
 }
 
 // ------------ API Functions ------------
 
+// Sends a request with the access token. Access tokens are short-lived, so
+// a 401 means "renew": the refresh token is traded for a new pair and the
+// request is sent once more. If that fails too, the session is over.
+async function authFetch(url, options = {}) {
+  const send = () => fetch(url, {
+    ...options,
+    headers: {
+      ...options.headers,
+      'Authorization': 'Bearer ' + localStorage.getItem('jwtToken'),
+    },
+  });
+  const response = await send();
+  if (response.status !== 401) return response;
+  if (!(await refreshTokens())) {
+    endSession();
+    throw new Error('Session expired');
+  }
+  return send();
+}
+
+// A refresh token can only be used once, so requests that fail together
+// wait for the same refresh call
+let pendingRefresh = null;
+
+function refreshTokens() {
+  if (!pendingRefresh) {
+    pendingRefresh = requestNewTokens().finally(() => { pendingRefresh = null; });
+  }
+  return pendingRefresh;
+}
+
+async function requestNewTokens() {
+  const refreshToken = localStorage.getItem('refreshToken');
+  if (!refreshToken) return false;
+  const response = await fetch(`${AUTH_BASE_URL}/refresh`, {
+    method: 'POST',
+    headers: { 'Content-Type': 'application/json' },
+    body: JSON.stringify({ refreshToken }),
+  });
+  if (!response.ok) return false;
+  const data = await response.json();
+  localStorage.setItem('jwtToken', data.token);
+  localStorage.setItem('refreshToken', data.refreshToken);
+  return true;
+}
+
+// Brings the list up to date through GET /api/employees/changes: the whole
+// list the first time, then only what changed since the last call. A 410
+// means the server no longer has those changes, so the list is loaded in
+// full again.
 async function fetchEmployees() {
   try {
-    const response = await fetch(API_BASE_URL, {
-      headers: {
-        'Authorization': 'Bearer ' + localStorage.getItem('jwtToken'),
-      },
-    });
-    if (!response.ok) throw new Error(`HTTP error! status: ${response.status}`);
-    employees = await response.json();
+    for (;;) {
+      const url = changeToken
+        ? `${API_BASE_URL}/changes?since=${encodeURIComponent(changeToken)}`
+        : `${API_BASE_URL}/changes`;
+      const response = await authFetch(url);
+      if (response.status === 410 && changeToken) {
+        changeToken = null;
+        continue;
+      }
+      if (!response.ok) throw new Error(`HTTP error! status: ${response.status}`);
+      const changes = await response.json();
+      if (changes.full) {
+        employees = changes.changed;
+      } else {
+        const deleted = new Set(changes.deleted);
+        employees = employees.filter(emp => !deleted.has(emp.id));
+        changes.changed.forEach(upsertEmployee);
+      }
+      changeToken = changes.token;
+      if (!changes.hasMore) break;
+    }
     displayEmployees(employees);
     hideLoading();
   } catch (error) {
@@ -143,13 +234,118 @@ async function fetchEmployees() {
 }
 
 
+// ------------ Live Updates ------------
+
+// Follows GET /api/employees/stream so that changes made in other tabs or
+// sessions show up without reloading or polling. EventSource cannot send
+// the Authorization header, so the stream is read with fetch. Changes made
+// while the stream was down are not replayed: after a break the list is
+// synced once before the stream is opened again (only what changed), and
+// each failed attempt waits longer than the one before.
+async function watchEmployeeChanges() {
+  let reloadFirst = false;
+  for (;;) {
+    try {
+      if (reloadFirst) await fetchEmployees();
+      const response = await authFetch(`${API_BASE_URL}/stream`, {
+        headers: { 'Accept': 'text/event-stream' },
+      });
+      if (!response.ok) throw new Error(`HTTP error! status: ${response.status}`);
+      await readServerSentEvents(response.body, handleStreamEvent);
+    } catch (error) {
+      console.warn('Employee updates interrupted:', error);
+    }
+    reloadFirst = true;
+    await sleep(streamRetryMs + Math.random() * 1000);
+    streamRetryMs = Math.min(streamRetryMs * 2, STREAM_RETRY_MAX_MS);
+  }
+}
+
+// Splits a text/event-stream body into events and hands each one with data
+// to onEvent(name, data, retry). Comment lines (the server's heartbeats)
+// are skipped.
+async function readServerSentEvents(body, onEvent) {
+  const reader = body.pipeThrough(new TextDecoderStream()).getReader();
+  let buffer = '';
+  for (;;) {
+    const { value, done } = await reader.read();
+    if (done) return;
+    buffer += value.replace(/\r\n?/g, '\n');
+    let end;
+    while ((end = buffer.indexOf('\n\n')) !== -1) {
+      const block = buffer.slice(0, end);
+      buffer = buffer.slice(end + 2);
+      let name = 'message';
+      let retry = null;
+      const data = [];
+      for (const line of block.split('\n')) {
+        if (!line || line.startsWith(':')) continue;
+        const colon = line.indexOf(':');
+        const field = colon === -1 ? line : line.slice(0, colon);
+        let fieldValue = colon === -1 ? '' : line.slice(colon + 1);
+        if (fieldValue.startsWith(' ')) fieldValue = fieldValue.slice(1);
+        if (field === 'event') name = fieldValue;
+        else if (field === 'data') data.push(fieldValue);
+        else if (field === 'retry') retry = Number(fieldValue);
+      }
+      if (data.length) onEvent(name, data.join('\n'), retry);
+    }
+  }
+}
+
+function handleStreamEvent(name, data, retry) {
+  if (name === 'ready') {
+    // Connected: the next break starts over with the server's retry delay
+    streamRetryMs = retry || STREAM_RETRY_MIN_MS;
+    return;
+  }
+  if (name !== 'change') return;
+  const change = JSON.parse(data);
+  switch (change.type) {
+    case 'CREATED':
+    case 'UPDATED':
+      change.employees.forEach(upsertEmployee);
+      break;
+    case 'DELETED': {
+      const deleted = new Set(change.ids);
+      employees = employees.filter(emp => !deleted.has(emp.id));
+      break;
+    }
+    default:
+      // RESYNC: too much changed, or this connection fell behind
+      fetchEmployees();
+      return;
+  }
+  // Search results stay on screen; the list is shown again when the search
+  // is cleared
+  if (!searchInput.value.trim()) displayEmployees(employees);
+}
+
+// Our own changes come back on the stream too, so replace rather than add
+function upsertEmployee(employee) {
+  const index = employees.findIndex(emp => emp.id === employee.id);
+  if (index === -1) {
+    employees.push(employee);
+    return;
+  }
+  // A copy without a version keeps the one already known, so the next edit
+  // still sends If-Match: at worst a stale one, answered with 412 and a
+  // reload, never a silent overwrite
+  const known = employees[index].version;
+  employees[index] = employee.version == null && known != null ? { ...employee, version: known } : employee;
+}
+
+function sleep(ms) {
+  return new Promise(resolve => setTimeout(resolve, ms));
+}
+
+
 async function createEmployee(employeeData) {
   try {
-    const response = await fetch(API_BASE_URL, {
+    const response = await authFetch(API_BASE_URL, {
       method: 'POST',
       headers: {
         'Content-Type': 'application/json',
-        'Authorization': 'Bearer ' + localStorage.getItem('jwtToken'),
       },
       body: JSON.stringify(employeeData),
     });
@@ -158,7 +354,7 @@ async function createEmployee(employeeData) {
       throw new Error(errorData || `HTTP error! status: ${response.status}`);
     }
     const newEmployee = await response.json();
-    employees.push(newEmployee);
+    upsertEmployee(newEmployee);
     displayEmployees(employees);
     showToast('Employee added successfully!', 'success');
     return newEmployee;
@@ -172,14 +368,15 @@ async function createEmployee(employeeData) {
 
 async function updateEmployee(id, employeeData) {
   try {
-    const response = await fetch(`${API_BASE_URL}/${id}`, {
+    const response = await authFetch(`${API_BASE_URL}/${id}`, {
       method: 'PUT',
       headers: {
         'Content-Type': 'application/json',
-        'Authorization': 'Bearer ' + localStorage.getItem('jwtToken'),
+        ...ifMatchHeader(id),
       },
       body: JSON.stringify(employeeData),
     });
+    if (response.status === 412) return handleStaleEmployee();
     if (!response.ok) {
       const errorData = await response.text();
       throw new Error(errorData || `HTTP error! status: ${response.status}`);
@@ -200,12 +397,13 @@ async function updateEmployee(id, employeeData) {
 
 async function deleteEmployee(id) {
   try {
-    const response = await fetch(`${API_BASE_URL}/${id}`, {
+    const response = await authFetch(`${API_BASE_URL}/${id}`, {
       method: 'DELETE',
       headers: {
-        'Authorization': 'Bearer ' + localStorage.getItem('jwtToken'),
+        ...ifMatchHeader(id),
       },
     });
+    if (response.status === 412) return handleStaleEmployee();
     if (!response.ok) throw new Error(`HTTP error! status: ${response.status}`);
     employees = employees.filter(emp => emp.id !== id);
     displayEmployees(employees);
@@ -218,6 +416,22 @@ async function deleteEmployee(id) {
 }
 
 
+// Sends the version we last saw so the server rejects the change (412) if
+// someone else edited the employee in the meantime
+function ifMatchHeader(id) {
+  const employee = employees.find(emp => emp.id === id);
+  return employee && employee.version != null ? { 'If-Match': `"${employee.version}"` } : {};
+}
+
+async function handleStaleEmployee() {
+  showToast('This employee was changed elsewhere. The list has been reloaded.', 'error');
+  await fetchEmployees();
+  const error = new Error('Employee was modified concurrently');
+  error.stale = true;
+  throw error;
+}
+
+
 // ------------ UI Functions ------------
 
 function displayEmployees(employeeList) {
@@ -353,6 +567,10 @@ async function handleFormSubmit(e) {
     closeEmployeeModal();
   } catch (error) {
     console.error("Error creating/updating employee:", error);
+    if (error.stale) {
+      closeEmployeeModal();
+      return;
+    }
     showToast("Failed to add/update employee. This email is already registered", 'error');
     showFieldError('email', 'This email is already registered');
   } finally {
@@ -437,21 +655,29 @@ async function handleDeleteConfirm() {
 
 // ------------ Search Function ------------
 
-function handleSearch(e) {
-  const searchTerm = e.target.value.toLowerCase().trim();
+// Search runs on the server (prefix match on first name, last name and
+// email) so it does not depend on the full list being loaded in the browser.
+async function handleSearch(e) {
+  const searchTerm = e.target.value.trim();
 
   if (!searchTerm) {
     displayEmployees(employees);
     return;
   }
 
-  const filteredEmployees = employees.filter(employee =>
-    employee.firstName.toLowerCase().includes(searchTerm) ||
-    employee.lastName.toLowerCase().includes(searchTerm) ||
-    employee.email.toLowerCase().includes(searchTerm)
-  );
+  try {
+    const params = new URLSearchParams({ q: searchTerm, limit: SEARCH_PAGE_SIZE });
+    const response = await authFetch(`${API_BASE_URL}/search?${params}`);
+    if (!response.ok) throw new Error(`HTTP error! status: ${response.status}`);
+    const page = await response.json();
 
-  displayEmployees(filteredEmployees);
+    // Ignore a late response if the user has kept typing meanwhile
+    if (searchInput.value.trim() !== searchTerm) return;
+    displayEmployees(page.items);
+  } catch (error) {
+    console.error('Error searching employees:', error);
+    showToast('Search failed. Please try again.', 'error');
+  }
 }
 
 // ------------ Utility Functions ------------
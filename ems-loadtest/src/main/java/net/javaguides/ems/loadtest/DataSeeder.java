@@ -0,0 +1,102 @@
+package net.javaguides.ems.loadtest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import jakarta.persistence.EntityManagerFactory;
+
+// Fills the database with N users x M employees through plain JDBC
+// batches. Going through the API would take far longer than the run
+// itself, and every user shares one BCrypt hash so seeding does not pay
+// for hashing N times.
+final class DataSeeder {
+
+    static final String PASSWORD = "loadtest-password";
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+    private final String passwordHash;
+
+    DataSeeder(JdbcTemplate jdbcTemplate, PasswordEncoder passwordEncoder, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManagerFactory = entityManagerFactory;
+        this.passwordHash = passwordEncoder.encode(PASSWORD);
+    }
+
+    // Replaces all data with a fresh data set and returns the seeded users
+    // with the range of their employee ids
+    List<SeededUser> seed(int users, int employeesPerUser) {
+        jdbcTemplate.update("DELETE FROM employees");
+        jdbcTemplate.update("DELETE FROM users");
+        // Rows were removed behind Hibernate's back
+        entityManagerFactory.getCache().evictAll();
+
+        List<Object[]> userRows = new ArrayList<>(users);
+        for (int u = 0; u < users; u++) {
+            userRows.add(new Object[] {"loaduser" + u, passwordHash});
+        }
+        batchInsert("INSERT INTO users (user_name, password_hash) VALUES (?, ?)", userRows);
+
+        Map<String, Long> userIds = new HashMap<>();
+        jdbcTemplate.query("SELECT id, user_name FROM users",
+            rs -> {
+                userIds.put(rs.getString("user_name"), rs.getLong("id"));
+            });
+
+        List<Object[]> employeeRows = new ArrayList<>(BATCH_SIZE);
+        for (int u = 0; u < users; u++) {
+            long userId = userIds.get("loaduser" + u);
+            for (int e = 0; e < employeesPerUser; e++) {
+                employeeRows.add(new Object[] {"First" + e, "Last" + e, "u" + u + "-e" + e + "@seed.test", userId});
+                if (employeeRows.size() == BATCH_SIZE) {
+                    insertEmployees(employeeRows);
+                    employeeRows.clear();
+                }
+            }
+        }
+        insertEmployees(employeeRows);
+
+        Map<Long, long[]> idRanges = new HashMap<>();
+        jdbcTemplate.query("SELECT user_id, MIN(id) AS min_id, MAX(id) AS max_id FROM employees GROUP BY user_id",
+            rs -> {
+                idRanges.put(rs.getLong("user_id"), new long[] {rs.getLong("min_id"), rs.getLong("max_id")});
+            });
+
+        List<SeededUser> seeded = new ArrayList<>(users);
+        for (int u = 0; u < users; u++) {
+            String userName = "loaduser" + u;
+            long userId = userIds.get(userName);
+            long[] range = idRanges.getOrDefault(userId, new long[] {0, -1});
+            seeded.add(new SeededUser(userName, userId, range[0], range[1]));
+        }
+        return seeded;
+    }
+
+    private void insertEmployees(List<Object[]> rows) {
+        batchInsert("INSERT INTO employees (first_name, last_name, email_id, user_id, version) VALUES (?, ?, ?, ?, 0)",
+            rows);
+    }
+
+    private void batchInsert(String sql, List<Object[]> rows) {
+        for (int start = 0; start < rows.size(); start += BATCH_SIZE) {
+            jdbcTemplate.batchUpdate(sql, rows.subList(start, Math.min(rows.size(), start + BATCH_SIZE)));
+        }
+    }
+
+    // Employees of one user were inserted in one sequence, so their ids are
+    // the contiguous range firstEmployeeId..lastEmployeeId (empty when
+    // last < first)
+    record SeededUser(String userName, long userId, long firstEmployeeId, long lastEmployeeId) {
+
+        boolean hasEmployees() {
+            return lastEmployeeId >= firstEmployeeId;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package net.javaguides.ems.loadtest;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+// Latencies per operation. Each client has its own recorder (no locking
+// on the hot path); they are merged when the run ends.
+final class LatencyRecorder {
+
+    private final Map<Operation, Samples> samples = new EnumMap<>(Operation.class);
+
+    void record(Operation operation, long nanos, boolean success) {
+        samples.computeIfAbsent(operation, key -> new Samples()).add(nanos, success);
+    }
+
+    void mergeInto(LatencyRecorder total) {
+        samples.forEach((operation, own) ->
+            total.samples.computeIfAbsent(operation, key -> new Samples()).addAll(own));
+    }
+
+    Samples get(Operation operation) {
+        return samples.get(operation);
+    }
+
+    static final class Samples {
+        private long[] values = new long[1024];
+        private int size;
+        private long errors;
+        private boolean sorted;
+
+        private void add(long nanos, boolean success) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = nanos;
+            if (!success) {
+                errors++;
+            }
+            sorted = false;
+        }
+
+        private void addAll(Samples other) {
+            if (size + other.size > values.length) {
+                values = Arrays.copyOf(values, Math.max(values.length * 2, size + other.size));
+            }
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+            errors += other.errors;
+            sorted = false;
+        }
+
+        int count() {
+            return size;
+        }
+
+        long errors() {
+            return errors;
+        }
+
+        // Nearest-rank percentile, in nanoseconds
+        long percentile(double percent) {
+            if (size == 0) {
+                return 0;
+            }
+            if (!sorted) {
+                Arrays.sort(values, 0, size);
+                sorted = true;
+            }
+            int rank = (int) Math.ceil(percent / 100.0 * size);
+            return values[Math.max(0, Math.min(size - 1, rank - 1))];
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package net.javaguides.ems.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// One simulated user: signs in, then issues calls picked at random from
+// the configured mix until the deadline. Calls finished before the end of
+// the warm-up are not recorded.
+// Only employees created by this client are deleted, so the seeded rows
+// that get/update pick from always exist.
+final class LoadClient implements Callable<LatencyRecorder> {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final int clientId;
+    private final HttpClient httpClient;
+    private final URI baseUri;
+    private final ObjectMapper objectMapper;
+    private final DataSeeder.SeededUser user;
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+    private final long measureFromNanos;
+    private final long deadlineNanos;
+
+    private final LatencyRecorder recorder = new LatencyRecorder();
+    private final Deque<Long> createdIds = new ArrayDeque<>();
+    private String token;
+    private long created;
+
+    LoadClient(int clientId, HttpClient httpClient, URI baseUri, ObjectMapper objectMapper,
+               DataSeeder.SeededUser user, Map<Operation, Integer> mix, long measureFromNanos, long deadlineNanos) {
+        this.clientId = clientId;
+        this.httpClient = httpClient;
+        this.baseUri = baseUri;
+        this.objectMapper = objectMapper;
+        this.user = user;
+        this.measureFromNanos = measureFromNanos;
+        this.deadlineNanos = deadlineNanos;
+        this.operations = mix.keySet().toArray(new Operation[0]);
+        this.cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += mix.get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    @Override
+    public LatencyRecorder call() throws Exception {
+        signIn();
+        while (System.nanoTime() < deadlineNanos) {
+            Operation operation = pick();
+            if (operation == Operation.DELETE && createdIds.isEmpty()) {
+                operation = Operation.CREATE;
+            }
+            if ((operation == Operation.GET || operation == Operation.UPDATE) && !user.hasEmployees()) {
+                operation = Operation.LIST;
+            }
+            long start = System.nanoTime();
+            boolean success;
+            try {
+                success = execute(operation);
+            } catch (IOException e) {
+                success = false;
+            }
+            long end = System.nanoTime();
+            if (start >= measureFromNanos && end <= deadlineNanos) {
+                recorder.record(operation, end - start, success);
+            }
+        }
+        return recorder;
+    }
+
+    private boolean execute(Operation operation) throws IOException, InterruptedException {
+        switch (operation) {
+            case SIGNIN:
+                return signIn();
+            case LIST:
+                return send(authorized("/api/employees").GET().build());
+            case GET:
+                return send(authorized("/api/employees/" + seededId()).GET().build());
+            case CREATE:
+                return create();
+            case UPDATE:
+                long id = seededId();
+                return send(authorized("/api/employees/" + id)
+                    .header("Content-Type", "application/json")
+                    .PUT(json(Map.of("firstName", "Updated", "lastName", "Client" + clientId,
+                        "email", "u-upd-" + id + "@seed.test")))
+                    .build());
+            case DELETE:
+                return send(authorized("/api/employees/" + createdIds.pop()).DELETE().build());
+            default:
+                throw new IllegalStateException("Unhandled operation " + operation);
+        }
+    }
+
+    private boolean signIn() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(baseUri.resolve("/auth/signin"))
+            .timeout(REQUEST_TIMEOUT)
+            .header("Content-Type", "application/json")
+            .POST(json(Map.of("userName", user.userName(), "password", DataSeeder.PASSWORD)))
+            .build();
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            return false;
+        }
+        token = objectMapper.readTree(response.body()).path("token").asText();
+        return true;
+    }
+
+    private boolean create() throws IOException, InterruptedException {
+        HttpRequest request = authorized("/api/employees")
+            .header("Content-Type", "application/json")
+            .POST(json(Map.of("firstName", "Load", "lastName", "Client" + clientId,
+                "email", "c" + clientId + "-" + (created++) + "@load.test")))
+            .build();
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 201) {
+            return false;
+        }
+        JsonNode body = objectMapper.readTree(response.body());
+        createdIds.push(body.path("id").asLong());
+        return true;
+    }
+
+    private boolean send(HttpRequest request) throws IOException, InterruptedException {
+        // The body is read to the end (and dropped) so its transfer is timed
+        int status = httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        return status >= 200 && status < 300;
+    }
+
+    private HttpRequest.Builder authorized(String path) {
+        return HttpRequest.newBuilder(baseUri.resolve(path))
+            .timeout(REQUEST_TIMEOUT)
+            .header("Authorization", "Bearer " + token);
+    }
+
+    private HttpRequest.BodyPublisher json(Object body) throws IOException {
+        return HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body));
+    }
+
+    private long seededId() {
+        return ThreadLocalRandom.current().nextLong(user.firstEmployeeId(), user.lastEmployeeId() + 1);
+    }
+
+    private Operation pick() {
+        int roll = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (roll < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+}
@@ -0,0 +1,68 @@
+package net.javaguides.ems.loadtest;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Prints throughput and p50/p95/p99/max per endpoint for one run, and
+// optionally appends the same numbers to a CSV file so runs over several
+// data set sizes (or commits) can be compared.
+final class LoadReport {
+
+    private static final String CSV_HEADER =
+        "virtual_threads,users,employees_per_user,clients,endpoint,requests,errors,throughput_per_s,p50_ms,p95_ms,p99_ms,max_ms";
+
+    private LoadReport() {
+    }
+
+    static void print(PrintStream out, LoadTestConfig config, int employeesPerUser, LatencyRecorder total,
+                      double measuredSeconds) {
+        out.printf(Locale.ROOT, "%n=== %d users x %d employees, %d clients, %.0fs, virtual threads %s ===%n",
+            config.users, employeesPerUser, config.clients, measuredSeconds, config.virtualThreads);
+        out.printf(Locale.ROOT, "%-28s %9s %7s %10s %9s %9s %9s %9s%n",
+            "endpoint", "requests", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms");
+        long requests = 0;
+        for (Operation operation : Operation.values()) {
+            LatencyRecorder.Samples samples = total.get(operation);
+            if (samples == null || samples.count() == 0) {
+                continue;
+            }
+            requests += samples.count();
+            out.printf(Locale.ROOT, "%-28s %9d %7d %10.1f %9.2f %9.2f %9.2f %9.2f%n",
+                operation.getEndpoint(), samples.count(), samples.errors(), samples.count() / measuredSeconds,
+                millis(samples.percentile(50)), millis(samples.percentile(95)), millis(samples.percentile(99)),
+                millis(samples.percentile(100)));
+        }
+        out.printf(Locale.ROOT, "%-28s %9d %7s %10.1f%n", "total", requests, "", requests / measuredSeconds);
+    }
+
+    static void appendCsv(Path file, LoadTestConfig config, int employeesPerUser, LatencyRecorder total,
+                          double measuredSeconds) throws IOException {
+        List<String> lines = new ArrayList<>();
+        if (!Files.exists(file)) {
+            lines.add(CSV_HEADER);
+        }
+        for (Operation operation : Operation.values()) {
+            LatencyRecorder.Samples samples = total.get(operation);
+            if (samples == null || samples.count() == 0) {
+                continue;
+            }
+            lines.add(String.format(Locale.ROOT, "%s,%d,%d,%d,%s,%d,%d,%.1f,%.3f,%.3f,%.3f,%.3f",
+                config.virtualThreads, config.users, employeesPerUser, config.clients, operation.getKey(),
+                samples.count(), samples.errors(), samples.count() / measuredSeconds,
+                millis(samples.percentile(50)), millis(samples.percentile(95)), millis(samples.percentile(99)),
+                millis(samples.percentile(100))));
+        }
+        Files.write(file, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
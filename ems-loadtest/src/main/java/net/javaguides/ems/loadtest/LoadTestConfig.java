@@ -0,0 +1,102 @@
+package net.javaguides.ems.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Run after building the module (see its pom.xml), e.g.
+//   java -jar ems-loadtest/target/ems-loadtest.jar --users=20 --employees=100,1000,10000 \
+//        --clients=100 --duration=30s --mix=signin=5,list=20,get=45,create=10,update=15,delete=5
+//
+// Command line options, all in --name=value form:
+//   --users=10                       users to seed
+//   --employees=100,1000,10000       employees per user; one run per value
+//   --clients=50                     concurrent clients
+//   --duration=30s --warmup=10s      measured time and unmeasured warm-up
+//   --mix=signin=5,list=20,get=45,create=10,update=15,delete=5
+//                                    relative weight of each call
+//   --virtual-threads=false          serve requests on virtual threads
+//   --out=results.csv                also append the results as CSV
+final class LoadTestConfig {
+
+    private static final String DEFAULT_MIX = "signin=5,list=20,get=45,create=10,update=15,delete=5";
+
+    final int users;
+    final List<Integer> employeesPerUser;
+    final int clients;
+    final Duration duration;
+    final Duration warmup;
+    final Map<Operation, Integer> mix;
+    final boolean virtualThreads;
+    final Path output;
+
+    private LoadTestConfig(Map<String, String> options) {
+        users = positive(options, "users", "10");
+        employeesPerUser = new ArrayList<>();
+        for (String size : options.getOrDefault("employees", "100,1000,10000").split(",")) {
+            employeesPerUser.add(Integer.parseInt(size.trim()));
+        }
+        clients = positive(options, "clients", "50");
+        duration = duration(options.getOrDefault("duration", "30s"));
+        warmup = duration(options.getOrDefault("warmup", "10s"));
+        mix = mix(options.getOrDefault("mix", DEFAULT_MIX));
+        virtualThreads = Boolean.parseBoolean(options.getOrDefault("virtual-threads", "false"));
+        output = options.containsKey("out") ? Path.of(options.get("out")) : null;
+    }
+
+    static LoadTestConfig parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+            }
+            int split = arg.indexOf('=');
+            options.put(arg.substring(2, split), arg.substring(split + 1));
+        }
+        return new LoadTestConfig(options);
+    }
+
+    private static int positive(Map<String, String> options, String name, String defaultValue) {
+        int value = Integer.parseInt(options.getOrDefault(name, defaultValue));
+        if (value < 1) {
+            throw new IllegalArgumentException("--" + name + " must be at least 1");
+        }
+        return value;
+    }
+
+    // 30s, 2m or 500ms
+    private static Duration duration(String value) {
+        if (value.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        }
+        if (value.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        if (value.endsWith("s")) {
+            return Duration.ofSeconds(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        return Duration.ofSeconds(Long.parseLong(value));
+    }
+
+    private static Map<Operation, Integer> mix(String value) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : value.split(",")) {
+            String[] keyAndWeight = part.split("=");
+            if (keyAndWeight.length != 2) {
+                throw new IllegalArgumentException("Expected name=weight in --mix but got: " + part);
+            }
+            int weight = Integer.parseInt(keyAndWeight[1].trim());
+            if (weight > 0) {
+                weights.put(Operation.fromKey(keyAndWeight[0].trim()), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("--mix must give at least one operation a weight");
+        }
+        return weights;
+    }
+}
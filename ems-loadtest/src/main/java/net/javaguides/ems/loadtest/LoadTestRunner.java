@@ -0,0 +1,79 @@
+package net.javaguides.ems.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.persistence.EntityManagerFactory;
+import net.javaguides.ems.EmsBackendApplication;
+
+// End-to-end load harness. Boots the real application (all filters,
+// controllers, services, JPA and caches) on an in-memory H2 database in
+// MySQL mode, then for every --employees size: reseeds the data, runs the
+// clients for warm-up + duration and prints the latency table.
+// Clients always run on virtual threads so that they are not the limit;
+// --virtual-threads only switches how the server handles requests.
+public final class LoadTestRunner {
+
+    private LoadTestRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = LoadTestConfig.parse(args);
+
+        // loadtest.properties replaces application.properties
+        System.setProperty("spring.config.name", "loadtest");
+        System.setProperty("spring.threads.virtual.enabled", String.valueOf(config.virtualThreads));
+
+        try (ConfigurableApplicationContext context = SpringApplication.run(EmsBackendApplication.class);
+             ExecutorService clientThreads = Executors.newVirtualThreadPerTaskExecutor()) {
+            int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+            URI baseUri = URI.create("http://localhost:" + port);
+            ObjectMapper objectMapper = context.getBean(ObjectMapper.class);
+            DataSeeder seeder = new DataSeeder(context.getBean(JdbcTemplate.class),
+                context.getBean(PasswordEncoder.class), context.getBean(EntityManagerFactory.class));
+            HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(clientThreads)
+                .build();
+
+            for (int employeesPerUser : config.employeesPerUser) {
+                long seedStart = System.nanoTime();
+                List<DataSeeder.SeededUser> users = seeder.seed(config.users, employeesPerUser);
+                System.out.printf("%nSeeded %d users x %d employees in %d ms%n", config.users, employeesPerUser,
+                    (System.nanoTime() - seedStart) / 1_000_000);
+
+                long measureFrom = System.nanoTime() + config.warmup.toNanos();
+                long deadline = measureFrom + config.duration.toNanos();
+                List<Future<LatencyRecorder>> results = new ArrayList<>(config.clients);
+                for (int c = 0; c < config.clients; c++) {
+                    results.add(clientThreads.submit(new LoadClient(c, httpClient, baseUri, objectMapper,
+                        users.get(c % users.size()), config.mix, measureFrom, deadline)));
+                }
+
+                LatencyRecorder total = new LatencyRecorder();
+                for (Future<LatencyRecorder> result : results) {
+                    result.get().mergeInto(total);
+                }
+                double seconds = config.duration.toMillis() / 1000.0;
+                LoadReport.print(System.out, config, employeesPerUser, total, seconds);
+                if (config.output != null) {
+                    LoadReport.appendCsv(config.output, config, employeesPerUser, total, seconds);
+                }
+            }
+        }
+    }
+}
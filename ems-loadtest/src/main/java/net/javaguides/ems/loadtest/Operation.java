@@ -0,0 +1,36 @@
+package net.javaguides.ems.loadtest;
+
+// The calls the load clients make, in report order
+enum Operation {
+    SIGNIN("signin", "POST /auth/signin"),
+    LIST("list", "GET /api/employees"),
+    GET("get", "GET /api/employees/{id}"),
+    CREATE("create", "POST /api/employees"),
+    UPDATE("update", "PUT /api/employees/{id}"),
+    DELETE("delete", "DELETE /api/employees/{id}");
+
+    private final String key;
+    private final String endpoint;
+
+    Operation(String key, String endpoint) {
+        this.key = key;
+        this.endpoint = endpoint;
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    String getEndpoint() {
+        return endpoint;
+    }
+
+    static Operation fromKey(String key) {
+        for (Operation operation : values()) {
+            if (operation.key.equalsIgnoreCase(key)) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation in --mix: " + key);
+    }
+}
@@ -0,0 +1,26 @@
+package net.javaguides.ems.reactive;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Import;
+
+import net.javaguides.ems.security.JwtTokenUtil;
+import net.javaguides.ems.security.TokenRevocationState;
+
+// Non-blocking variant of the employee API: the same routes as
+// ems-backend's EmployeeController, served by WebFlux on a few event loop
+// threads, with R2DBC instead of JDBC. A slow client or a slow query holds
+// no thread while it waits, so thousands of open requests need neither a
+// large thread pool nor one pooled connection each.
+// Only this package is scanned; JwtTokenUtil and TokenRevocationState are
+// shared with ems-backend so tokens are verified (and cached) and revoked
+// the same way.
+@SpringBootApplication
+@Import({JwtTokenUtil.class, TokenRevocationState.class})
+public class EmsReactiveApplication {
+
+	public static void main(String[] args) {
+		SpringApplication.run(EmsReactiveApplication.class, args);
+	}
+
+}
@@ -0,0 +1,109 @@
+package net.javaguides.ems.reactive.controller;
+
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import lombok.AllArgsConstructor;
+import net.javaguides.ems.controller.IfMatch;
+import net.javaguides.ems.dto.EmployeeDto;
+import net.javaguides.ems.dto.EmployeeField;
+import net.javaguides.ems.reactive.service.ReactiveEmployeeService;
+import net.javaguides.ems.security.JwtPrincipal;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// The routes of ems-backend's EmployeeController, with the same parameters,
+// status codes and ETag / If-Match handling. Handlers return Mono/Flux, so
+// the event loop thread is released while the database works; the full
+// list is written to the client row by row as it is read. Invalid
+// parameters throw before anything is subscribed, as in the servlet
+// controller, and are answered by their @ResponseStatus.
+// Search, bulk, export and import stay on ems-backend.
+@AllArgsConstructor
+@RestController
+@RequestMapping("/api/employees")
+public class ReactiveEmployeeController {
+
+    private final ReactiveEmployeeService employeeService;
+
+    @PostMapping
+    public Mono<ResponseEntity<EmployeeDto>> createEmployee(@RequestBody EmployeeDto employeeDto,
+                                                            @AuthenticationPrincipal JwtPrincipal principal) {
+        return employeeService.createEmployee(employeeDto, principal.getId())
+            .map(saved -> withETag(ResponseEntity.status(HttpStatus.CREATED), saved));
+    }
+
+    @GetMapping("{id}")
+    public Mono<ResponseEntity<EmployeeDto>> getEmployeeById(@PathVariable("id") Long employeeId,
+                                                             @RequestParam(value = "fields", required = false) String fields,
+                                                             @AuthenticationPrincipal JwtPrincipal principal) {
+        return employeeService.getEmployeeById(employeeId, principal.getId(), EmployeeField.parse(fields))
+            .map(employee -> withETag(ResponseEntity.ok(), employee));
+    }
+
+    // Without paging parameters the whole list is returned; with
+    // ?limit=..&after=..&sort=id|lastName one page and the next cursor
+    @GetMapping
+    public Mono<ResponseEntity<?>> getAllEmployees(@RequestParam(value = "limit", required = false) Integer limit,
+                                                   @RequestParam(value = "after", required = false) String after,
+                                                   @RequestParam(value = "sort", required = false) String sort,
+                                                   @RequestParam(value = "fields", required = false) String fields,
+                                                   @AuthenticationPrincipal JwtPrincipal principal) {
+        Set<EmployeeField> selected = EmployeeField.parse(fields);
+        if (limit == null && after == null && sort == null) {
+            Flux<EmployeeDto> employees = employeeService.getAllEmployees(principal.getId(), selected);
+            return Mono.just(ResponseEntity.ok(employees));
+        }
+        return employeeService.getEmployeesPage(principal.getId(), after, limit, sort, selected)
+            .<ResponseEntity<?>>map(ResponseEntity::ok);
+    }
+
+    @GetMapping(params = "ids")
+    public Mono<ResponseEntity<Flux<EmployeeDto>>> getEmployeesByIds(@RequestParam("ids") List<Long> employeeIds,
+                                                                     @RequestParam(value = "fields", required = false) String fields,
+                                                                     @AuthenticationPrincipal JwtPrincipal principal) {
+        Flux<EmployeeDto> employees = employeeService.getEmployeesByIds(employeeIds, principal.getId(),
+                                                                        EmployeeField.parse(fields));
+        return Mono.just(ResponseEntity.ok(employees));
+    }
+
+    @PutMapping("{id}")
+    public Mono<ResponseEntity<EmployeeDto>> updateEmployee(@PathVariable("id") Long employeeId,
+                                                            @RequestBody EmployeeDto updatedEmployee,
+                                                            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                            @AuthenticationPrincipal JwtPrincipal principal) {
+        return employeeService.updateEmployee(employeeId, updatedEmployee, principal.getId(), IfMatch.parse(ifMatch))
+            .map(employee -> withETag(ResponseEntity.ok(), employee));
+    }
+
+    @DeleteMapping("{id}")
+    public Mono<ResponseEntity<String>> deleteEmployee(@PathVariable("id") Long employeeId,
+                                                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                       @AuthenticationPrincipal JwtPrincipal principal) {
+        return employeeService.deleteEmployee(employeeId, principal.getId(), IfMatch.parse(ifMatch))
+            .then(Mono.fromSupplier(() -> ResponseEntity.ok("Employee with id " + employeeId + " deleted successfully.")));
+    }
+
+    // The ETag is the row version, so it can be sent back as If-Match
+    private static ResponseEntity<EmployeeDto> withETag(ResponseEntity.BodyBuilder builder, EmployeeDto employee) {
+        if (employee.getVersion() != null) {
+            builder.eTag(String.valueOf(employee.getVersion()));
+        }
+        return builder.body(employee);
+    }
+}
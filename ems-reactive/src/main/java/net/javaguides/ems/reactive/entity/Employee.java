@@ -0,0 +1,49 @@
+package net.javaguides.ems.reactive.entity;
+
+import java.time.Instant;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// The employees table as ems-backend maps it, for Spring Data R2DBC. The
+// owner is kept as a plain user_id: R2DBC has no lazy associations.
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("employees")
+public class Employee {
+    @Id
+    private Long id;
+
+    @Column("first_name")
+    private String firstName;
+
+    @Column("last_name")
+    private String lastName;
+
+    @Column("email_id")
+    private String email;
+
+    @Column("user_id")
+    private Long userId;
+
+    // Starts at 0 on insert, like the rows ems-backend writes
+    @Version
+    private Long version;
+
+    // Delta sync change number and time, kept up to date as ems-backend
+    // does (employee_sync_state)
+    @Column("change_seq")
+    private Long changeSeq;
+
+    @Column("updated_at")
+    private Instant updatedAt;
+}
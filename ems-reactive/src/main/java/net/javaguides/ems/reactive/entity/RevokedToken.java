@@ -0,0 +1,33 @@
+package net.javaguides.ems.reactive.entity;
+
+import java.time.Instant;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// ems-backend's revoked_tokens rows (logouts, used refresh tokens). Only
+// read here: tokens are revoked through ems-backend.
+@Getter
+@Setter
+@NoArgsConstructor
+@Table("revoked_tokens")
+public class RevokedToken {
+    // The token's jti claim
+    @Id
+    @Column("jti")
+    private String id;
+
+    @Column("user_id")
+    private Long userId;
+
+    @Column("expires_at")
+    private Instant expiresAt;
+
+    @Column("revoked_at")
+    private Instant revokedAt;
+}
@@ -0,0 +1,25 @@
+package net.javaguides.ems.reactive.entity;
+
+import java.time.Instant;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// The part of ems-backend's users table that token revocation needs: when
+// the password was last changed or reset
+@Getter
+@Setter
+@NoArgsConstructor
+@Table("users")
+public class UserCredentials {
+    @Id
+    private Long id;
+
+    @Column("credentials_changed_at")
+    private Instant credentialsChangedAt;
+}
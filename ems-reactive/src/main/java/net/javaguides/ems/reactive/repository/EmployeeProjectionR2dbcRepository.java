@@ -0,0 +1,83 @@
+package net.javaguides.ems.reactive.repository;
+
+import java.util.Collection;
+import java.util.Set;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+
+import lombok.AllArgsConstructor;
+import net.javaguides.ems.dto.EmployeeDto;
+import net.javaguides.ems.dto.EmployeeField;
+import net.javaguides.ems.repository.EmployeeProjectionRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// The read queries of ems-backend's EmployeeProjectionRepository, on R2DBC:
+// only the requested columns are selected and rows become DTOs directly,
+// through the same mapper.
+// Rows are emitted as the driver decodes them, so a long list is written
+// to the client while it is still being read.
+@Repository
+@AllArgsConstructor
+public class EmployeeProjectionR2dbcRepository {
+
+    private final DatabaseClient databaseClient;
+
+    public Flux<EmployeeDto> findAllByUserId(Long userId, Set<EmployeeField> fields) {
+        return databaseClient.sql("SELECT " + EmployeeField.columns(fields)
+                + " FROM employees WHERE user_id = :userId ORDER BY id")
+            .bind("userId", userId)
+            .map(row -> EmployeeProjectionRepository.toDto(row::get, fields))
+            .all();
+    }
+
+    public Mono<EmployeeDto> findByIdAndUserId(Long id, Long userId, Set<EmployeeField> fields) {
+        return databaseClient.sql("SELECT " + EmployeeField.columns(fields)
+                + " FROM employees WHERE id = :id AND user_id = :userId")
+            .bind("id", id)
+            .bind("userId", userId)
+            .map(row -> EmployeeProjectionRepository.toDto(row::get, fields))
+            .one();
+    }
+
+    public Flux<EmployeeDto> findByIdsAndUserId(Collection<Long> ids, Long userId, Set<EmployeeField> fields) {
+        if (ids.isEmpty()) {
+            return Flux.empty();
+        }
+        return databaseClient.sql("SELECT " + EmployeeField.columns(fields)
+                + " FROM employees WHERE user_id = :userId AND id IN (:ids) ORDER BY id")
+            .bind("userId", userId)
+            .bind("ids", ids)
+            .map(row -> EmployeeProjectionRepository.toDto(row::get, fields))
+            .all();
+    }
+
+    // Keyset pagination by id, as in ems-backend
+    public Flux<EmployeeDto> findPageOrderById(Long userId, Long afterId, int limit, Set<EmployeeField> fields) {
+        return databaseClient.sql("SELECT " + EmployeeField.columns(fields)
+                + " FROM employees WHERE user_id = :userId AND id > :afterId ORDER BY id LIMIT :limit")
+            .bind("userId", userId)
+            .bind("afterId", afterId)
+            .bind("limit", limit)
+            .map(row -> EmployeeProjectionRepository.toDto(row::get, fields, EmployeeField.ID))
+            .all();
+    }
+
+    // Keyset pagination ordered by (last name, id); a missing last name
+    // sorts as '' (last_name_key, indexed with user_id and id)
+    public Flux<EmployeeDto> findPageOrderByLastName(Long userId, String lastName, Long afterId, int limit,
+                                                     Set<EmployeeField> fields) {
+        return databaseClient.sql("SELECT " + EmployeeField.columns(fields, EmployeeField.LAST_NAME)
+                + " FROM employees WHERE user_id = :userId"
+                + " AND (last_name_key > :lastName"
+                + " OR (last_name_key = :lastName AND id > :afterId))"
+                + " ORDER BY last_name_key, id LIMIT :limit")
+            .bind("userId", userId)
+            .bind("lastName", lastName)
+            .bind("afterId", afterId)
+            .bind("limit", limit)
+            .map(row -> EmployeeProjectionRepository.toDto(row::get, fields, EmployeeField.ID, EmployeeField.LAST_NAME))
+            .all();
+    }
+}
@@ -0,0 +1,70 @@
+package net.javaguides.ems.reactive.repository;
+
+import java.time.Instant;
+
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+
+import net.javaguides.ems.reactive.entity.Employee;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Mirrors ems-backend's EmployeeRepository plus the single-row writes of
+// EmployeeJdbcRepository. Reads of selected fields and pages are in
+// EmployeeProjectionR2dbcRepository.
+// Writes stamp the change number of ems-backend's EmployeeChangeRepository
+// (employee_sync_state, employee_tombstones), so the delta sync endpoint
+// sees them too.
+public interface EmployeeR2dbcRepository extends ReactiveCrudRepository<Employee, Long> {
+
+    Flux<Employee> findByUserId(Long userId);
+
+    Mono<Boolean> existsByIdAndUserId(Long id, Long userId);
+
+    // MySQL compares with a case-insensitive collation, like findByEmail
+    Mono<Boolean> existsByEmail(String email);
+
+    // Owner-scoped updates and deletes in one statement; the second form
+    // also checks the version sent as If-Match
+    @Modifying
+    @Query("UPDATE employees SET first_name = :firstName, last_name = :lastName, email_id = :email, "
+        + "version = version + 1, change_seq = :changeSeq, updated_at = :updatedAt "
+        + "WHERE id = :id AND user_id = :userId")
+    Mono<Integer> updateOwned(Long id, Long userId, String firstName, String lastName, String email, Long changeSeq,
+                              Instant updatedAt);
+
+    @Modifying
+    @Query("UPDATE employees SET first_name = :firstName, last_name = :lastName, email_id = :email, "
+        + "version = version + 1, change_seq = :changeSeq, updated_at = :updatedAt "
+        + "WHERE id = :id AND user_id = :userId AND version = :version")
+    Mono<Integer> updateOwned(Long id, Long userId, String firstName, String lastName, String email, Long version,
+                              Long changeSeq, Instant updatedAt);
+
+    // The version an update just wrote, read in the same transaction
+    @Query("SELECT version FROM employees WHERE id = :id")
+    Mono<Long> findVersion(Long id);
+
+    @Modifying
+    @Query("DELETE FROM employees WHERE id = :id AND user_id = :userId")
+    Mono<Integer> deleteOwned(Long id, Long userId);
+
+    @Modifying
+    @Query("DELETE FROM employees WHERE id = :id AND user_id = :userId AND version = :version")
+    Mono<Integer> deleteOwned(Long id, Long userId, Long version);
+
+    // Change numbers: the increment locks the user's row until commit. One
+    // upsert, so that two first writes of a user cannot deadlock.
+    @Modifying
+    @Query("INSERT INTO employee_sync_state (user_id, last_seq, floor_seq) VALUES (:userId, 1, 0) "
+        + "ON DUPLICATE KEY UPDATE last_seq = last_seq + 1")
+    Mono<Integer> incrementChangeSeq(Long userId);
+
+    @Query("SELECT last_seq FROM employee_sync_state WHERE user_id = :userId")
+    Mono<Long> findChangeSeq(Long userId);
+
+    @Modifying
+    @Query("INSERT INTO employee_tombstones (employee_id, user_id, change_seq, deleted_at) "
+        + "VALUES (:id, :userId, :changeSeq, :deletedAt)")
+    Mono<Integer> insertTombstone(Long id, Long userId, Long changeSeq, Instant deletedAt);
+}
@@ -0,0 +1,16 @@
+package net.javaguides.ems.reactive.repository;
+
+import java.time.Instant;
+
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+
+import net.javaguides.ems.reactive.entity.RevokedToken;
+import reactor.core.publisher.Flux;
+
+// Mirrors ems-backend's RevokedTokenRepository, read side only
+public interface RevokedTokenR2dbcRepository extends ReactiveCrudRepository<RevokedToken, String> {
+
+    // Revocations made since the last poll, by any ems-backend instance,
+    // of tokens that have not expired yet
+    Flux<RevokedToken> findByRevokedAtAfterAndExpiresAtAfter(Instant since, Instant now);
+}
@@ -0,0 +1,14 @@
+package net.javaguides.ems.reactive.repository;
+
+import java.time.Instant;
+
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+
+import net.javaguides.ems.reactive.entity.UserCredentials;
+import reactor.core.publisher.Flux;
+
+public interface UserCredentialsR2dbcRepository extends ReactiveCrudRepository<UserCredentials, Long> {
+
+    // Password changes and resets since the last poll
+    Flux<UserCredentials> findByCredentialsChangedAtAfter(Instant since);
+}
@@ -0,0 +1,102 @@
+package net.javaguides.ems.reactive.security;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.jsonwebtoken.Claims;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import net.javaguides.ems.reactive.repository.RevokedTokenR2dbcRepository;
+import net.javaguides.ems.reactive.repository.UserCredentialsR2dbcRepository;
+import net.javaguides.ems.security.TokenRevocationState;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// ems-backend's TokenRevocationRegistry on R2DBC, read side only: tokens are
+// revoked through ems-backend (logout, refresh, password reset), which
+// writes revoked_tokens and users.credentials_changed_at. Both are polled
+// here the same way (ems.revocation.pollIntervalMs), so a logout reaches
+// this service within one interval, like another ems-backend instance.
+// The decision is the shared TokenRevocationState's; only a "maybe" from
+// its Bloom filter that is not remembered yet reads the database.
+@Component
+public class ReactiveTokenRevocationRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveTokenRevocationRegistry.class);
+
+    private final RevokedTokenR2dbcRepository revokedTokenRepository;
+    private final UserCredentialsR2dbcRepository userCredentialsRepository;
+    private final TokenRevocationState state;
+    private final long pollIntervalMs;
+
+    private Disposable polling;
+
+    public ReactiveTokenRevocationRegistry(RevokedTokenR2dbcRepository revokedTokenRepository,
+                                           UserCredentialsR2dbcRepository userCredentialsRepository,
+                                           TokenRevocationState state,
+                                           @Value("${ems.revocation.pollIntervalMs:10000}") long pollIntervalMs) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.userCredentialsRepository = userCredentialsRepository;
+        this.state = state;
+        this.pollIntervalMs = pollIntervalMs;
+    }
+
+    // Loaded before the first request, so a token revoked before this
+    // service started is not accepted; startup runs off the event loop, so
+    // blocking here is fine
+    @PostConstruct
+    public void start() {
+        poll().block();
+        polling = Flux.interval(Duration.ofMillis(pollIntervalMs))
+            .onBackpressureDrop()
+            .concatMap(tick -> poll())
+            .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (polling != null) {
+            polling.dispose();
+        }
+    }
+
+    public Mono<Boolean> isRevoked(Claims claims) {
+        switch (state.check(claims)) {
+            case REVOKED:
+                return Mono.just(true);
+            case NOT_REVOKED:
+                return Mono.just(false);
+            default:
+                String id = claims.getId();
+                return revokedTokenRepository.existsById(id)
+                    .doOnNext(revoked -> state.remember(id, revoked));
+        }
+    }
+
+    // Reads what ems-backend revoked since the last poll and drops state that
+    // has expired. Polls never overlap (concatMap); a failed read is retried
+    // on the next poll with the same window.
+    public Mono<Void> poll() {
+        Instant now = Instant.now();
+        Instant since = state.pollWindowStart();
+        Mono<Void> tokens = revokedTokenRepository.findByRevokedAtAfterAndExpiresAtAfter(since, now)
+            .doOnNext(token -> state.revoked(token.getId(), token.getExpiresAt()))
+            .then();
+        Mono<Void> resets = userCredentialsRepository.findByCredentialsChangedAtAfter(since)
+            .doOnNext(user -> state.revokeAllIssuedBefore(user.getId(), user.getCredentialsChangedAt()))
+            .then();
+        return tokens.then(resets)
+            .doOnSuccess(done -> state.polled(now))
+            .onErrorResume(e -> {
+                log.warn("Could not read token revocations, retrying on the next poll", e);
+                return Mono.empty();
+            })
+            .doFinally(signal -> state.expire(now));
+    }
+}
@@ -0,0 +1,28 @@
+package net.javaguides.ems.reactive.service;
+
+import java.util.List;
+import java.util.Set;
+
+import net.javaguides.ems.dto.EmployeeDto;
+import net.javaguides.ems.dto.EmployeeField;
+import net.javaguides.ems.dto.EmployeePageDto;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// The operations of ems-backend's EmployeeService that the reactive API
+// serves, with the same rules and errors
+public interface ReactiveEmployeeService {
+    Mono<EmployeeDto> createEmployee(EmployeeDto employeeDto, Long userId);
+
+    Mono<EmployeeDto> getEmployeeById(Long employeeId, Long userId, Set<EmployeeField> fields);
+
+    Flux<EmployeeDto> getAllEmployees(Long userId, Set<EmployeeField> fields);
+
+    Mono<EmployeePageDto> getEmployeesPage(Long userId, String after, Integer limit, String sort, Set<EmployeeField> fields);
+
+    Flux<EmployeeDto> getEmployeesByIds(List<Long> employeeIds, Long userId, Set<EmployeeField> fields);
+
+    Mono<EmployeeDto> updateEmployee(Long employeeId, EmployeeDto updatedEmployee, Long userId, Long expectedVersion);
+
+    Mono<Void> deleteEmployee(Long employeeId, Long userId, Long expectedVersion);
+}
@@ -0,0 +1,194 @@
+package net.javaguides.ems.reactive.service.implementation;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import lombok.AllArgsConstructor;
+import net.javaguides.ems.dto.EmployeeCursor;
+import net.javaguides.ems.dto.EmployeeDto;
+import net.javaguides.ems.dto.EmployeeField;
+import net.javaguides.ems.dto.EmployeePageDto;
+import net.javaguides.ems.exception.BadRequestException;
+import net.javaguides.ems.exception.ConflictException;
+import net.javaguides.ems.exception.ResourceNotFoundException;
+import net.javaguides.ems.reactive.entity.Employee;
+import net.javaguides.ems.reactive.repository.EmployeeProjectionR2dbcRepository;
+import net.javaguides.ems.reactive.repository.EmployeeR2dbcRepository;
+import net.javaguides.ems.reactive.service.ReactiveEmployeeService;
+import net.javaguides.ems.service.implementation.EmployeeServiceImplementation;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Same behaviour as ems-backend's EmployeeServiceImplementation; every
+// method returns at once and completes when the database answers.
+// Each write also takes the user's next change number for delta sync (and
+// a delete leaves a tombstone), so it runs in a transaction of its own
+// through the TransactionalOperator.
+@Service
+@AllArgsConstructor
+public class ReactiveEmployeeServiceImplementation implements ReactiveEmployeeService {
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int MAX_BATCH_GET_IDS = 1_000;
+
+    private final EmployeeR2dbcRepository employeeRepository;
+    private final EmployeeProjectionR2dbcRepository employeeProjectionRepository;
+    private final TransactionalOperator transactionalOperator;
+
+    @Override
+    public Mono<EmployeeDto> createEmployee(EmployeeDto employeeDto, Long userId) {
+        return employeeRepository.existsByEmail(employeeDto.getEmail())
+            .flatMap(exists -> {
+                if (exists) {
+                    return Mono.<Employee>error(new ResourceNotFoundException("Employee with email " + employeeDto.getEmail() + " already exists"));
+                }
+                return nextChangeSeq(userId).flatMap(changeSeq -> employeeRepository.save(new Employee(null,
+                    employeeDto.getFirstName(), employeeDto.getLastName(), employeeDto.getEmail(), userId, null,
+                    changeSeq, Instant.now())));
+            })
+            // Two requests with the same new email can both pass the check;
+            // the unique index rejects the second one
+            .onErrorMap(DataIntegrityViolationException.class,
+                e -> new ConflictException("Employee with email " + employeeDto.getEmail() + " already exists"))
+            .map(ReactiveEmployeeServiceImplementation::toDto)
+            .as(transactionalOperator::transactional);
+    }
+
+    @Override
+    public Mono<EmployeeDto> getEmployeeById(Long employeeId, Long userId, Set<EmployeeField> fields) {
+        return employeeProjectionRepository.findByIdAndUserId(employeeId, userId, fields)
+            .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("Employee do not exist with given id: " + employeeId)))
+            .map(employee -> EmployeeField.retainOnly(employee, fields));
+    }
+
+    @Override
+    public Flux<EmployeeDto> getAllEmployees(Long userId, Set<EmployeeField> fields) {
+        return employeeProjectionRepository.findAllByUserId(userId, fields)
+            .map(employee -> EmployeeField.retainOnly(employee, fields));
+    }
+
+    // One extra row is fetched to know whether another page exists
+    @Override
+    public Mono<EmployeePageDto> getEmployeesPage(Long userId, String after, Integer limit, String sort,
+                                                  Set<EmployeeField> fields) {
+        int pageSize;
+        EmployeeCursor.SortKey sortKey;
+        EmployeeCursor cursor;
+        try {
+            pageSize = pageSize(limit);
+            sortKey = EmployeeCursor.SortKey.from(sort);
+            if (sortKey == EmployeeCursor.SortKey.RELEVANCE) {
+                throw new BadRequestException("sort=relevance is only supported by search");
+            }
+            cursor = after == null || after.isBlank()
+                ? EmployeeCursor.first(sortKey)
+                : EmployeeCursor.decode(after, sortKey);
+        } catch (BadRequestException e) {
+            return Mono.error(e);
+        }
+
+        Flux<EmployeeDto> rows = sortKey == EmployeeCursor.SortKey.LAST_NAME
+            ? employeeProjectionRepository.findPageOrderByLastName(userId, cursor.getLastName(), cursor.getId(),
+                pageSize + 1, fields)
+            : employeeProjectionRepository.findPageOrderById(userId, cursor.getId(), pageSize + 1, fields);
+
+        return rows.collectList().map(list -> {
+            boolean hasMore = list.size() > pageSize;
+            List<EmployeeDto> items = list.subList(0, Math.min(list.size(), pageSize));
+            String nextCursor = hasMore
+                ? EmployeeCursor.after(items.get(items.size() - 1), sortKey).encode()
+                : null;
+            items.forEach(employee -> EmployeeField.retainOnly(employee, fields));
+            return new EmployeePageDto(items, nextCursor, hasMore);
+        });
+    }
+
+    @Override
+    public Flux<EmployeeDto> getEmployeesByIds(List<Long> employeeIds, Long userId, Set<EmployeeField> fields) {
+        if (employeeIds.size() > MAX_BATCH_GET_IDS) {
+            return Flux.error(new BadRequestException("At most " + MAX_BATCH_GET_IDS + " ids can be requested at once"));
+        }
+        return employeeProjectionRepository.findByIdsAndUserId(employeeIds, userId, fields)
+            .map(employee -> EmployeeField.retainOnly(employee, fields));
+    }
+
+    @Override
+    public Mono<EmployeeDto> updateEmployee(Long employeeId, EmployeeDto updatedEmployee, Long userId,
+                                            Long expectedVersion) {
+        Mono<Integer> updated = nextChangeSeq(userId).flatMap(changeSeq -> expectedVersion == null
+            ? employeeRepository.updateOwned(employeeId, userId, updatedEmployee.getFirstName(),
+                updatedEmployee.getLastName(), updatedEmployee.getEmail(), changeSeq, Instant.now())
+            : employeeRepository.updateOwned(employeeId, userId, updatedEmployee.getFirstName(),
+                updatedEmployee.getLastName(), updatedEmployee.getEmail(), expectedVersion, changeSeq,
+                Instant.now()));
+        return updated
+            .onErrorMap(DataIntegrityViolationException.class,
+                e -> new ConflictException("Employee with email " + updatedEmployee.getEmail() + " already exists"))
+            .flatMap(count -> {
+                if (count == 0) {
+                    return this.<EmployeeDto>missingOrStale(employeeId, userId, expectedVersion);
+                }
+                // Read back inside the transaction: without If-Match the new
+                // version is not known otherwise
+                return employeeRepository.findVersion(employeeId).map(version -> {
+                    EmployeeDto employeeDto = new EmployeeDto(employeeId, updatedEmployee.getFirstName(),
+                        updatedEmployee.getLastName(), updatedEmployee.getEmail());
+                    employeeDto.setUserId(userId);
+                    employeeDto.setVersion(version);
+                    return employeeDto;
+                });
+            })
+            .as(transactionalOperator::transactional);
+    }
+
+    @Override
+    public Mono<Void> deleteEmployee(Long employeeId, Long userId, Long expectedVersion) {
+        return nextChangeSeq(userId)
+            .flatMap(changeSeq -> {
+                Mono<Integer> deleted = expectedVersion == null
+                    ? employeeRepository.deleteOwned(employeeId, userId)
+                    : employeeRepository.deleteOwned(employeeId, userId, expectedVersion);
+                return deleted.flatMap(count -> count == 0
+                    ? this.<Void>missingOrStale(employeeId, userId, expectedVersion)
+                    : employeeRepository.insertTombstone(employeeId, userId, changeSeq, Instant.now()).then());
+            })
+            .as(transactionalOperator::transactional);
+    }
+
+    // The user's next change number, as EmployeeChangeRepository.nextChangeSeq
+    // takes it; only meaningful inside the write's transaction
+    private Mono<Long> nextChangeSeq(Long userId) {
+        return employeeRepository.incrementChangeSeq(userId)
+            .then(employeeRepository.findChangeSeq(userId));
+    }
+
+    // Only runs after a conditional statement matched nothing, to tell a
+    // stale version (412) apart from a missing or foreign row (404)
+    private <T> Mono<T> missingOrStale(Long employeeId, Long userId, Long expectedVersion) {
+        Mono<Boolean> exists = expectedVersion == null
+            ? Mono.just(false)
+            : employeeRepository.existsByIdAndUserId(employeeId, userId);
+        return exists.flatMap(stale -> Mono.error(EmployeeServiceImplementation.missingOrStale(employeeId, stale)));
+    }
+
+    private static int pageSize(Integer limit) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new BadRequestException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        return pageSize;
+    }
+
+    private static EmployeeDto toDto(Employee employee) {
+        EmployeeDto employeeDto = new EmployeeDto(employee.getId(), employee.getFirstName(),
+            employee.getLastName(), employee.getEmail());
+        employeeDto.setUserId(employee.getUserId());
+        employeeDto.setVersion(employee.getVersion());
+        return employeeDto;
+    }
+}
@@ -0,0 +1,188 @@
+package net.javaguides.ems.reactive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import io.jsonwebtoken.Claims;
+import net.javaguides.ems.dto.EmployeeDto;
+import net.javaguides.ems.reactive.security.ReactiveTokenRevocationRegistry;
+import net.javaguides.ems.security.JwtTokenUtil;
+
+// The API through the security chain, on H2 in MySQL mode with the schema
+// of ems-backend's migrations. Tokens are issued with the shared
+// JwtTokenUtil, as ems-backend would.
+@SpringBootTest(properties = {
+    "spring.r2dbc.url=r2dbc:h2:mem:///ems-reactive-api?options=MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+    "spring.r2dbc.username=sa",
+    "spring.r2dbc.password=",
+    "spring.sql.init.mode=always",
+    "spring.sql.init.schema-locations=classpath:db/migration/V1__baseline.sql,"
+        + "classpath:db/migration/V2__employee_access_path_indexes.sql,"
+        + "classpath:db/migration/V4__employee_change_tracking.sql,"
+        + "classpath:ddl-auto-additions.sql",
+    "management.server.port=-1",
+    "jwt.secret=AAECAwQFBgcICQoLDA0ODxAREhMUFRYXGBkaGxwdHh8gISIjJCUmJygpKissLS4vMDEyMzQ1Njc4OTo7PD0+Pw==",
+    "jwt.expirationMs=900000"
+})
+@AutoConfigureWebTestClient
+class ReactiveEmployeeApiTests {
+
+    private static final long ALICE = 1L;
+    private static final long BOB = 2L;
+    // Gets a password reset, whose cutoff stays in the registry
+    private static final long CAROL = 3L;
+
+    @Autowired
+    private WebTestClient client;
+
+    @Autowired
+    private JwtTokenUtil jwtTokenUtil;
+
+    @Autowired
+    private DatabaseClient db;
+
+    @Autowired
+    private ReactiveTokenRevocationRegistry revocationRegistry;
+
+    @BeforeEach
+    void setUp() {
+        for (String table : List.of("employee_tombstones", "employee_sync_state", "employees", "revoked_tokens",
+                "users")) {
+            db.sql("DELETE FROM " + table).fetch().rowsUpdated().block();
+        }
+        db.sql("INSERT INTO users (id, user_name, password_hash) VALUES (1, 'alice', 'hash'), "
+            + "(2, 'bob', 'hash'), (3, 'carol', 'hash')").fetch().rowsUpdated().block();
+    }
+
+    @Test
+    void requestsWithoutAValidAccessTokenAreRejected() {
+        client.get().uri("/api/employees").exchange()
+            .expectStatus().isUnauthorized();
+        client.get().uri("/api/employees").header(HttpHeaders.AUTHORIZATION, "Bearer not-a-token").exchange()
+            .expectStatus().isUnauthorized();
+        String refreshToken = jwtTokenUtil.generateRefreshToken("alice", ALICE);
+        client.get().uri("/api/employees").header(HttpHeaders.AUTHORIZATION, "Bearer " + refreshToken).exchange()
+            .expectStatus().isUnauthorized();
+    }
+
+    @Test
+    void employeesCanBeCreatedReadUpdatedAndDeleted() {
+        String alice = accessToken("alice", ALICE);
+        String bob = accessToken("bob", BOB);
+
+        EmployeeDto created = client.post().uri("/api/employees")
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + alice)
+            .bodyValue(new EmployeeDto(null, "Ada", "Lovelace", "ada@example.com"))
+            .exchange()
+            .expectStatus().isCreated()
+            .expectHeader().valueEquals(HttpHeaders.ETAG, "\"0\"")
+            .expectBody(EmployeeDto.class).returnResult().getResponseBody();
+        assertThat(created).isNotNull();
+        String path = "/api/employees/" + created.getId();
+
+        client.get().uri(path).header(HttpHeaders.AUTHORIZATION, "Bearer " + alice).exchange()
+            .expectStatus().isOk()
+            .expectBody().jsonPath("$.email").isEqualTo("ada@example.com");
+        // Other users' employees do not exist for them
+        client.get().uri(path).header(HttpHeaders.AUTHORIZATION, "Bearer " + bob).exchange()
+            .expectStatus().isNotFound();
+
+        client.put().uri(path).header(HttpHeaders.AUTHORIZATION, "Bearer " + alice)
+            .header(HttpHeaders.IF_MATCH, "\"0\"")
+            .bodyValue(new EmployeeDto(null, "Ada", "King", "ada@example.com"))
+            .exchange()
+            .expectStatus().isOk()
+            .expectHeader().valueEquals(HttpHeaders.ETAG, "\"1\"")
+            .expectBody().jsonPath("$.lastName").isEqualTo("King");
+        // A write based on the old version is refused
+        client.put().uri(path).header(HttpHeaders.AUTHORIZATION, "Bearer " + alice)
+            .header(HttpHeaders.IF_MATCH, "\"0\"")
+            .bodyValue(new EmployeeDto(null, "Ada", "Byron", "ada@example.com"))
+            .exchange()
+            .expectStatus().isEqualTo(412);
+        // Without If-Match the new version is still reported
+        client.put().uri(path).header(HttpHeaders.AUTHORIZATION, "Bearer " + alice)
+            .bodyValue(new EmployeeDto(null, "Ada", "King", "ada@example.com"))
+            .exchange()
+            .expectStatus().isOk()
+            .expectHeader().valueEquals(HttpHeaders.ETAG, "\"2\"");
+
+        client.get().uri("/api/employees").header(HttpHeaders.AUTHORIZATION, "Bearer " + alice).exchange()
+            .expectStatus().isOk()
+            .expectBody().jsonPath("$[0].lastName").isEqualTo("King");
+
+        client.delete().uri(path).header(HttpHeaders.AUTHORIZATION, "Bearer " + alice).exchange()
+            .expectStatus().isOk()
+            .expectBody(String.class).isEqualTo("Employee with id " + created.getId() + " deleted successfully.");
+        client.get().uri(path).header(HttpHeaders.AUTHORIZATION, "Bearer " + alice).exchange()
+            .expectStatus().isNotFound();
+    }
+
+    @Test
+    void aLoggedOutTokenIsRejectedAfterThePoll() {
+        String token = accessToken("alice", ALICE);
+        String other = accessToken("alice", ALICE);
+        client.get().uri("/api/employees").header(HttpHeaders.AUTHORIZATION, "Bearer " + token).exchange()
+            .expectStatus().isOk();
+
+        // What ems-backend's logout writes
+        Claims claims = jwtTokenUtil.verifyToken(token);
+        db.sql("INSERT INTO revoked_tokens (jti, user_id, expires_at, revoked_at) "
+                + "VALUES (:jti, :userId, :expiresAt, :revokedAt)")
+            .bind("jti", claims.getId())
+            .bind("userId", ALICE)
+            .bind("expiresAt", local(claims.getExpiration().toInstant()))
+            .bind("revokedAt", LocalDateTime.now())
+            .fetch().rowsUpdated().block();
+        poll();
+
+        client.get().uri("/api/employees").header(HttpHeaders.AUTHORIZATION, "Bearer " + token).exchange()
+            .expectStatus().isUnauthorized();
+        // Only that token
+        client.get().uri("/api/employees").header(HttpHeaders.AUTHORIZATION, "Bearer " + other).exchange()
+            .expectStatus().isOk();
+    }
+
+    @Test
+    void aPasswordResetRejectsTheTokensIssuedBeforeIt() {
+        String token = accessToken("carol", CAROL);
+        client.get().uri("/api/employees").header(HttpHeaders.AUTHORIZATION, "Bearer " + token).exchange()
+            .expectStatus().isOk();
+
+        db.sql("UPDATE users SET credentials_changed_at = :changedAt WHERE id = :id")
+            .bind("changedAt", LocalDateTime.now())
+            .bind("id", CAROL)
+            .fetch().rowsUpdated().block();
+        poll();
+
+        client.get().uri("/api/employees").header(HttpHeaders.AUTHORIZATION, "Bearer " + token).exchange()
+            .expectStatus().isUnauthorized();
+    }
+
+    private String accessToken(String username, long userId) {
+        return jwtTokenUtil.generateToken(username, userId, List.of("ROLE_USER"));
+    }
+
+    private void poll() {
+        revocationRegistry.poll().block();
+    }
+
+    // TIMESTAMP columns hold local time; Spring Data converts entity
+    // Instants with the JVM's zone as well
+    private static LocalDateTime local(Instant instant) {
+        return LocalDateTime.ofInstant(instant, ZoneId.systemDefault());
+    }
+}
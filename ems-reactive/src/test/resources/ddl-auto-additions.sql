@@ -0,0 +1,12 @@
+-- What ems-backend's V5 migration (a Java migration, so not a script that
+-- can be run here) adds on a new database
+ALTER TABLE employees ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE users ADD COLUMN credentials_changed_at TIMESTAMP(6);
+
+CREATE TABLE revoked_tokens (
+    jti VARCHAR(36) NOT NULL,
+    user_id BIGINT,
+    expires_at TIMESTAMP(6) NOT NULL,
+    revoked_at TIMESTAMP(6) NOT NULL,
+    PRIMARY KEY (jti)
+);